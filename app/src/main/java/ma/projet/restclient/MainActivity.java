@@ -1,25 +1,57 @@
 package ma.projet.restclient;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
 import android.content.DialogInterface;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.BatteryManager;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.Window;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.RadioGroup;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import ma.projet.restclient.adapter.AdapterUpdateScheduler;
 import ma.projet.restclient.adapter.CompteAdapter;
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.config.RetrofitClient;
 import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+import ma.projet.restclient.metrics.InteractionTracer;
+import ma.projet.restclient.repository.CompteChangeStream;
 import ma.projet.restclient.repository.CompteRepository;
+import ma.projet.restclient.repository.CompteSnapshot;
+import ma.projet.restclient.repository.WindowedCompteSource;
+import ma.projet.restclient.repository.MutationOutbox;
+import ma.projet.restclient.repository.OfflineQueuedException;
+import ma.projet.restclient.repository.PendingMutation;
+import ma.projet.restclient.repository.SyncScheduler;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 
@@ -43,10 +75,20 @@ import retrofit2.Response;
  * </p>
  * <ul>
  * <li>Display accounts in a RecyclerView with real-time updates</li>
- * <li>Toggle between JSON and XML data formats</li>
+ * <li>Toggle between JSON, XML and AUTO (measured cheapest) data formats</li>
  * <li>Add new accounts with validation</li>
  * <li>Update existing account details</li>
  * <li>Delete accounts with confirmation dialogs</li>
+ * <li>Offline edits journaled and replayed when connectivity returns</li>
+ * <li>Live updates pushed by the server while the activity is visible</li>
+ * <li>Instant cold start from the last saved snapshot, in bounded memory</li>
+ * <li>Full entities prefetched ahead of the scroll for instant edit dialogs</li>
+ * <li>Interaction latency tracing and frame jank metrics</li>
+ * <li>List rows and dialog form inflated in the background and reused</li>
+ * <li>Caches sized to the device and shed under memory pressure</li>
+ * <li>List changes from bursts of responses applied once per frame</li>
+ * <li>Periodic jittered refresh while visible, skipped when data is fresh,
+ * offline or on low battery</li>
  * </ul>
  * 
  * @author Mohamed
@@ -55,18 +97,93 @@ import retrofit2.Response;
  */
 public class MainActivity extends AppCompatActivity
         implements CompteAdapter.OnDeleteClickListener, CompteAdapter.OnUpdateClickListener {
+    /** Number of rows ahead of the viewport whose full entity is prefetched */
+    private static final int PREFETCH_DISTANCE = 10;
+
+    /** Rows of a windowed list kept in memory on each side of the viewport */
+    private static final int WINDOW_MARGIN = 100;
+
+    /** Row holders prewarmed beyond a full viewport, for the first fling */
+    private static final int PREWARM_EXTRA_ROWS = 4;
+
+    /** Share of the app's heap limit given to the client-side caches */
+    private static final int MEMORY_BUDGET_DIVISOR = 16;
+
+    /** Nominal time between two background refreshes of the list */
+    private static final long SYNC_INTERVAL_MILLIS = 15 * 60 * 1000L;
+
+    /** Battery level, in percent, below which background refreshes wait */
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    /** Time the first list load waits for the change stream to connect */
+    private static final long STREAM_CONNECT_TIMEOUT_MILLIS = 2000;
+
+    /** Time a mutation's trace waits for the server to push the change back */
+    private static final long PUSH_ECHO_TIMEOUT_MILLIS = 5000;
+
+    /** Largest loaded list copied into memory; longer ones are windowed */
+    private static final int MAX_INLINE_ROWS = 2000;
+
+    /** Delay merging the reloads requested by changes to a windowed list */
+    private static final long RELOAD_DELAY_MILLIS = 1000;
+
     /** RecyclerView component for displaying the list of accounts */
     private RecyclerView recyclerView;
 
     /** Adapter for managing account data in the RecyclerView */
     private CompteAdapter adapter;
 
-    /** RadioGroup for selecting data format (JSON or XML) */
+    /** Merges list changes and applies them to the adapter once per frame */
+    private AdapterUpdateScheduler updateScheduler;
+
+    /** RadioGroup for selecting data format (JSON, XML or AUTO) */
     private RadioGroup formatGroup;
 
+    /** Format selected in formatGroup, used by every repository call */
+    private volatile String selectedFormat = "AUTO";
+
     /** Floating action button for adding new accounts */
     private FloatingActionButton addbtn;
 
+    /** Callback flushing the mutation outbox when a network becomes available */
+    private ConnectivityManager.NetworkCallback networkCallback;
+
+    /** Replaces the rows of accounts created offline once delivered */
+    private MutationOutbox.Listener outboxListener;
+
+    /** Server-push subscription, open between onStart and onStop */
+    private CompteChangeStream changeStream;
+
+    /** Whether the first list load of the activity is still to be sent */
+    private boolean initialLoadPending = true;
+
+    /** Sends the first list load, once the stream connects or gives up */
+    private final Runnable initialLoad = this::runInitialLoad;
+
+    /** Reloads the list shown through a window after changes were pushed */
+    private final Runnable reload = () -> loadData(selectedFormat);
+
+    /**
+     * Periodic refresh of the list, running between onStart and onStop and
+     * kept across them so that it remembers the last refresh
+     */
+    private SyncScheduler backgroundSync;
+
+    /** Repository used to prefetch entities while scrolling */
+    private CompteRepository prefetchRepository;
+
+    /** Thread receiving frame metrics, alive between onResume and onPause */
+    private HandlerThread frameMetricsThread;
+
+    /** Listener feeding frame durations to the InteractionTracer */
+    private Window.OnFrameMetricsAvailableListener frameMetricsListener;
+
+    /**
+     * Account form inflated in the background or released by the last closed
+     * dialog, null while a dialog uses it or before it is ready
+     */
+    private View cachedDialogView;
+
     /**
      * Called when the activity is first created.
      * Initializes the UI components, sets up listeners, and loads initial data.
@@ -79,12 +196,291 @@ public class MainActivity extends AppCompatActivity
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        setupMemoryBudget();
         initViews();
         setupRecyclerView();
         setupFormatSelection();
         setupAddButton();
+        setupOutbox();
+        setupChangeStream();
+        showSnapshot();
+        prewarmDialogView();
+    }
 
-        loadData("JSON");
+    /**
+     * Shows the last known account list from the snapshot file, so the screen
+     * is populated before the network answers. Only the rows around the
+     * visible range are decoded, on a background thread, whatever the size of
+     * the list.
+     */
+    private void showSnapshot() {
+        CompteRepository.setSnapshotFile(new File(getFilesDir(), "comptes.snapshot"));
+        WindowedCompteSource snapshot = CompteRepository.openWindowedSnapshot(WINDOW_MARGIN,
+                ContextCompat.getMainExecutor(this), adapter);
+        if (snapshot != null) {
+            snapshot.setVisibleRange(0, 0);
+            adapter.showWindowed(snapshot);
+            recyclerView.post(this::reportVisibleRange);
+        }
+    }
+
+    /**
+     * Creates the server-push change stream, once for the activity so that
+     * its cursor survives stop/start cycles. Pushed changes are applied to the
+     * adapter one by one. Each connection made without a cursor starts from
+     * the current state, so the list is (re)loaded after it: a list requested
+     * before the subscription could miss changes made in between. This also
+     * covers a cursor expired by the server. Listener methods are called on
+     * the stream's thread and post UI work to the main thread.
+     */
+    private void setupChangeStream() {
+        changeStream = new CompteRepository(selectedFormat).subscribeToChanges(new CompteChangeStream.Listener() {
+            @Override
+            public void onConnected(boolean resumed) {
+                if (!resumed) {
+                    runOnUiThread(() -> {
+                        if (initialLoadPending) {
+                            runInitialLoad();
+                        } else {
+                            loadData(selectedFormat, InteractionTracer.begin("compte.resync"));
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void onUpsert(Compte compte) {
+                updateScheduler.upsert(compte);
+            }
+
+            @Override
+            public void onDelete(Long id) {
+                updateScheduler.remove(id);
+            }
+
+            @Override
+            public void onResyncRequired() {
+                runOnUiThread(() -> loadData(selectedFormat, InteractionTracer.begin("compte.resync")));
+            }
+        });
+    }
+
+    /**
+     * Opens the change stream while the activity is visible, resuming from
+     * its cursor, and restarts the background refresh. The first list load
+     * waits for the stream to connect, or for
+     * {@code STREAM_CONNECT_TIMEOUT_MILLIS} if it cannot.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        changeStream.start();
+        if (initialLoadPending) {
+            recyclerView.postDelayed(initialLoad, STREAM_CONNECT_TIMEOUT_MILLIS);
+        } else {
+            startBackgroundSync();
+        }
+    }
+
+    /**
+     * Sends the first list load of the activity, if not sent yet. With the
+     * snapshot on screen, the load is left to the background refresh, which
+     * skips it if the snapshot is fresh and otherwise runs it after a short
+     * random delay, so that clients opened together do not fetch together.
+     * Must be called on the main thread.
+     */
+    private void runInitialLoad() {
+        if (!initialLoadPending) {
+            return;
+        }
+        initialLoadPending = false;
+        recyclerView.removeCallbacks(initialLoad);
+        if (adapter.getItemCount() == 0) {
+            // Nothing to show until the list arrives
+            loadData(selectedFormat);
+        }
+        startBackgroundSync();
+    }
+
+    /**
+     * Starts the periodic refresh of the list in the selected format, or
+     * restarts the one stopped by onStop.
+     */
+    private void startBackgroundSync() {
+        if (backgroundSync != null) {
+            backgroundSync.start();
+            return;
+        }
+        backgroundSync = new CompteRepository(selectedFormat).startBackgroundSync(SYNC_INTERVAL_MILLIS,
+                new SyncScheduler.Constraints() {
+                    @Override
+                    public boolean isNetworkAvailable() {
+                        ConnectivityManager connectivityManager = (ConnectivityManager) getSystemService(
+                                Context.CONNECTIVITY_SERVICE);
+                        NetworkCapabilities capabilities = connectivityManager
+                                .getNetworkCapabilities(connectivityManager.getActiveNetwork());
+                        return capabilities != null
+                                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+                    }
+
+                    @Override
+                    public boolean isBatteryLow() {
+                        BatteryManager batteryManager = (BatteryManager) getSystemService(Context.BATTERY_SERVICE);
+                        return !batteryManager.isCharging() && batteryManager
+                                .getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY) < LOW_BATTERY_PERCENT;
+                    }
+                }, new Callback<CompteSnapshot>() {
+                    @Override
+                    public void onResponse(Call<CompteSnapshot> call, Response<CompteSnapshot> response) {
+                        if (response.isSuccessful() && response.body() != null) {
+                            showLoaded(response.body(), null, null);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Call<CompteSnapshot> call, Throwable t) {
+                        // Retried by the scheduler
+                    }
+                });
+    }
+
+    /**
+     * Closes the change stream, keeping its cursor, and stops the background
+     * refresh when the activity is no longer visible.
+     */
+    @Override
+    protected void onStop() {
+        if (backgroundSync != null) {
+            backgroundSync.stop();
+        }
+        recyclerView.removeCallbacks(initialLoad);
+        changeStream.stop();
+        exportTrace();
+        super.onStop();
+    }
+
+    /**
+     * Starts recording frame durations while the activity is in the
+     * foreground. Slow and frozen frames are counted by the InteractionTracer.
+     * Frames start at their intended vsync, which FrameMetrics reports from
+     * API 26; before that the start is derived from the delivery time, which
+     * lags the end of the frame.
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        frameMetricsThread = new HandlerThread("FrameMetrics");
+        frameMetricsThread.start();
+        frameMetricsListener = (window, frameMetrics, dropCountSinceLastInvocation) -> {
+            long duration = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+            long start = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    ? frameMetrics.getMetric(FrameMetrics.INTENDED_VSYNC_TIMESTAMP)
+                    : System.nanoTime() - duration;
+            InteractionTracer.recordFrame(start, duration);
+        };
+        getWindow().addOnFrameMetricsAvailableListener(frameMetricsListener,
+                new Handler(frameMetricsThread.getLooper()));
+    }
+
+    /**
+     * Stops recording frame durations.
+     */
+    @Override
+    protected void onPause() {
+        if (frameMetricsListener != null) {
+            getWindow().removeOnFrameMetricsAvailableListener(frameMetricsListener);
+            frameMetricsListener = null;
+        }
+        if (frameMetricsThread != null) {
+            frameMetricsThread.quitSafely();
+            frameMetricsThread = null;
+        }
+        super.onPause();
+    }
+
+    /**
+     * Writes the interaction trace to the cache directory, in the Trace Event
+     * Format, for offline inspection (adb pull, then chrome://tracing).
+     */
+    private void exportTrace() {
+        try {
+            InteractionTracer.exportTo(new File(getCacheDir(), "interaction-trace.json"));
+        } catch (IOException e) {
+            Log.w("MainActivity", "Cannot export interaction trace", e);
+        }
+    }
+
+    /**
+     * Ends a span once the frame showing the interaction's result has been
+     * drawn: the frame callback runs at the start of the next frame, and the
+     * posted message runs after that frame's traversal completes.
+     * Must be called on the main thread.
+     * 
+     * @param span The span to end
+     */
+    private void endAfterNextFrame(InteractionTracer.Span span) {
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos -> recyclerView.post(span::end));
+    }
+
+    /**
+     * Sizes the shared cache budget to a fraction of the heap this device
+     * grants the application.
+     */
+    private void setupMemoryBudget() {
+        ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+        long heapBytes = activityManager.getMemoryClass() * 1024L * 1024L;
+        RetrofitClient.getMemoryBudget().setBudgetBytes(heapBytes / MEMORY_BUDGET_DIVISOR);
+    }
+
+    /**
+     * Sheds cached data when the system reports memory pressure: the more
+     * severe the level, the smaller the share of the budget the caches keep.
+     * Locally rebuildable data goes first.
+     * 
+     * @param level The trim level, see ComponentCallbacks2
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        double keep;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            keep = 0.0;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            keep = 0.25;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            keep = 0.5;
+        } else {
+            keep = 0.75;
+        }
+        RetrofitClient.getMemoryBudget().trimToFraction(keep);
+    }
+
+    /**
+     * Empties every cache when the whole system is low on memory.
+     */
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        RetrofitClient.getMemoryBudget().trimToFraction(0.0);
+    }
+
+    /**
+     * Unregisters the connectivity callback when the activity is destroyed.
+     */
+    @Override
+    protected void onDestroy() {
+        adapter.releaseWindow();
+        MutationOutbox outbox = MutationOutbox.getInstance();
+        if (outbox != null && outboxListener != null) {
+            outbox.removeListener(outboxListener);
+        }
+        if (networkCallback != null) {
+            ConnectivityManager connectivityManager = (ConnectivityManager) getSystemService(
+                    Context.CONNECTIVITY_SERVICE);
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        }
+        super.onDestroy();
     }
 
     /**
@@ -105,16 +501,93 @@ public class MainActivity extends AppCompatActivity
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         adapter = new CompteAdapter(this, this);
         recyclerView.setAdapter(adapter);
+        updateScheduler = new AdapterUpdateScheduler(adapter, () -> {
+            // Each change pushed to a windowed list asks for a reload; merge them
+            recyclerView.removeCallbacks(reload);
+            recyclerView.postDelayed(reload, RELOAD_DELAY_MILLIS);
+        });
+        // Before showSnapshot() binds the first rows
+        adapter.prewarm(recyclerView, PREWARM_EXTRA_ROWS);
+
+        prefetchRepository = new CompteRepository(selectedFormat);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                reportVisibleRange();
+                prefetchUpcomingRows(dy);
+            }
+        });
+    }
+
+    /**
+     * Tells the adapter which rows are on screen, so that a windowed source
+     * loads them and evicts the rest.
+     */
+    private void reportVisibleRange() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        if (first != RecyclerView.NO_POSITION) {
+            adapter.setVisibleRange(first, layoutManager.findLastVisibleItemPosition());
+        }
+    }
+
+    /**
+     * Prefetches into the entity cache the full accounts of the rows about to
+     * scroll into view, in the direction of the scroll, so that opening one
+     * for editing does not wait on the network.
+     * 
+     * @param dy Vertical scroll delta, negative when scrolling up
+     */
+    private void prefetchUpcomingRows(int dy) {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int from;
+        int to;
+        if (dy >= 0) {
+            from = layoutManager.findLastVisibleItemPosition() + 1;
+            to = from + PREFETCH_DISTANCE;
+        } else {
+            to = layoutManager.findFirstVisibleItemPosition();
+            from = to - PREFETCH_DISTANCE;
+        }
+        from = Math.max(0, from);
+        to = Math.min(adapter.getItemCount(), to);
+        List<Long> ids = new ArrayList<>();
+        for (int position = from; position < to; position++) {
+            Compte compte = adapter.getItem(position);
+            if (compte != null) {
+                ids.add(compte.getId());
+            }
+        }
+        if (!ids.isEmpty()) {
+            prefetchRepository.prefetchComptes(ids);
+        }
     }
 
     /**
      * Sets up the RadioGroup listener for format selection.
-     * Reloads data when the user switches between JSON and XML formats.
+     * Reloads data when the user switches between JSON, XML and AUTO formats;
+     * later reloads and mutations keep using the selected format.
      */
     private void setupFormatSelection() {
         formatGroup.setOnCheckedChangeListener((group, checkedId) -> {
-            String format = checkedId == R.id.radioJson ? "JSON" : "XML";
-            loadData(format);
+            if (checkedId == R.id.radioJson) {
+                selectedFormat = "JSON";
+            } else if (checkedId == R.id.radioXml) {
+                selectedFormat = "XML";
+            } else {
+                selectedFormat = "AUTO";
+            }
+            prefetchRepository = new CompteRepository(selectedFormat);
+            if (backgroundSync != null) {
+                // Recreated in the new format, now if running or at the next onStart
+                boolean running = backgroundSync.isRunning();
+                backgroundSync.stop();
+                backgroundSync = null;
+                if (running) {
+                    startBackgroundSync();
+                }
+            }
+            loadData(selectedFormat, InteractionTracer.begin("format.switch"));
         });
     }
 
@@ -123,7 +596,72 @@ public class MainActivity extends AppCompatActivity
      * Shows the add account dialog when the button is clicked.
      */
     private void setupAddButton() {
-        addbtn.setOnClickListener(v -> showAddCompteDialog());
+        addbtn.setOnClickListener(v -> {
+            InteractionTracer.Span span = InteractionTracer.begin("compte.add.open");
+            showAddCompteDialog();
+            endAfterNextFrame(span);
+        });
+    }
+
+    /**
+     * Opens the mutation outbox and flushes it whenever a network becomes
+     * available, so edits made offline reach the backend without user action.
+     * Once an account created offline is delivered, its provisional row is
+     * replaced by the server's version. A creation the backend rejects
+     * removes its provisional row; a rejected update or deletion reloads the
+     * list to show the server's state. Either way the user is told.
+     */
+    private void setupOutbox() {
+        MutationOutbox outbox;
+        try {
+            outbox = MutationOutbox.init(getFilesDir());
+        } catch (IOException e) {
+            Log.e("MainActivity", "Outbox unavailable, offline edits will be lost", e);
+            return;
+        }
+        outboxListener = new MutationOutbox.Listener() {
+            @Override
+            public void onDelivered(PendingMutation mutation, Long serverId, Compte result) {
+                if (mutation.getOperation() == PendingMutation.Operation.CREATE && result != null) {
+                    updateScheduler.remove(mutation.getId());
+                    updateScheduler.upsert(result);
+                }
+            }
+
+            @Override
+            public void onDropped(PendingMutation mutation) {
+                switch (mutation.getOperation()) {
+                    case CREATE:
+                        updateScheduler.remove(mutation.getId());
+                        showToast("Création hors ligne refusée par le serveur");
+                        break;
+                    case UPDATE:
+                        recyclerView.removeCallbacks(reload);
+                        recyclerView.post(reload);
+                        showToast("Modification hors ligne refusée par le serveur");
+                        break;
+                    default:
+                        recyclerView.removeCallbacks(reload);
+                        recyclerView.post(reload);
+                        showToast("Suppression hors ligne refusée par le serveur");
+                        break;
+                }
+            }
+        };
+        outbox.addListener(outboxListener);
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                new CompteRepository(selectedFormat).flushOutbox();
+                SyncScheduler sync = backgroundSync;
+                if (sync != null) {
+                    sync.onConstraintsChanged();
+                }
+            }
+        };
+        ConnectivityManager connectivityManager = (ConnectivityManager) getSystemService(
+                Context.CONNECTIVITY_SERVICE);
+        connectivityManager.registerDefaultNetworkCallback(networkCallback);
     }
 
     /**
@@ -134,7 +672,7 @@ public class MainActivity extends AppCompatActivity
      */
     private void showAddCompteDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(MainActivity.this);
-        View dialogView = getLayoutInflater().inflate(R.layout.dialog_add_compte, null);
+        View dialogView = obtainDialogView();
 
         EditText etSolde = dialogView.findViewById(R.id.etSolde);
         RadioGroup typeGroup = dialogView.findViewById(R.id.typeGroup);
@@ -149,14 +687,62 @@ public class MainActivity extends AppCompatActivity
 
                     String formattedDate = getCurrentDateFormatted();
                     Compte compte = new Compte(null, Double.parseDouble(solde), type, formattedDate);
-                    addCompte(compte);
+                    addCompte(compte, InteractionTracer.begin("compte.add"));
                 })
                 .setNegativeButton("Annuler", null);
 
         AlertDialog dialog = builder.create();
+        dialog.setOnDismissListener(d -> releaseDialogView(dialogView));
         dialog.show();
     }
 
+    /**
+     * Inflates the account form on the AsyncLayoutInflater thread, so that
+     * the first add or edit dialog does not inflate it on the main thread.
+     */
+    private void prewarmDialogView() {
+        new AsyncLayoutInflater(this).inflate(R.layout.dialog_add_compte, null, (view, resid, parent) -> {
+            if (cachedDialogView == null) {
+                cachedDialogView = view;
+            }
+        });
+    }
+
+    /**
+     * Returns the account form for a new dialog: the cached one, cleared, if
+     * available, otherwise a freshly inflated one.
+     * 
+     * @return A form view without parent
+     */
+    private View obtainDialogView() {
+        View view = cachedDialogView;
+        cachedDialogView = null;
+        if (view == null) {
+            ClientMetrics.increment("dialog.views.inflated");
+            return getLayoutInflater().inflate(R.layout.dialog_add_compte, null);
+        }
+        ClientMetrics.increment("dialog.views.reused");
+        EditText etSolde = view.findViewById(R.id.etSolde);
+        etSolde.setText("");
+        etSolde.setError(null);
+        RadioGroup typeGroup = view.findViewById(R.id.typeGroup);
+        typeGroup.check(R.id.radioCourant);
+        return view;
+    }
+
+    /**
+     * Detaches the form of a closed dialog and keeps it for the next one.
+     * 
+     * @param view The form view of the dialog
+     */
+    private void releaseDialogView(View view) {
+        ViewGroup parent = (ViewGroup) view.getParent();
+        if (parent != null) {
+            parent.removeView(view);
+        }
+        cachedDialogView = view;
+    }
+
     /**
      * Gets the current date formatted as yyyy-MM-dd.
      * Used for setting the creation date when adding new accounts.
@@ -175,59 +761,179 @@ public class MainActivity extends AppCompatActivity
      * Reloads the account list on successful addition.
      * 
      * @param compte The Compte object to be added
+     * @param span   Trace of the interaction, ended when the result is drawn
      */
-    private void addCompte(Compte compte) {
-        CompteRepository compteRepository = new CompteRepository("JSON");
-        compteRepository.addCompte(compte, new Callback<Compte>() {
-            @Override
-            public void onResponse(Call<Compte> call, Response<Compte> response) {
-                if (response.isSuccessful()) {
-                    showToast("Compte ajouté");
-                    loadData("JSON");
+    private void addCompte(Compte compte, InteractionTracer.Span span) {
+        CompteRepository compteRepository = new CompteRepository(selectedFormat);
+        long changeToken = updateScheduler.beginLoad();
+        try (InteractionTracer.Scope scope = span.makeCurrent()) {
+            compteRepository.addCompte(compte, new Callback<Compte>() {
+                @Override
+                public void onResponse(Call<Compte> call, Response<Compte> response) {
+                    if (response.isSuccessful()) {
+                        showToast("Compte ajouté");
+                        Compte created = response.body();
+                        refreshAfterMutation(span, created != null ? created.getId() : null, changeToken);
+                    } else {
+                        span.end();
+                    }
                 }
-            }
 
-            @Override
-            public void onFailure(Call<Compte> call, Throwable t) {
-                showToast("Erreur lors de l'ajout");
-            }
-        });
+                @Override
+                public void onFailure(Call<Compte> call, Throwable t) {
+                    span.end();
+                    if (t instanceof OfflineQueuedException) {
+                        // Shown under its provisional id until the outbox delivers it
+                        Long provisionalId = ((OfflineQueuedException) t).getProvisionalId();
+                        if (provisionalId != null) {
+                            compte.setId(provisionalId);
+                            updateScheduler.upsert(compte);
+                        }
+                        showToast("Ajout enregistré hors ligne");
+                    } else {
+                        showToast("Erreur lors de l'ajout");
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Reloads the list after a successful mutation, unless the change stream
+     * is connected: the server then pushes the change back and a full reload
+     * would be redundant. The trace then ends when the pushed change is
+     * drawn, or after {@code PUSH_ECHO_TIMEOUT_MILLIS} if it never comes.
+     * 
+     * @param span        Trace of the mutation, ended when the result is drawn
+     * @param id          Id of the changed account, null if unknown
+     * @param changeToken Token taken from the update scheduler before the
+     *                    mutation was sent
+     */
+    private void refreshAfterMutation(InteractionTracer.Span span, Long id, long changeToken) {
+        if (!changeStream.isConnected()) {
+            loadData(selectedFormat, span);
+        } else {
+            updateScheduler.endOnChange(id, changeToken, span, PUSH_ECHO_TIMEOUT_MILLIS);
+        }
     }
 
     /**
      * Loads account data from the backend API in the specified format.
+     * Only the summary projection shown by the list is transferred.
      * Updates the RecyclerView adapter with the fetched data.
      * 
      * @param format The data format to use ("JSON" or "XML")
      */
     private void loadData(String format) {
+        loadData(format, InteractionTracer.begin("compte.load"));
+    }
+
+    /**
+     * Loads account data as part of a traced interaction. The list is
+     * streamed into the snapshot file, then handed to the update scheduler,
+     * which records the adapter update as a phase, re-applies the changes
+     * pushed while the list was in flight and ends the span when the new list
+     * is drawn.
+     * 
+     * @param format The data format to use ("JSON" or "XML")
+     * @param span   Trace of the interaction that triggered the load
+     */
+    private void loadData(String format, InteractionTracer.Span span) {
         CompteRepository compteRepository = new CompteRepository(format);
-        compteRepository.getAllCompte(new Callback<List<Compte>>() {
-            @Override
-            public void onResponse(Call<List<Compte>> call, Response<List<Compte>> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    List<Compte> comptes = response.body();
-                    runOnUiThread(() -> adapter.updateData(comptes));
+        long loadToken = updateScheduler.beginLoad();
+        try (InteractionTracer.Scope scope = span.makeCurrent()) {
+            compteRepository.loadCompteSummaries(RequestPriority.VISIBLE, new Callback<CompteSnapshot>() {
+                @Override
+                public void onResponse(Call<CompteSnapshot> call, Response<CompteSnapshot> response) {
+                    if (response.isSuccessful() && response.body() != null) {
+                        showLoaded(response.body(), loadToken, span);
+                    } else {
+                        span.end();
+                    }
                 }
-            }
 
-            @Override
-            public void onFailure(Call<List<Compte>> call, Throwable t) {
-                showToast("Erreur: " + t.getMessage());
+                @Override
+                public void onFailure(Call<CompteSnapshot> call, Throwable t) {
+                    span.end();
+                    showToast("Erreur: " + t.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Hands a freshly loaded snapshot to the update scheduler. A short list is
+     * copied into memory, so that later changes can be diffed into it; a
+     * longer one is reopened as a windowed source, of which only the rows
+     * around the viewport are decoded. Called on a worker thread.
+     *
+     * @param snapshot  The mapped snapshot of the loaded list
+     * @param loadToken Token taken before the list was requested, null if
+     *                  unknown
+     * @param span      Trace ended when the list is drawn, may be null
+     */
+    private void showLoaded(CompteSnapshot snapshot, Long loadToken, InteractionTracer.Span span) {
+        if (snapshot.size() <= MAX_INLINE_ROWS) {
+            List<Compte> comptes = new ArrayList<>(snapshot);
+            if (loadToken != null) {
+                updateScheduler.replace(comptes, loadToken, span);
+            } else {
+                updateScheduler.replace(comptes, span);
             }
-        });
+            return;
+        }
+        WindowedCompteSource source = CompteRepository.openWindowedSnapshot(WINDOW_MARGIN,
+                ContextCompat.getMainExecutor(this), adapter);
+        if (source == null) {
+            if (span != null) {
+                span.end();
+            }
+        } else if (loadToken != null) {
+            updateScheduler.showWindowed(source, loadToken, span);
+        } else {
+            updateScheduler.showWindowed(source, span);
+        }
     }
 
     /**
      * Callback method triggered when the update button is clicked on an account
      * item.
-     * Opens the update dialog pre-populated with the account's current data.
+     * The row only holds the summary projection, so the full account is fetched
+     * first; the update then sends every field back unchanged. If the fetch
+     * fails, or the account was created offline, the dialog opens with the
+     * row's data.
      * 
      * @param compte The Compte object to be updated
      */
     @Override
     public void onUpdateClick(Compte compte) {
-        showUpdateCompteDialog(compte);
+        InteractionTracer.Span span = InteractionTracer.begin("compte.edit.open");
+        if (compte.getId() != null && compte.getId() < 0) {
+            // Created offline: the backend does not know it, the row is complete
+            showUpdateCompteDialog(compte);
+            endAfterNextFrame(span);
+            return;
+        }
+        try (InteractionTracer.Scope scope = span.makeCurrent()) {
+            new CompteRepository(selectedFormat).getCompteById(compte.getId(), new Callback<Compte>() {
+                @Override
+                public void onResponse(Call<Compte> call, Response<Compte> response) {
+                    Compte full = response.isSuccessful() && response.body() != null ? response.body() : compte;
+                    runOnUiThread(() -> {
+                        showUpdateCompteDialog(full);
+                        endAfterNextFrame(span);
+                    });
+                }
+
+                @Override
+                public void onFailure(Call<Compte> call, Throwable t) {
+                    runOnUiThread(() -> {
+                        showUpdateCompteDialog(compte);
+                        endAfterNextFrame(span);
+                    });
+                }
+            });
+        }
     }
 
     /**
@@ -239,7 +945,7 @@ public class MainActivity extends AppCompatActivity
      */
     private void showUpdateCompteDialog(Compte compte) {
         AlertDialog.Builder builder = new AlertDialog.Builder(MainActivity.this);
-        View dialogView = getLayoutInflater().inflate(R.layout.dialog_add_compte, null);
+        View dialogView = obtainDialogView();
 
         EditText etSolde = dialogView.findViewById(R.id.etSolde);
         RadioGroup typeGroup = dialogView.findViewById(R.id.typeGroup);
@@ -259,11 +965,12 @@ public class MainActivity extends AppCompatActivity
                             : "EPARGNE";
                     compte.setSolde(Double.parseDouble(solde));
                     compte.setType(type);
-                    updateCompte(compte);
+                    updateCompte(compte, InteractionTracer.begin("compte.update"));
                 })
                 .setNegativeButton("Annuler", null);
 
         AlertDialog dialog = builder.create();
+        dialog.setOnDismissListener(d -> releaseDialogView(dialogView));
         dialog.show();
     }
 
@@ -273,23 +980,35 @@ public class MainActivity extends AppCompatActivity
      * Reloads the account list on successful update.
      * 
      * @param compte The Compte object with updated data
+     * @param span   Trace of the interaction, ended when the result is drawn
      */
-    private void updateCompte(Compte compte) {
-        CompteRepository compteRepository = new CompteRepository("JSON");
-        compteRepository.updateCompte(compte.getId(), compte, new Callback<Compte>() {
-            @Override
-            public void onResponse(Call<Compte> call, Response<Compte> response) {
-                if (response.isSuccessful()) {
-                    showToast("Compte modifié");
-                    loadData("JSON");
+    private void updateCompte(Compte compte, InteractionTracer.Span span) {
+        CompteRepository compteRepository = new CompteRepository(selectedFormat);
+        long changeToken = updateScheduler.beginLoad();
+        try (InteractionTracer.Scope scope = span.makeCurrent()) {
+            compteRepository.updateCompte(compte.getId(), compte, new Callback<Compte>() {
+                @Override
+                public void onResponse(Call<Compte> call, Response<Compte> response) {
+                    if (response.isSuccessful()) {
+                        showToast("Compte modifié");
+                        refreshAfterMutation(span, compte.getId(), changeToken);
+                    } else {
+                        span.end();
+                    }
                 }
-            }
 
-            @Override
-            public void onFailure(Call<Compte> call, Throwable t) {
-                showToast("Erreur lors de la modification");
-            }
-        });
+                @Override
+                public void onFailure(Call<Compte> call, Throwable t) {
+                    span.end();
+                    if (t instanceof OfflineQueuedException) {
+                        updateScheduler.upsert(compte);
+                        showToast("Modification enregistrée hors ligne");
+                    } else {
+                        showToast("Erreur lors de la modification");
+                    }
+                }
+            });
+        }
     }
 
     /**
@@ -314,7 +1033,8 @@ public class MainActivity extends AppCompatActivity
         new AlertDialog.Builder(this)
                 .setTitle("Confirmation")
                 .setMessage("Voulez-vous vraiment supprimer ce compte ?")
-                .setPositiveButton("Oui", (dialog, which) -> deleteCompte(compte))
+                .setPositiveButton("Oui",
+                        (dialog, which) -> deleteCompte(compte, InteractionTracer.begin("compte.delete")))
                 .setNegativeButton("Non", null)
                 .show();
     }
@@ -325,23 +1045,35 @@ public class MainActivity extends AppCompatActivity
      * Reloads the account list on successful deletion.
      * 
      * @param compte The Compte object to be deleted
+     * @param span   Trace of the interaction, ended when the result is drawn
      */
-    private void deleteCompte(Compte compte) {
-        CompteRepository compteRepository = new CompteRepository("JSON");
-        compteRepository.deleteCompte(compte.getId(), new Callback<Void>() {
-            @Override
-            public void onResponse(Call<Void> call, Response<Void> response) {
-                if (response.isSuccessful()) {
-                    showToast("Compte supprimé");
-                    loadData("JSON");
+    private void deleteCompte(Compte compte, InteractionTracer.Span span) {
+        CompteRepository compteRepository = new CompteRepository(selectedFormat);
+        long changeToken = updateScheduler.beginLoad();
+        try (InteractionTracer.Scope scope = span.makeCurrent()) {
+            compteRepository.deleteCompte(compte.getId(), new Callback<Void>() {
+                @Override
+                public void onResponse(Call<Void> call, Response<Void> response) {
+                    if (response.isSuccessful()) {
+                        showToast("Compte supprimé");
+                        refreshAfterMutation(span, compte.getId(), changeToken);
+                    } else {
+                        span.end();
+                    }
                 }
-            }
 
-            @Override
-            public void onFailure(Call<Void> call, Throwable t) {
-                showToast("Erreur lors de la suppression");
-            }
-        });
+                @Override
+                public void onFailure(Call<Void> call, Throwable t) {
+                    span.end();
+                    if (t instanceof OfflineQueuedException) {
+                        updateScheduler.remove(compte.getId());
+                        showToast("Suppression enregistrée hors ligne");
+                    } else {
+                        showToast("Erreur lors de la suppression");
+                    }
+                }
+            });
+        }
     }
 
     /**
@@ -0,0 +1,549 @@
+package ma.projet.restclient.adapter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+import ma.projet.restclient.metrics.InteractionTracer;
+import ma.projet.restclient.repository.WindowedCompteSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * AdapterUpdateScheduler - Applies changes to a CompteAdapter at most once
+ * per display frame.
+ *
+ * <p>
+ * Network callbacks post whole lists ({@link #replace}), single upserts and
+ * removals from any thread. Changes are merged while they wait: a list
+ * replaces every earlier change, and later changes of the same account
+ * override earlier ones (see CompteChanges). At the next vsync, the merged
+ * result is diffed once against what the adapter shows, so a burst of
+ * responses costs one diff and one layout pass. The diff is computed on a
+ * background thread and dispatched as fine-grained notifications at the
+ * first frame after it completes; changes arriving meanwhile are merged on
+ * top of the list it leads to and start a newer diff, the older result then
+ * being discarded. A diff is also discarded if the adapter no longer shows
+ * the list it was computed from, the new list being rebound instead.
+ * </p>
+ *
+ * <p>
+ * Posted lists are owned by the scheduler, then by the adapter, and must not
+ * be modified by the caller afterwards; they are shown without a copy.
+ * </p>
+ *
+ * <p>
+ * A list may be older than single changes posted while it was being
+ * fetched, e.g. pushed by the server between the request and the response.
+ * Single changes are therefore logged, and a list obtained with a token from
+ * {@link #beginLoad()} is applied with every change posted after the token
+ * re-applied on top of it. A list requested before the one last applied is
+ * dropped.
+ * </p>
+ *
+ * <p>
+ * An interaction whose result arrives as a pushed change, e.g. an edit
+ * echoed by the change stream, registers its span with
+ * {@link #endOnChange}; the span ends once the frame applying that change
+ * is drawn.
+ * </p>
+ *
+ * <p>
+ * Diffing is skipped, in favour of a full rebind, when the adapter shows a
+ * read-only source (mapped snapshot or windowed list) whose rows would have
+ * to be decoded, or when either list is larger than {@code MAX_DIFF_ROWS}.
+ * Single-account changes cannot be applied to a windowed source; the
+ * {@code reload} callback is then invoked so that a full list is fetched.
+ * </p>
+ *
+ * <p>
+ * Exported metrics: {@code adapterUpdates.requested} (changes posted),
+ * {@code adapterUpdates.frames} (frames that applied changes) and
+ * {@code adapterUpdates.fullRebinds}, {@code adapterUpdates.staleLists},
+ * {@code adapterUpdates.staleDiffs} (diffs superseded before being applied)
+ * and {@code adapterUpdates.awaitTimeouts} (counters).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class AdapterUpdateScheduler implements Choreographer.FrameCallback {
+    /** Lists above this size are rebound instead of diffed */
+    private static final int MAX_DIFF_ROWS = 10000;
+
+    /** Thread computing diffs, shared by every scheduler as diffs are rare */
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "AdapterUpdateScheduler");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Adapter receiving the changes */
+    private final CompteAdapter adapter;
+
+    /** Called on the main thread when changes cannot be applied incrementally */
+    private final Runnable reload;
+
+    /** Choreographer of the main thread */
+    private final Choreographer choreographer;
+
+    /** Handler of the main thread, used to end spans after the traversal */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** Changes waiting for the next frame, and the log of single changes */
+    private final CompteChanges changes = new CompteChanges();
+
+    /** Spans to close once the pending changes are drawn */
+    private final List<InteractionTracer.Span> pendingSpans = new ArrayList<>();
+
+    /** Whether a frame callback is posted */
+    private boolean frameScheduled = false;
+
+    /** Spans waiting for the next change of an account, by account id */
+    private final Map<Long, List<InteractionTracer.Span>> awaitedChanges = new HashMap<>();
+
+    /** Generation of the last diff started; main thread only */
+    private int diffGeneration = 0;
+
+    /** List the diff in progress leads to, null if none; main thread only */
+    private List<Compte> diffTarget = null;
+
+    /** Spans to close once the diff in progress is applied; main thread only */
+    private final List<InteractionTracer.Span> diffSpans = new ArrayList<>();
+
+    /** Diff computed and waiting for the next frame, null if none; main thread only */
+    private ComputedDiff readyDiff = null;
+
+    /**
+     * Constructs a scheduler. Must be called on the main thread.
+     *
+     * @param adapter Adapter receiving the changes
+     * @param reload  Called on the main thread when single-account changes
+     *                cannot be applied, e.g. to reload the list
+     */
+    public AdapterUpdateScheduler(CompteAdapter adapter, Runnable reload) {
+        this.adapter = adapter;
+        this.reload = reload;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Returns a token marking the changes posted so far. Taken before a list
+     * load is requested, it is passed back to
+     * {@link #replace(List, long, InteractionTracer.Span)} with the result;
+     * taken before a mutation is sent, to {@link #endOnChange}.
+     *
+     * @return The token
+     */
+    public synchronized long beginLoad() {
+        return changes.token();
+    }
+
+    /**
+     * Replaces the whole list at the next frame, discarding earlier pending
+     * changes but re-applying the single changes posted after the list was
+     * requested.
+     *
+     * @param comptes   The new list, owned by the scheduler from now on
+     * @param loadToken Token obtained from {@link #beginLoad()} before the
+     *                  list was requested
+     * @param span      Interaction to end once the list is drawn, may be null
+     */
+    public synchronized void replace(List<Compte> comptes, long loadToken, InteractionTracer.Span span) {
+        if (changes.postList(comptes, loadToken)) {
+            enqueued(span);
+        } else {
+            dropped(span);
+        }
+    }
+
+    /**
+     * Replaces the whole list at the next frame, for a list whose request
+     * time is unknown: every logged single change is re-applied on top of it.
+     *
+     * @param comptes The new list, owned by the scheduler from now on
+     * @param span    Interaction to end once the list is drawn, may be null
+     */
+    public synchronized void replace(List<Compte> comptes, InteractionTracer.Span span) {
+        replace(comptes, changes.listToken(), span);
+    }
+
+    /**
+     * Shows a windowed source instead of the list at the next frame, like
+     * {@link #replace(List, long, InteractionTracer.Span)}. Single changes
+     * cannot be applied to it: if any was posted after the token, the
+     * {@code reload} callback is invoked once the source is shown. A source
+     * that is dropped, stale or superseded before a frame shows it is closed.
+     *
+     * @param source    The source, opened with the adapter as its listener
+     * @param loadToken Token obtained from {@link #beginLoad()} before the
+     *                  list was requested
+     * @param span      Interaction to end once the source is drawn, may be
+     *                  null
+     */
+    public synchronized void showWindowed(WindowedCompteSource source, long loadToken, InteractionTracer.Span span) {
+        if (changes.postWindow(source, loadToken)) {
+            enqueued(span);
+        } else {
+            source.close();
+            dropped(span);
+        }
+    }
+
+    /**
+     * Shows a windowed source whose request time is unknown, see
+     * {@link #showWindowed(WindowedCompteSource, long, InteractionTracer.Span)}.
+     *
+     * @param source The source, opened with the adapter as its listener
+     * @param span   Interaction to end once the source is drawn, may be null
+     */
+    public synchronized void showWindowed(WindowedCompteSource source, InteractionTracer.Span span) {
+        showWindowed(source, changes.listToken(), span);
+    }
+
+    /**
+     * Inserts or replaces one account, matched by id, at the next frame.
+     *
+     * @param compte The new state of the account
+     */
+    public synchronized void upsert(Compte compte) {
+        if (compte.getId() == null) {
+            return;
+        }
+        posted(compte.getId(), compte);
+    }
+
+    /**
+     * Removes one account at the next frame.
+     *
+     * @param id The account id
+     */
+    public synchronized void remove(Long id) {
+        if (id == null) {
+            return;
+        }
+        posted(id, null);
+    }
+
+    /**
+     * Ends a span once a change of the given account, posted after the token
+     * was taken, is drawn. Used when the result of an interaction is pushed
+     * back by the server rather than returned to the caller. If no such
+     * change is posted within the timeout, the span ends then.
+     *
+     * @param id            The account id
+     * @param sinceToken    Token from {@link #beginLoad()} taken before the
+     *                      interaction was sent; a change posted after it
+     *                      counts even if posted before this call
+     * @param span          The span to end
+     * @param timeoutMillis Maximum wait for the change
+     */
+    public synchronized void endOnChange(final Long id, long sinceToken, final InteractionTracer.Span span,
+            long timeoutMillis) {
+        if (id == null || changes.changedSince(id, sinceToken)) {
+            // Already posted: ends with the frame applying it, or the next one
+            enqueued(span);
+            return;
+        }
+        List<InteractionTracer.Span> spans = awaitedChanges.get(id);
+        if (spans == null) {
+            spans = new ArrayList<>();
+            awaitedChanges.put(id, spans);
+        }
+        spans.add(span);
+        mainHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (AdapterUpdateScheduler.this) {
+                    List<InteractionTracer.Span> waiting = awaitedChanges.get(id);
+                    if (waiting == null || !waiting.remove(span)) {
+                        return;
+                    }
+                    if (waiting.isEmpty()) {
+                        awaitedChanges.remove(id);
+                    }
+                }
+                ClientMetrics.increment("adapterUpdates.awaitTimeouts");
+                span.end();
+            }
+        }, timeoutMillis);
+    }
+
+    /**
+     * Posts a single change and releases the spans waiting for it. Callers
+     * must hold the lock.
+     *
+     * @param id     The account id
+     * @param compte The new state of the account, null for a removal
+     */
+    private void posted(Long id, Compte compte) {
+        changes.post(id, compte);
+        List<InteractionTracer.Span> awaiting = awaitedChanges.remove(id);
+        if (awaiting != null) {
+            // Closed with the frame applying this change
+            pendingSpans.addAll(awaiting);
+        }
+        enqueued(null);
+    }
+
+    /**
+     * Records a stale list that was dropped. Callers must hold the lock.
+     *
+     * @param span Span of the list, may be null
+     */
+    private void dropped(InteractionTracer.Span span) {
+        ClientMetrics.increment("adapterUpdates.staleLists");
+        if (span != null) {
+            span.end();
+        }
+    }
+
+    /**
+     * Records a posted change and schedules a frame if needed. Callers must
+     * hold the lock.
+     *
+     * @param span Span to end once the change is drawn, may be null
+     */
+    private void enqueued(InteractionTracer.Span span) {
+        ClientMetrics.increment("adapterUpdates.requested");
+        if (span != null) {
+            pendingSpans.add(span);
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * Posts the frame callback unless already posted.
+     */
+    private synchronized void scheduleFrame() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Applies the diff computed since the last frame, then every pending
+     * change, at the start of a frame.
+     *
+     * @param frameTimeNanos Vsync time of the frame
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        CompteChanges.Batch batch;
+        List<InteractionTracer.Span> spans;
+        synchronized (this) {
+            frameScheduled = false;
+            batch = changes.take();
+            spans = new ArrayList<>(pendingSpans);
+            pendingSpans.clear();
+        }
+        ClientMetrics.increment("adapterUpdates.frames");
+        long start = System.nanoTime();
+        ComputedDiff ready = readyDiff;
+        readyDiff = null;
+        if (ready != null && ready.generation == diffGeneration) {
+            applyComputed(ready, spans);
+        }
+        if (batch.window != null) {
+            cancelDiff(spans);
+            ClientMetrics.increment("adapterUpdates.fullRebinds");
+            adapter.showWindowed(batch.window);
+            if (!batch.changes.isEmpty()) {
+                reload.run();
+            }
+        } else if (batch.list != null || !batch.changes.isEmpty()) {
+            apply(batch, spans);
+        }
+        long end = System.nanoTime();
+        for (final InteractionTracer.Span span : spans) {
+            span.phase("adapter.update", start, end);
+            // Runs after this frame's traversal, i.e. once the change is drawn
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    span.end();
+                }
+            });
+        }
+    }
+
+    /**
+     * Computes the new list and shows it: rebound at once if it cannot be
+     * diffed, otherwise diffed in the background and applied at a later
+     * frame, the spans then waiting for that frame.
+     *
+     * @param batch Pending changes, with a list or single changes
+     * @param spans Spans ending with this frame; moved out if they must wait
+     *              for the diff
+     */
+    private void apply(CompteChanges.Batch batch, List<InteractionTracer.Span> spans) {
+        if (batch.list == null && adapter.isWindowed()) {
+            reload.run();
+            return;
+        }
+        List<Compte> shown = adapter.currentList();
+        // Changes go on top of the list the diff in progress leads to, if any
+        List<Compte> base = batch.list != null ? batch.list : diffTarget != null ? diffTarget : shown;
+        List<Compte> updated = CompteChanges.merge(base, batch.changes);
+        if (adapter.isReadOnly() || shown.size() > MAX_DIFF_ROWS || updated.size() > MAX_DIFF_ROWS) {
+            cancelDiff(spans);
+            ClientMetrics.increment("adapterUpdates.fullRebinds");
+            adapter.replaceData(updated);
+            return;
+        }
+        diffSpans.addAll(spans);
+        spans.clear();
+        startDiff(shown, updated);
+    }
+
+    /**
+     * Diffs two lists on the background thread and schedules a frame to apply
+     * the result, unless a newer diff or rebind supersedes it first.
+     *
+     * @param shown   The list shown by the adapter
+     * @param updated The list to show
+     */
+    private void startDiff(final List<Compte> shown, final List<Compte> updated) {
+        final int generation = ++diffGeneration;
+        diffTarget = updated;
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new CompteDiff(shown, updated), false);
+                final ComputedDiff computed = new ComputedDiff(generation, shown, updated, diff, start,
+                        System.nanoTime());
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != diffGeneration) {
+                            ClientMetrics.increment("adapterUpdates.staleDiffs");
+                            return;
+                        }
+                        readyDiff = computed;
+                        scheduleFrame();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Dispatches a computed diff, or rebinds the new list if the adapter no
+     * longer shows the list it was computed from.
+     *
+     * @param computed The diff of the current generation
+     * @param spans    Spans ending with this frame, joined by those waiting
+     *                 for the diff
+     */
+    private void applyComputed(ComputedDiff computed, List<InteractionTracer.Span> spans) {
+        if (adapter.currentList() == computed.oldList) {
+            adapter.applyDiff(computed.newList, computed.diff);
+        } else {
+            ClientMetrics.increment("adapterUpdates.fullRebinds");
+            adapter.replaceData(computed.newList);
+        }
+        for (InteractionTracer.Span span : diffSpans) {
+            span.phase("adapter.diff", computed.startNanos, computed.endNanos);
+        }
+        diffTarget = null;
+        spans.addAll(diffSpans);
+        diffSpans.clear();
+    }
+
+    /**
+     * Abandons the diff in progress, if any, when the list it leads to is
+     * replaced; its spans end with the replacement.
+     *
+     * @param spans Spans ending with this frame
+     */
+    private void cancelDiff(List<InteractionTracer.Span> spans) {
+        if (diffTarget == null) {
+            return;
+        }
+        diffGeneration++;
+        diffTarget = null;
+        spans.addAll(diffSpans);
+        diffSpans.clear();
+    }
+
+    /**
+     * A diff computed in the background, with the lists it relates.
+     */
+    private static final class ComputedDiff {
+        final int generation;
+        final List<Compte> oldList;
+        final List<Compte> newList;
+        final DiffUtil.DiffResult diff;
+        final long startNanos;
+        final long endNanos;
+
+        ComputedDiff(int generation, List<Compte> oldList, List<Compte> newList, DiffUtil.DiffResult diff,
+                long startNanos, long endNanos) {
+            this.generation = generation;
+            this.oldList = oldList;
+            this.newList = newList;
+            this.diff = diff;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+    }
+
+    /**
+     * Compares two account lists by id and displayed fields.
+     */
+    private static final class CompteDiff extends DiffUtil.Callback {
+        private final List<Compte> oldList;
+        private final List<Compte> newList;
+
+        CompteDiff(List<Compte> oldList, List<Compte> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            Compte before = oldList.get(oldPosition);
+            Compte after = newList.get(newPosition);
+            return before.getId() != null ? before.getId().equals(after.getId()) : before == after;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            Compte before = oldList.get(oldPosition);
+            Compte after = newList.get(newPosition);
+            return before.getSolde() == after.getSolde()
+                    && equal(before.getType(), after.getType())
+                    && equal(before.getDateCreation(), after.getDateCreation());
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -6,11 +6,16 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import ma.projet.restclient.R;
 import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+import ma.projet.restclient.repository.WindowedCompteSource;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -30,14 +35,26 @@ import java.util.List;
  * <li>Efficient ViewHolder pattern implementation</li>
  * <li>Click listener interfaces for update and delete operations</li>
  * <li>Dynamic data updates with notifyDataSetChanged()</li>
+ * <li>Incremental upsert/remove of single accounts</li>
+ * <li>Diffed list updates, batched per frame by AdapterUpdateScheduler</li>
+ * <li>Zero-copy display of a memory-mapped snapshot</li>
+ * <li>Bounded-memory display of a windowed, disk-backed source</li>
+ * <li>Item views inflated in the background ahead of the first scroll</li>
  * <li>Null-safe data binding</li>
  * </ul>
  * 
+ * <p>
+ * Exported metrics: {@code adapter.holders.prewarmed} and
+ * {@code adapter.holders.inflated} (counters, view holders created from a
+ * background-inflated view and inflated on the main thread respectively).
+ * </p>
+ * 
  * @author Mohamed
  * @version 1.0
  * @since 2025-11-09
  */
-public class CompteAdapter extends RecyclerView.Adapter<CompteAdapter.CompteViewHolder> {
+public class CompteAdapter extends RecyclerView.Adapter<CompteAdapter.CompteViewHolder>
+        implements WindowedCompteSource.Listener {
 
     /**
      * Interface for handling delete button click events on account items.
@@ -69,6 +86,19 @@ public class CompteAdapter extends RecyclerView.Adapter<CompteAdapter.CompteView
     /** List of accounts to be displayed */
     private List<Compte> comptes;
 
+    /** Whether {@link #comptes} is a read-only view (e.g. a mapped snapshot) */
+    private boolean readOnly = false;
+
+    /** Source shown by {@link #showWindowed}, null otherwise */
+    private WindowedCompteSource window = null;
+
+    /** Rows last reported on screen, handed to the next windowed source */
+    private int firstVisible = 0;
+    private int lastVisible = 0;
+
+    /** Item views inflated in the background, not yet wrapped in a holder */
+    private final ArrayDeque<View> prewarmedViews = new ArrayDeque<>();
+
     /** Listener for delete click events */
     private OnDeleteClickListener onDeleteClickListener;
 
@@ -89,7 +119,8 @@ public class CompteAdapter extends RecyclerView.Adapter<CompteAdapter.CompteView
 
     /**
      * Creates a new ViewHolder when needed by the RecyclerView.
-     * Inflates the item layout and wraps it in a ViewHolder.
+     * Uses a view inflated in the background by {@link #prewarm} if one is
+     * left, otherwise inflates the item layout on the spot.
      * 
      * @param parent   The ViewGroup into which the new View will be added
      * @param viewType The view type of the new View
@@ -98,11 +129,85 @@ public class CompteAdapter extends RecyclerView.Adapter<CompteAdapter.CompteView
     @NonNull
     @Override
     public CompteViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.item_compte, parent, false);
+        View view = prewarmedViews.poll();
+        if (view != null) {
+            ClientMetrics.increment("adapter.holders.prewarmed");
+        } else {
+            ClientMetrics.increment("adapter.holders.inflated");
+            view = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_compte, parent, false);
+        }
         return new CompteViewHolder(view);
     }
 
+    /**
+     * Fills the RecyclerView's recycled-view pool with ready view holders so
+     * that the first scroll binds rows instead of inflating them.
+     * 
+     * <p>
+     * Item layouts are inflated on the AsyncLayoutInflater thread, one at a
+     * time: the next inflation is requested when the previous one is
+     * delivered, as the inflater's request queue is small and blocks the main
+     * thread when full. The first view is measured against the RecyclerView
+     * to find how many rows fit in the viewport; the pool is sized to that
+     * plus {@code extraRows} and filled up to it. Only {@code findViewById}
+     * and holder creation run on the main thread, one row per message,
+     * between frames.
+     * </p>
+     * 
+     * <p>
+     * Must be called on the main thread, preferably before the first data set
+     * is bound so that its rows find ready holders. Before the first layout,
+     * the viewport is assumed to be as large as the display.
+     * </p>
+     * 
+     * @param recyclerView The RecyclerView this adapter is attached to
+     * @param extraRows    Holders beyond a full viewport, for the rows
+     *                     entering the screen during a fling
+     */
+    public void prewarm(final RecyclerView recyclerView, final int extraRows) {
+        final AsyncLayoutInflater inflater = new AsyncLayoutInflater(recyclerView.getContext());
+        inflater.inflate(R.layout.item_compte, recyclerView, new AsyncLayoutInflater.OnInflateFinishedListener() {
+            /** Holders still to create, known once the first row is measured */
+            private int remaining = -1;
+
+            @Override
+            public void onInflateFinished(@NonNull View view, int resid, ViewGroup parent) {
+                if (remaining < 0) {
+                    remaining = viewportRows(recyclerView, view) + extraRows;
+                    recyclerView.getRecycledViewPool().setMaxRecycledViews(0, remaining);
+                }
+                remaining--;
+                prewarmedViews.add(view);
+                recyclerView.getRecycledViewPool().putRecycledView(createViewHolder(recyclerView, 0));
+                if (remaining > 0) {
+                    inflater.inflate(R.layout.item_compte, recyclerView, this);
+                }
+            }
+        });
+    }
+
+    /**
+     * Computes how many rows fit in the RecyclerView, counting partially
+     * visible ones.
+     * 
+     * @param recyclerView The RecyclerView
+     * @param row          A row view, measured here at the RecyclerView's width
+     * @return The number of rows, at least 1
+     */
+    private static int viewportRows(RecyclerView recyclerView, View row) {
+        int width = recyclerView.getWidth() > 0
+                ? recyclerView.getWidth()
+                : recyclerView.getResources().getDisplayMetrics().widthPixels;
+        int height = recyclerView.getHeight() > 0
+                ? recyclerView.getHeight()
+                : recyclerView.getResources().getDisplayMetrics().heightPixels;
+        row.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        int rowHeight = Math.max(1, row.getMeasuredHeight());
+        return height / rowHeight + 2;
+    }
+
     /**
      * Binds data to a ViewHolder at the specified position.
      * Called by RecyclerView to display data at a specific position.
@@ -126,6 +231,17 @@ public class CompteAdapter extends RecyclerView.Adapter<CompteAdapter.CompteView
         return comptes.size();
     }
 
+    /**
+     * Returns the account displayed at a position.
+     * 
+     * @param position Position within the data set
+     * @return The account at this position, null if a windowed source has not
+     *         loaded it yet
+     */
+    public Compte getItem(int position) {
+        return comptes.get(position);
+    }
+
     /**
      * Updates the adapter's data set with new account data.
      * Clears existing data and adds new data, then notifies the RecyclerView of
@@ -134,11 +250,210 @@ public class CompteAdapter extends RecyclerView.Adapter<CompteAdapter.CompteView
      * @param newComptes The new list of accounts to display
      */
     public void updateData(List<Compte> newComptes) {
-        this.comptes.clear();
-        this.comptes.addAll(newComptes);
+        releaseWindow();
+        this.comptes = new ArrayList<>(newComptes);
+        this.readOnly = false;
         notifyDataSetChanged();
     }
 
+    /**
+     * Shows a new list by dispatching a precomputed diff against the current
+     * one, so that only changed rows are rebound.
+     * 
+     * @param newComptes The new list, owned by the adapter from now on
+     * @param diff       Diff from the current list to newComptes
+     */
+    void applyDiff(List<Compte> newComptes, DiffUtil.DiffResult diff) {
+        releaseWindow();
+        this.comptes = newComptes;
+        this.readOnly = false;
+        diff.dispatchUpdatesTo(this);
+    }
+
+    /**
+     * Shows a new list with a full rebind, without copying it as
+     * {@link #updateData(List)} does.
+     *
+     * @param newComptes The new list, owned by the adapter from now on
+     */
+    void replaceData(List<Compte> newComptes) {
+        releaseWindow();
+        this.comptes = newComptes;
+        this.readOnly = false;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Returns the list currently shown.
+     * 
+     * @return The data set, not to be modified
+     */
+    List<Compte> currentList() {
+        return comptes;
+    }
+
+    /**
+     * Tells whether the data set is a read-only view, e.g. a mapped snapshot.
+     * 
+     * @return true if rows are decoded on access
+     */
+    boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Tells whether a windowed source is shown.
+     * 
+     * @return true if single-row changes cannot be applied
+     */
+    boolean isWindowed() {
+        return window != null;
+    }
+
+    /**
+     * Displays a read-only list without copying it. Used for the memory-mapped
+     * cold-start snapshot: rows are decoded only when they are bound.
+     * 
+     * @param rows The read-only list to display
+     */
+    public void showSnapshot(List<Compte> rows) {
+        releaseWindow();
+        this.comptes = rows;
+        this.readOnly = true;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Displays a windowed source. Rows not loaded yet are bound as
+     * placeholders and rebound when {@link #onRowsLoaded} reports them; the
+     * source must have been opened with this adapter as its listener.
+     * The source starts loading around the rows last reported on screen;
+     * the caller reports scrolling through {@link #setVisibleRange}.
+     * 
+     * @param source The windowed source to display
+     */
+    public void showWindowed(WindowedCompteSource source) {
+        releaseWindow();
+        this.comptes = source;
+        this.readOnly = true;
+        this.window = source;
+        source.setVisibleRange(firstVisible, lastVisible);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Reports the rows currently on screen, so that a windowed source can load
+     * them and evict the others. In-memory lists only remember the range for
+     * the next windowed source.
+     * 
+     * @param firstVisible Position of the first visible row
+     * @param lastVisible  Position of the last visible row
+     */
+    public void setVisibleRange(int firstVisible, int lastVisible) {
+        this.firstVisible = firstVisible;
+        this.lastVisible = lastVisible;
+        if (window != null) {
+            window.setVisibleRange(firstVisible, lastVisible);
+        }
+    }
+
+    /**
+     * Rebinds rows of the windowed source once they are resident. Must be
+     * called on the main thread.
+     * 
+     * @param from  Position of the first loaded row
+     * @param count Number of loaded rows
+     */
+    @Override
+    public void onRowsLoaded(int from, int count) {
+        if (window != null && from + count <= window.size()) {
+            notifyItemRangeChanged(from, count);
+        }
+    }
+
+    /**
+     * Stops the background loading of the windowed source, if one is shown.
+     */
+    public void releaseWindow() {
+        if (window != null) {
+            window.close();
+            window = null;
+        }
+    }
+
+    /**
+     * Copies a read-only data set into a mutable list before a single-row
+     * change.
+     */
+    private void ensureMutable() {
+        if (readOnly) {
+            comptes = new ArrayList<>(comptes);
+            readOnly = false;
+        }
+    }
+
+    /**
+     * Inserts or replaces a single account, matched by id.
+     * Used to apply changes pushed by the server without reloading the list.
+     * A windowed source is never copied into memory, so the change is not
+     * applied and the caller should reload instead.
+     * 
+     * @param compte The new state of the account
+     * @return false if the change could not be applied
+     */
+    public boolean upsert(Compte compte) {
+        if (window != null) {
+            return false;
+        }
+        ensureMutable();
+        int position = indexOf(compte.getId());
+        if (position >= 0) {
+            comptes.set(position, compte);
+            notifyItemChanged(position);
+        } else {
+            comptes.add(compte);
+            notifyItemInserted(comptes.size() - 1);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a single account, matched by id.
+     * 
+     * @param id The id of the account to remove
+     * @return false if the change could not be applied (windowed source)
+     */
+    public boolean remove(Long id) {
+        if (window != null) {
+            return false;
+        }
+        ensureMutable();
+        int position = indexOf(id);
+        if (position >= 0) {
+            comptes.remove(position);
+            notifyItemRemoved(position);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the position of an account in the data set.
+     * 
+     * @param id The account id to look for
+     * @return The position of the account, or -1 if absent
+     */
+    private int indexOf(Long id) {
+        if (id == null) {
+            return -1;
+        }
+        for (int i = 0; i < comptes.size(); i++) {
+            if (id.equals(comptes.get(i).getId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * ViewHolder class for account items.
      * Holds references to all views within an item layout and handles data binding.
@@ -173,14 +488,27 @@ public class CompteAdapter extends RecyclerView.Adapter<CompteAdapter.CompteView
          * Binds account data to the view components.
          * Handles null checks and formats data for display.
          * Sets up click listeners for update and delete buttons.
+         * A null account (row not loaded yet) is shown as a placeholder.
          * 
-         * @param compte The Compte object to display
+         * @param compte The Compte object to display, may be null
          */
         public void bind(Compte compte) {
-            if (compte == null)
+            if (compte == null) {
+                tvId.setText("ID: …");
+                tvSolde.setText("Solde: …");
+                tvType.setText("Type: …");
+                tvDate.setText("Date: …");
+                btnDelete.setOnClickListener(null);
+                btnUpdate.setOnClickListener(null);
                 return;
+            }
 
-            tvId.setText("ID: " + (compte.getId() != null ? compte.getId() : "N/A"));
+            if (compte.getId() != null && compte.getId() < 0) {
+                // Created offline, waiting in the outbox for its server id
+                tvId.setText("ID: en attente");
+            } else {
+                tvId.setText("ID: " + (compte.getId() != null ? compte.getId() : "N/A"));
+            }
             tvSolde.setText(String.format("Solde: %.2f", compte.getSolde()));
             tvType.setText("Type: " + (compte.getType() != null ? compte.getType() : "N/A"));
             tvDate.setText("Date: " + (compte.getDateCreation() != null ? compte.getDateCreation() : "N/A"));
@@ -0,0 +1,250 @@
+package ma.projet.restclient.adapter;
+
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.repository.WindowedCompteSource;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CompteChanges - Changes to the account list waiting for the next frame,
+ * and the log of recent single changes.
+ *
+ * <p>
+ * A posted list (or windowed source) replaces every earlier pending change;
+ * later single changes of the same account override earlier ones. Single
+ * changes are also logged, so that a list fetched while they were posted can
+ * be corrected: a list posted with a token from {@link #token()} gets every
+ * change logged after the token re-applied on top of it, and a list
+ * requested before the one last posted is stale. The log keeps the last
+ * {@code MAX_LOGGED_CHANGES} accounts changed.
+ * </p>
+ *
+ * <p>
+ * Holds no Android state, so that the merging rules are tested on the JVM.
+ * Not thread-safe; the AdapterUpdateScheduler calls it under its own lock.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+class CompteChanges {
+    /** Single changes kept for lists still being fetched */
+    static final int MAX_LOGGED_CHANGES = 1024;
+
+    /** Pending full list, null if none */
+    private List<Compte> pendingList = null;
+
+    /** Pending windowed source replacing the list, null if none */
+    private WindowedCompteSource pendingWindow = null;
+
+    /** Pending single changes by account id, in arrival order; null value means removal */
+    private final Map<Long, Compte> pendingChanges = new LinkedHashMap<>();
+
+    /** Recent single changes by account id, oldest first */
+    private final LinkedHashMap<Long, LoggedChange> changeLog = new LinkedHashMap<>();
+
+    /** Sequence of the last single change posted */
+    private long changeSequence = 0;
+
+    /** Token of the last list posted */
+    private long listToken = 0;
+
+    /**
+     * Pending changes taken at once by a frame.
+     */
+    static final class Batch {
+        /** Full list replacing the shown one, null if none */
+        final List<Compte> list;
+
+        /** Windowed source replacing the shown list, null if none */
+        final WindowedCompteSource window;
+
+        /** Single changes by id, in arrival order; null value means removal */
+        final Map<Long, Compte> changes;
+
+        Batch(List<Compte> list, WindowedCompteSource window, Map<Long, Compte> changes) {
+            this.list = list;
+            this.window = window;
+            this.changes = changes;
+        }
+    }
+
+    /**
+     * Returns a token marking the single changes posted so far.
+     *
+     * @return The token
+     */
+    long token() {
+        return changeSequence;
+    }
+
+    /**
+     * Returns the token of the last list posted, for lists whose request time
+     * is unknown.
+     *
+     * @return The token
+     */
+    long listToken() {
+        return listToken;
+    }
+
+    /**
+     * Posts a full list, unless stale. Earlier pending data is discarded, and
+     * the single changes logged after the token are queued again.
+     *
+     * @param comptes   The new list, owned by the caller no more
+     * @param loadToken Token taken before the list was requested
+     * @return false if the list is stale and was dropped
+     */
+    boolean postList(List<Compte> comptes, long loadToken) {
+        if (!listPosted(loadToken)) {
+            return false;
+        }
+        pendingList = comptes;
+        return true;
+    }
+
+    /**
+     * Posts a windowed source, like {@link #postList}. A pending source it
+     * supersedes is closed; a stale one is left to the caller.
+     *
+     * @param source    The source
+     * @param loadToken Token taken before the list was requested
+     * @return false if the source is stale and was dropped
+     */
+    boolean postWindow(WindowedCompteSource source, long loadToken) {
+        if (!listPosted(loadToken)) {
+            return false;
+        }
+        pendingWindow = source;
+        return true;
+    }
+
+    /**
+     * Discards the pending data replaced by a list and queues the changes
+     * logged after its token.
+     *
+     * @param loadToken Token of the list
+     * @return false if the list is stale
+     */
+    private boolean listPosted(long loadToken) {
+        if (loadToken < listToken) {
+            // A list requested later was already posted
+            return false;
+        }
+        listToken = loadToken;
+        pendingList = null;
+        if (pendingWindow != null) {
+            pendingWindow.close();
+            pendingWindow = null;
+        }
+        pendingChanges.clear();
+        Iterator<LoggedChange> iterator = changeLog.values().iterator();
+        while (iterator.hasNext()) {
+            LoggedChange logged = iterator.next();
+            if (logged.sequence <= loadToken) {
+                iterator.remove();
+            } else {
+                pendingChanges.put(logged.id, logged.compte);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Posts and logs the new state of one account.
+     *
+     * @param id     The account id
+     * @param compte The new state, null for a removal
+     */
+    void post(Long id, Compte compte) {
+        pendingChanges.remove(id);
+        pendingChanges.put(id, compte);
+        changeLog.remove(id);
+        changeLog.put(id, new LoggedChange(++changeSequence, id, compte));
+        if (changeLog.size() > MAX_LOGGED_CHANGES) {
+            Iterator<LoggedChange> oldest = changeLog.values().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Tells whether a change of an account was posted after a token and is
+     * still logged.
+     *
+     * @param id    The account id
+     * @param token Token from {@link #token()}
+     * @return true if such a change was posted
+     */
+    boolean changedSince(Long id, long token) {
+        LoggedChange logged = changeLog.get(id);
+        return logged != null && logged.sequence > token;
+    }
+
+    /**
+     * Takes every pending change; the log is kept.
+     *
+     * @return The pending changes
+     */
+    Batch take() {
+        Batch batch = new Batch(pendingList, pendingWindow, new LinkedHashMap<>(pendingChanges));
+        pendingList = null;
+        pendingWindow = null;
+        pendingChanges.clear();
+        return batch;
+    }
+
+    /**
+     * Applies single changes to a list: existing accounts are replaced in
+     * place, new ones appended, removed ones dropped.
+     *
+     * @param comptes The list, left unchanged
+     * @param changes Changes by id, null value meaning removal
+     * @return A new list, or {@code comptes} itself if there is no change
+     */
+    static List<Compte> merge(List<Compte> comptes, Map<Long, Compte> changes) {
+        if (changes.isEmpty()) {
+            return comptes;
+        }
+        Map<Long, Compte> remaining = new LinkedHashMap<>(changes);
+        List<Compte> merged = new ArrayList<>(comptes.size() + remaining.size());
+        for (Compte compte : comptes) {
+            Long id = compte.getId();
+            if (id != null && remaining.containsKey(id)) {
+                Compte change = remaining.remove(id);
+                if (change != null) {
+                    merged.add(change);
+                }
+            } else {
+                merged.add(compte);
+            }
+        }
+        for (Compte added : remaining.values()) {
+            if (added != null) {
+                merged.add(added);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * A single change and its position in the order of posting.
+     */
+    private static final class LoggedChange {
+        final long sequence;
+        final Long id;
+        final Compte compte;
+
+        LoggedChange(long sequence, Long id, Compte compte) {
+            this.sequence = sequence;
+            this.id = id;
+            this.compte = compte;
+        }
+    }
+}
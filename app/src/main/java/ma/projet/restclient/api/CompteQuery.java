@@ -0,0 +1,231 @@
+package ma.projet.restclient.api;
+
+import ma.projet.restclient.entities.Compte;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CompteQuery - Filter and sort criteria on accounts, evaluated by the server
+ * when it supports them and on the device otherwise.
+ *
+ * <p>
+ * Every criterion is optional; an empty query matches every account in
+ * server order. The same query is turned into request parameters with
+ * {@link #toQueryMap()} and evaluated locally with {@link #matches(Compte)}
+ * and {@link #comparator()}, so both paths return the same accounts.
+ * </p>
+ *
+ * <p>
+ * Query parameters:
+ * </p>
+ * <ul>
+ * <li>{@code type} - exact account type</li>
+ * <li>{@code soldeMin}, {@code soldeMax} - inclusive balance range</li>
+ * <li>{@code dateFrom}, {@code dateTo} - inclusive creation date range,
+ * yyyy-MM-dd</li>
+ * <li>{@code sort} - {@code field,asc} or {@code field,desc}, field one of
+ * id, solde, type, dateCreation</li>
+ * </ul>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class CompteQuery {
+    /** Required account type, null for any */
+    private String type;
+
+    /** Minimum balance, inclusive, null for none */
+    private Double soldeMin;
+
+    /** Maximum balance, inclusive, null for none */
+    private Double soldeMax;
+
+    /** Earliest creation date (yyyy-MM-dd), inclusive, null for none */
+    private String dateFrom;
+
+    /** Latest creation date (yyyy-MM-dd), inclusive, null for none */
+    private String dateTo;
+
+    /** Field to sort by, null to keep server order */
+    private String sortField;
+
+    /** Whether the sort is descending */
+    private boolean descending;
+
+    /**
+     * Restricts the query to one account type.
+     *
+     * @param type The account type, e.g. "COURANT"
+     * @return This query
+     */
+    public CompteQuery type(String type) {
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * Restricts the query to a balance range.
+     *
+     * @param min Minimum balance, inclusive, null for none
+     * @param max Maximum balance, inclusive, null for none
+     * @return This query
+     */
+    public CompteQuery solde(Double min, Double max) {
+        this.soldeMin = min;
+        this.soldeMax = max;
+        return this;
+    }
+
+    /**
+     * Restricts the query to a creation date range.
+     *
+     * @param from Earliest date (yyyy-MM-dd), inclusive, null for none
+     * @param to   Latest date (yyyy-MM-dd), inclusive, null for none
+     * @return This query
+     */
+    public CompteQuery createdBetween(String from, String to) {
+        this.dateFrom = from;
+        this.dateTo = to;
+        return this;
+    }
+
+    /**
+     * Sorts the result.
+     *
+     * @param field      One of "id", "solde", "type", "dateCreation"
+     * @param descending Whether to sort in descending order
+     * @return This query
+     */
+    public CompteQuery sortBy(String field, boolean descending) {
+        if (!"id".equals(field) && !"solde".equals(field) && !"type".equals(field)
+                && !"dateCreation".equals(field)) {
+            throw new IllegalArgumentException("Unknown sort field: " + field);
+        }
+        this.sortField = field;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * Returns the request parameters expressing this query.
+     *
+     * @return Parameters for a {@code @QueryMap}, without null entries
+     */
+    public Map<String, String> toQueryMap() {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (type != null) {
+            params.put("type", type);
+        }
+        if (soldeMin != null) {
+            params.put("soldeMin", String.valueOf(soldeMin));
+        }
+        if (soldeMax != null) {
+            params.put("soldeMax", String.valueOf(soldeMax));
+        }
+        if (dateFrom != null) {
+            params.put("dateFrom", dateFrom);
+        }
+        if (dateTo != null) {
+            params.put("dateTo", dateTo);
+        }
+        if (sortField != null) {
+            params.put("sort", sortField + (descending ? ",desc" : ",asc"));
+        }
+        return params;
+    }
+
+    /**
+     * Tells whether an account satisfies the filter criteria.
+     *
+     * @param compte The account
+     * @return true if every criterion holds
+     */
+    public boolean matches(Compte compte) {
+        if (type != null && !type.equals(compte.getType())) {
+            return false;
+        }
+        if (soldeMin != null && compte.getSolde() < soldeMin) {
+            return false;
+        }
+        if (soldeMax != null && compte.getSolde() > soldeMax) {
+            return false;
+        }
+        String date = compte.getDateCreation();
+        if (dateFrom != null && (date == null || date.compareTo(dateFrom) < 0)) {
+            return false;
+        }
+        if (dateTo != null && (date == null || date.compareTo(dateTo) > 0)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the order requested by the query.
+     *
+     * @return A comparator, or null to keep server order
+     */
+    public Comparator<Compte> comparator() {
+        if (sortField == null) {
+            return null;
+        }
+        final String field = sortField;
+        Comparator<Compte> ascending = new Comparator<Compte>() {
+            @Override
+            public int compare(Compte a, Compte b) {
+                switch (field) {
+                    case "id":
+                        return compareNullable(a.getId(), b.getId());
+                    case "solde":
+                        return Double.compare(a.getSolde(), b.getSolde());
+                    case "type":
+                        return compareNullable(a.getType(), b.getType());
+                    default:
+                        return compareNullable(a.getDateCreation(), b.getDateCreation());
+                }
+            }
+        };
+        return descending ? Collections.reverseOrder(ascending) : ascending;
+    }
+
+    /**
+     * Filters and sorts accounts on the device.
+     *
+     * @param comptes Accounts to evaluate
+     * @return A new list of the matching accounts, in the requested order
+     */
+    public List<Compte> apply(List<Compte> comptes) {
+        List<Compte> result = new ArrayList<>();
+        for (Compte compte : comptes) {
+            if (matches(compte)) {
+                result.add(compte);
+            }
+        }
+        Comparator<Compte> comparator = comparator();
+        if (comparator != null) {
+            Collections.sort(result, comparator);
+        }
+        return result;
+    }
+
+    /**
+     * Compares two values, nulls first.
+     *
+     * @param a   First value
+     * @param b   Second value
+     * @param <T> Type of the values
+     * @return The comparison result
+     */
+    private static <T extends Comparable<T>> int compareNullable(T a, T b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareTo(b);
+    }
+}
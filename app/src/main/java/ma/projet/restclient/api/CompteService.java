@@ -4,15 +4,22 @@ import ma.projet.restclient.entities.Compte;
 import ma.projet.restclient.entities.CompteList;
 
 import java.util.List;
+import java.util.Map;
 
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.DELETE;
 import retrofit2.http.GET;
+import retrofit2.http.HEAD;
+import retrofit2.http.Header;
 import retrofit2.http.Headers;
 import retrofit2.http.POST;
 import retrofit2.http.PUT;
 import retrofit2.http.Path;
+import retrofit2.http.Query;
+import retrofit2.http.QueryMap;
+import retrofit2.http.Streaming;
 
 /**
  * CompteService - Retrofit service interface for account API endpoints.
@@ -35,9 +42,16 @@ import retrofit2.http.Path;
  * </p>
  * <ul>
  * <li>GET - Retrieve all accounts or a specific account by ID</li>
+ * <li>GET with fields= - Retrieve a sparse projection of all accounts</li>
+ * <li>GET with page= and size= - Retrieve one page, total in X-Total-Count</li>
+ * <li>GET with filter/sort parameters - Search accounts (see CompteQuery)</li>
+ * <li>HEAD with filter parameters - Count matching accounts in
+ * X-Total-Count</li>
  * <li>POST - Create a new account</li>
  * <li>PUT - Update an existing account</li>
  * <li>DELETE - Remove an account</li>
+ * <li>GET events - Server-Sent Events stream of account changes</li>
+ * <li>GET streamed - Raw JSON body of all accounts, for bulk export</li>
  * </ul>
  * 
  * @author Mohamed
@@ -64,6 +78,90 @@ public interface CompteService {
     @Headers("Accept: application/xml")
     Call<CompteList> getAllCompteXml();
 
+    /**
+     * Retrieves a projection of all accounts in XML format.
+     * Only the requested fields are serialized by the server; the others are
+     * left at their default value in the decoded objects.
+     * 
+     * @param fields Comma-separated list of field names, e.g.
+     *               {@link Compte#SUMMARY_FIELDS}
+     * @return A Retrofit Call object containing a CompteList of partial Compte
+     *         objects
+     */
+    @GET("api/comptes")
+    @Headers("Accept: application/xml")
+    Call<CompteList> getCompteSummariesXml(@Query("fields") String fields);
+
+    /**
+     * Retrieves all accounts in JSON format as a raw, unbuffered body, so that
+     * a bulk export can decode and write them one at a time.
+     * 
+     * @return A Retrofit Call object whose body is the JSON array of accounts
+     */
+    @Streaming
+    @GET("api/comptes")
+    @Headers("Accept: application/json")
+    Call<ResponseBody> streamAllComptes();
+
+    /**
+     * Retrieves a projection of all accounts in JSON format as a raw,
+     * unbuffered body, so that the list can be written to the snapshot one
+     * account at a time.
+     * 
+     * @param fields Comma-separated list of field names, e.g.
+     *               {@link Compte#SUMMARY_FIELDS}
+     * @return A Retrofit Call object whose body is the JSON array of partial
+     *         accounts
+     */
+    @Streaming
+    @GET("api/comptes")
+    @Headers("Accept: application/json")
+    Call<ResponseBody> streamCompteSummaries(@Query("fields") String fields);
+
+    /**
+     * Retrieves one page of accounts in JSON format, in id order. The total
+     * number of accounts is returned in the {@code X-Total-Count} response
+     * header.
+     * 
+     * @param page Zero-based page index
+     * @param size Number of accounts per page
+     * @return A Retrofit Call object containing the accounts of the page
+     */
+    @GET("api/comptes")
+    @Headers("Accept: application/json")
+    Call<List<Compte>> getComptePageJson(@Query("page") int page, @Query("size") int size);
+
+    /**
+     * Retrieves the accounts matching a query in JSON format.
+     * 
+     * @param query Parameters built by {@link CompteQuery#toQueryMap()}
+     * @return A Retrofit Call object containing the matching accounts
+     */
+    @GET("api/comptes")
+    @Headers("Accept: application/json")
+    Call<List<Compte>> searchComptesJson(@QueryMap Map<String, String> query);
+
+    /**
+     * Retrieves the accounts matching a query in XML format.
+     * 
+     * @param query Parameters built by {@link CompteQuery#toQueryMap()}
+     * @return A Retrofit Call object containing a CompteList of the matching
+     *         accounts
+     */
+    @GET("api/comptes")
+    @Headers("Accept: application/xml")
+    Call<CompteList> searchComptesXml(@QueryMap Map<String, String> query);
+
+    /**
+     * Counts the accounts matching a query without transferring them. The
+     * count is returned in the {@code X-Total-Count} response header.
+     * 
+     * @param query Parameters built by {@link CompteQuery#toQueryMap()}
+     * @return A Retrofit Call object with no body
+     */
+    @HEAD("api/comptes")
+    Call<Void> countComptes(@QueryMap Map<String, String> query);
+
     /**
      * Retrieves a specific account by its unique identifier.
      * 
@@ -101,4 +199,19 @@ public interface CompteService {
      */
     @DELETE("api/comptes/{id}")
     Call<Void> deleteCompte(@Path("id") Long id);
+
+    /**
+     * Opens the Server-Sent Events stream of account changes.
+     * Each event carries an {@code id} (the cursor), an {@code event} type
+     * ({@code upsert}, {@code delete} or {@code resync}) and a JSON {@code data}
+     * payload. The body must be read incrementally, never buffered.
+     * 
+     * @param lastEventId Cursor of the last event received, null to receive
+     *                    only new events
+     * @return A Retrofit Call object whose body is the open event stream
+     */
+    @Streaming
+    @GET("api/comptes/events")
+    @Headers("Accept: text/event-stream")
+    Call<ResponseBody> streamChanges(@Header("Last-Event-ID") String lastEventId);
 }
\ No newline at end of file
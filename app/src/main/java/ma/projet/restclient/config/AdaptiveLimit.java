@@ -0,0 +1,135 @@
+package ma.projet.restclient.config;
+
+/**
+ * AdaptiveLimit - AIMD concurrency limit driven by backend latency and
+ * errors.
+ *
+ * <p>
+ * Each completed call reports its latency (request sent to response headers
+ * received) and whether it failed in a way that signals overload: timeout,
+ * HTTP 429 or 5xx. The limit is then adjusted:
+ * </p>
+ * <ul>
+ * <li>Multiplicative decrease (x {@code BACKOFF_RATIO}) on an overload signal,
+ * or when latency exceeds {@code LATENCY_TOLERANCE} times the no-load
+ * latency</li>
+ * <li>Additive increase (+1 per limit's worth of calls) while calls succeed
+ * fast and the limit is actually used</li>
+ * </ul>
+ *
+ * <p>
+ * The no-load latency is the minimum observed over a window of
+ * {@code WINDOW_SIZE} samples, refreshed at the end of each window so that it
+ * follows lasting changes of network or backend. Not thread-safe; the
+ * RequestScheduler calls it under its own lock.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class AdaptiveLimit {
+    /** Factor applied to the limit on congestion */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /** Latency above this multiple of the no-load latency is congestion */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    /** Latency increase always tolerated, absorbs jitter on fast links */
+    private static final long LATENCY_SLACK_NANOS = 5000000L;
+
+    /** Number of samples over which the no-load latency is measured */
+    private static final int WINDOW_SIZE = 100;
+
+    /** Lowest limit, so that work always progresses */
+    private final int minLimit;
+
+    /** Highest limit */
+    private int maxLimit;
+
+    /** Current limit, fractional so that additive increase is gradual */
+    private double limit;
+
+    /** No-load latency estimate, 0 until the first sample */
+    private long noLoadNanos = 0;
+
+    /** Minimum latency of the current window */
+    private long windowMinNanos = Long.MAX_VALUE;
+
+    /** Samples in the current window */
+    private int windowSamples = 0;
+
+    /**
+     * Constructs a limit starting at its maximum.
+     *
+     * @param minLimit Lowest limit, at least 1
+     * @param maxLimit Highest limit, and initial value
+     */
+    public AdaptiveLimit(int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("invalid bounds: " + minLimit + ".." + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = maxLimit;
+    }
+
+    /**
+     * Returns the number of calls that may currently run.
+     *
+     * @return The current limit
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Changes the highest limit, lowering the current one if needed.
+     *
+     * @param maxLimit Highest limit, at least the lowest one
+     */
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        limit = Math.min(limit, this.maxLimit);
+    }
+
+    /**
+     * Adjusts the limit after a call completed.
+     *
+     * @param latencyNanos Time from request sent to response headers, or a
+     *                     negative value if unknown
+     * @param inFlight     Calls running when this one completed, including it
+     * @param overloaded   Whether the call failed with an overload signal
+     */
+    public void onSample(long latencyNanos, int inFlight, boolean overloaded) {
+        boolean congested = overloaded;
+        if (!overloaded && latencyNanos >= 0) {
+            updateNoLoadLatency(latencyNanos);
+            congested = latencyNanos > noLoadNanos * LATENCY_TOLERANCE
+                    && latencyNanos > noLoadNanos + LATENCY_SLACK_NANOS;
+        }
+        if (congested) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        } else if (inFlight * 2 >= getLimit()) {
+            // Only grow a limit that is actually being used
+            limit = Math.min(maxLimit, limit + 1.0 / getLimit());
+        }
+    }
+
+    /**
+     * Folds a latency sample into the windowed minimum.
+     *
+     * @param latencyNanos The sample
+     */
+    private void updateNoLoadLatency(long latencyNanos) {
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+        if (noLoadNanos == 0 || latencyNanos < noLoadNanos) {
+            noLoadNanos = latencyNanos;
+        }
+        if (++windowSamples >= WINDOW_SIZE) {
+            noLoadNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+}
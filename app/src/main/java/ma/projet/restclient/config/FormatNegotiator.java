@@ -0,0 +1,308 @@
+package ma.projet.restclient.config;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import ma.projet.restclient.metrics.ClientMetrics;
+
+/**
+ * FormatNegotiator - Picks the cheaper wire format (JSON or XML) for list
+ * reads in "AUTO" mode.
+ *
+ * <p>
+ * Every response decoded through a Retrofit client of {@link RetrofitClient}
+ * is reported here with its row count, its size, the time spent downloading
+ * the body and the time spent decoding it; streamed list loads report the
+ * same. For each format a cost model {@code cost(rows) = fixed + perRow * rows}
+ * is fitted by least squares over the most recent list samples, so
+ * per-request overhead (parser setup) and per-row cost (bytes on the wire,
+ * parsing) are both accounted for. A read of the expected list size then
+ * goes to the format with the lowest estimated cost.
+ * </p>
+ *
+ * <p>
+ * Single-entity responses are counted in the metrics but kept out of the
+ * model: they are far more frequent than list loads and, all being one row,
+ * would crowd the list samples out of the window. When the samples give no
+ * per-row slope, e.g. all lists had the same size, the estimate is their mean
+ * cost rather than an extrapolation.
+ * </p>
+ *
+ * <p>
+ * Decision rules, in order:
+ * </p>
+ * <ul>
+ * <li>{@code unmeasured}: a format without samples is tried first</li>
+ * <li>{@code reevaluate}: after {@code reevaluateEveryReads} reads or
+ * {@code reevaluateIntervalMillis}, the other format is tried once so that its
+ * model follows changes of device load and network</li>
+ * <li>{@code cheaper}: otherwise, the format with the lowest estimate</li>
+ * </ul>
+ *
+ * <p>
+ * Exported metrics: {@code format.auto.<FORMAT>.<reason>} (counter per
+ * decision), {@code format.auto.expectedRows} and
+ * {@code format.auto.estimateMicros.<FORMAT>} (gauges),
+ * {@code format.<FORMAT>.responses}, {@code format.<FORMAT>.bytes} and
+ * {@code format.<FORMAT>.decodeMicros} (counters).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class FormatNegotiator {
+    /** Formats the negotiator chooses between */
+    private static final String[] FORMATS = { "JSON", "XML" };
+
+    /** Number of samples kept per format */
+    private static final int MAX_SAMPLES = 16;
+
+    /** Recent samples per format, oldest first */
+    private final Map<String, ArrayDeque<Sample>> samples = new HashMap<>();
+
+    /** Number of reads between two re-evaluations */
+    private int reevaluateEveryReads = 50;
+
+    /** Maximum time between two re-evaluations, in milliseconds */
+    private long reevaluateIntervalMillis = 5 * 60 * 1000L;
+
+    /** Row count of the last list received, used as the expected payload */
+    private int expectedRows = 0;
+
+    /** Reads decided since the last re-evaluation */
+    private int readsSinceReevaluation = 0;
+
+    /** Time of the last re-evaluation, in milliseconds */
+    private long lastReevaluationAt = now();
+
+    /** Format returned by the last decision */
+    private String chosenFormat = "JSON";
+
+    /** Human-readable reason of the last decision */
+    private String lastReason = "default";
+
+    /**
+     * Constructs a negotiator and registers its gauges.
+     */
+    public FormatNegotiator() {
+        for (String format : FORMATS) {
+            samples.put(format, new ArrayDeque<Sample>());
+            final String gaugeFormat = format;
+            ClientMetrics.registerGauge("format.auto.estimateMicros." + format, new ClientMetrics.Gauge() {
+                @Override
+                public Number value() {
+                    synchronized (FormatNegotiator.this) {
+                        double estimate = estimate(gaugeFormat, expectedRows);
+                        return Double.isNaN(estimate) ? -1 : (long) (estimate / 1000);
+                    }
+                }
+            });
+        }
+        ClientMetrics.registerGauge("format.auto.expectedRows", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                synchronized (FormatNegotiator.this) {
+                    return expectedRows;
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets how often the format not currently chosen is measured again.
+     *
+     * @param reads          Reads between re-evaluations, at least 1
+     * @param intervalMillis Maximum time between re-evaluations
+     */
+    public synchronized void setReevaluation(int reads, long intervalMillis) {
+        if (reads < 1) {
+            throw new IllegalArgumentException("reads < 1: " + reads);
+        }
+        this.reevaluateEveryReads = reads;
+        this.reevaluateIntervalMillis = intervalMillis;
+    }
+
+    /**
+     * Chooses the format of the next list read.
+     *
+     * @return "JSON" or "XML"
+     */
+    public synchronized String choose() {
+        String format = null;
+        String reason = null;
+        for (String candidate : FORMATS) {
+            if (samples.get(candidate).isEmpty()) {
+                format = candidate;
+                reason = "unmeasured";
+                break;
+            }
+        }
+        if (format == null && (readsSinceReevaluation >= reevaluateEveryReads
+                || now() - lastReevaluationAt >= reevaluateIntervalMillis)) {
+            format = other(chosenFormat);
+            reason = "reevaluate";
+            readsSinceReevaluation = 0;
+            lastReevaluationAt = now();
+        }
+        if (format == null) {
+            format = cheapest();
+            reason = "cheaper";
+            readsSinceReevaluation++;
+            chosenFormat = format;
+        }
+        lastReason = reason + describeEstimates();
+        ClientMetrics.increment("format.auto." + format + "." + reason);
+        return format;
+    }
+
+    /**
+     * Records the cost of one decoded response.
+     *
+     * @param format        "JSON" or "XML"
+     * @param rows          Number of accounts in the body, -1 for a single
+     *                      entity
+     * @param bytes         Size of the body
+     * @param transferNanos Time spent downloading the body
+     * @param decodeNanos   Time spent decoding the body
+     */
+    public synchronized void record(String format, int rows, long bytes, long transferNanos, long decodeNanos) {
+        ArrayDeque<Sample> formatSamples = samples.get(format);
+        if (formatSamples == null) {
+            return;
+        }
+        if (rows >= 0) {
+            expectedRows = rows;
+            formatSamples.addLast(new Sample(rows, transferNanos + decodeNanos));
+            while (formatSamples.size() > MAX_SAMPLES) {
+                formatSamples.removeFirst();
+            }
+        }
+        ClientMetrics.increment("format." + format + ".responses");
+        ClientMetrics.add("format." + format + ".bytes", bytes);
+        ClientMetrics.add("format." + format + ".decodeMicros", decodeNanos / 1000);
+    }
+
+    /**
+     * Returns the format that reads currently prefer, without counting a
+     * decision.
+     *
+     * @return "JSON" or "XML"
+     */
+    public synchronized String getChosenFormat() {
+        return chosenFormat;
+    }
+
+    /**
+     * Returns the reason of the last decision and the estimates it was based
+     * on, e.g. "cheaper (JSON 1200us, XML 3400us at 500 rows)".
+     *
+     * @return The last decision's reason
+     */
+    public synchronized String getLastReason() {
+        return lastReason;
+    }
+
+    /**
+     * Returns the measured format with the lowest estimated cost for the
+     * expected row count.
+     *
+     * @return The cheapest format
+     */
+    private String cheapest() {
+        String best = chosenFormat;
+        double bestCost = estimate(best, expectedRows);
+        for (String format : FORMATS) {
+            double cost = estimate(format, expectedRows);
+            if (!Double.isNaN(cost) && (Double.isNaN(bestCost) || cost < bestCost)) {
+                best = format;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Estimates the cost of reading a list in one format; exposed to the
+     * package for tests.
+     *
+     * @param format The format
+     * @param rows   Number of rows of the list
+     * @return Estimated transfer plus decode time in nanoseconds, NaN if the
+     *         format has no list samples
+     */
+    synchronized double estimate(String format, int rows) {
+        ArrayDeque<Sample> formatSamples = samples.get(format);
+        if (formatSamples.isEmpty()) {
+            return Double.NaN;
+        }
+        double n = formatSamples.size();
+        double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+        for (Sample sample : formatSamples) {
+            sumX += sample.rows;
+            sumY += sample.nanos;
+            sumXX += (double) sample.rows * sample.rows;
+            sumXY += (double) sample.rows * sample.nanos;
+        }
+        double variance = n * sumXX - sumX * sumX;
+        if (variance > 0) {
+            double perRow = (n * sumXY - sumX * sumY) / variance;
+            double fixed = (sumY - perRow * sumX) / n;
+            if (perRow >= 0) {
+                return Math.max(0, fixed + perRow * rows);
+            }
+        }
+        // All samples of the same size, or a noisy fit: no slope to extrapolate
+        return sumY / n;
+    }
+
+    /**
+     * Formats the current estimates for {@link #getLastReason()}.
+     *
+     * @return The estimates, e.g. " (JSON 1200us, XML 3400us at 500 rows)"
+     */
+    private String describeEstimates() {
+        StringBuilder builder = new StringBuilder(" (");
+        for (String format : FORMATS) {
+            double estimate = estimate(format, expectedRows);
+            builder.append(format).append(' ')
+                    .append(Double.isNaN(estimate) ? "?" : String.valueOf((long) (estimate / 1000)))
+                    .append("us, ");
+        }
+        builder.setLength(builder.length() - 2);
+        return builder.append(" at ").append(expectedRows).append(" rows)").toString();
+    }
+
+    /**
+     * Returns the format that is not the given one.
+     *
+     * @param format "JSON" or "XML"
+     * @return The other format
+     */
+    private static String other(String format) {
+        return "JSON".equals(format) ? "XML" : "JSON";
+    }
+
+    /**
+     * Returns a monotonic time in milliseconds.
+     *
+     * @return The current time
+     */
+    private static long now() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    /**
+     * Cost of one response.
+     */
+    private static final class Sample {
+        private final int rows;
+        private final long nanos;
+
+        Sample(int rows, long nanos) {
+            this.rows = rows;
+            this.nanos = nanos;
+        }
+    }
+}
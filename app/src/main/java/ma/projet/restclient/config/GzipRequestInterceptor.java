@@ -0,0 +1,77 @@
+package ma.projet.restclient.config;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * GzipRequestInterceptor - Opt-in gzip compression of large request bodies.
+ *
+ * <p>
+ * Disabled until a threshold is set with {@link #setThreshold(long)}, since
+ * the backend must accept {@code Content-Encoding: gzip} request bodies.
+ * Bodies of known length at or above the threshold are compressed in memory,
+ * so the compressed length can still be sent as Content-Length; smaller
+ * bodies, bodies of unknown length and already encoded bodies are sent as is.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class GzipRequestInterceptor implements Interceptor {
+    /** Minimum body size compressed, in bytes; negative when disabled */
+    private volatile long threshold = -1;
+
+    /**
+     * Sets the minimum size of the request bodies to compress.
+     *
+     * @param threshold Size in bytes, or a negative value to disable
+     *                  compression
+     */
+    public void setThreshold(long threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+        long limit = threshold;
+        if (limit < 0 || body == null || request.header("Content-Encoding") != null) {
+            return chain.proceed(request);
+        }
+        long length = body.contentLength();
+        if (length < 0 || length < limit) {
+            return chain.proceed(request);
+        }
+        return chain.proceed(request.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(request.method(), gzip(body))
+                .build());
+    }
+
+    /**
+     * Compresses a body in memory.
+     *
+     * @param body The uncompressed body
+     * @return A body of known length holding the gzip stream
+     * @throws IOException If the body cannot be written
+     */
+    private static RequestBody gzip(RequestBody body) throws IOException {
+        Buffer compressed = new Buffer();
+        BufferedSink gzipSink = Okio.buffer(new GzipSink(compressed));
+        body.writeTo(gzipSink);
+        gzipSink.close();
+        MediaType contentType = body.contentType();
+        return RequestBody.create(contentType, compressed.readByteString());
+    }
+}
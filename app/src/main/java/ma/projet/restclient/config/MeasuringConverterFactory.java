@@ -0,0 +1,138 @@
+package ma.projet.restclient.config;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import ma.projet.restclient.entities.CompteList;
+
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * MeasuringConverterFactory - Decorates a converter factory to report the
+ * size, download time and decode time of each response body to the
+ * {@link FormatNegotiator}.
+ *
+ * <p>
+ * The body still streams into the delegate converter: the time spent inside
+ * reads of the underlying source (download and gzip inflation) is counted as
+ * transfer, the rest of the conversion as decoding. Bodies handled by
+ * Retrofit's built-in converters (ResponseBody, Void), such as streaming
+ * endpoints, never reach this factory; CompteSnapshotLoader reports its
+ * streamed list loads itself.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+final class MeasuringConverterFactory extends Converter.Factory {
+    /** Factory doing the actual conversion */
+    private final Converter.Factory delegate;
+
+    /** Wire format of the delegate, "JSON" or "XML" */
+    private final String format;
+
+    /** Receiver of the measurements */
+    private final FormatNegotiator negotiator;
+
+    /**
+     * Constructs a measuring decorator.
+     *
+     * @param delegate   Factory doing the actual conversion
+     * @param format     Wire format of the delegate
+     * @param negotiator Receiver of the measurements
+     */
+    MeasuringConverterFactory(Converter.Factory delegate, String format, FormatNegotiator negotiator) {
+        this.delegate = delegate;
+        this.format = format;
+        this.negotiator = negotiator;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations,
+            Retrofit retrofit) {
+        final Converter<ResponseBody, ?> converter = delegate.responseBodyConverter(type, annotations, retrofit);
+        if (converter == null) {
+            return null;
+        }
+        return new Converter<ResponseBody, Object>() {
+            @Override
+            public Object convert(ResponseBody body) throws IOException {
+                TimedSource source = new TimedSource(body.source());
+                long start = System.nanoTime();
+                Object value;
+                try {
+                    value = converter.convert(
+                            ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(source)));
+                } finally {
+                    body.close();
+                }
+                long total = System.nanoTime() - start;
+                negotiator.record(format, rowCount(value), source.bytes, source.readNanos,
+                        total - source.readNanos);
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+            Annotation[] methodAnnotations, Retrofit retrofit) {
+        return delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+    }
+
+    @Override
+    public Converter<?, String> stringConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        return delegate.stringConverter(type, annotations, retrofit);
+    }
+
+    /**
+     * Source measuring the bytes read from the underlying body and the time
+     * spent waiting for them.
+     */
+    private static final class TimedSource extends ForwardingSource {
+        private long bytes = 0;
+        private long readNanos = 0;
+
+        TimedSource(Source delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long start = System.nanoTime();
+            long read = super.read(sink, byteCount);
+            readNanos += System.nanoTime() - start;
+            if (read > 0) {
+                bytes += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Counts the accounts of a decoded body.
+     *
+     * @param value The decoded body
+     * @return The number of accounts, -1 if the body is not a list
+     */
+    private static int rowCount(Object value) {
+        if (value instanceof List) {
+            return ((List<?>) value).size();
+        }
+        if (value instanceof CompteList) {
+            List<?> comptes = ((CompteList) value).getComptes();
+            return comptes != null ? comptes.size() : 0;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,243 @@
+package ma.projet.restclient.config;
+
+import ma.projet.restclient.metrics.ClientMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * MemoryBudgetManager - Shared heap budget of the client-side caches.
+ *
+ * <p>
+ * Every in-memory cache registers here with an estimate of its size and a
+ * rebuild cost per byte. Whenever a cache grows it calls
+ * {@link #onCacheGrown()}; if the caches together exceed the budget, bytes
+ * are shed from the cheapest-to-rebuild cache first (e.g. rows re-decoded
+ * from a local file before entities that need a network round trip), and
+ * only as many as needed. Under memory pressure {@link #trimToFraction}
+ * shrinks every cache the same way to a fraction of the budget.
+ * </p>
+ *
+ * <p>
+ * Exported metrics: {@code memory.budgetBytes}, {@code memory.usedBytes}
+ * (gauges), {@code memory.trims} (counter), and per registered cache
+ * {@code memory.<name>.bytes}, {@code memory.<name>.hitRate} (gauges) and
+ * {@code memory.<name>.evictedBytes} (counter).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class MemoryBudgetManager {
+
+    /**
+     * A cache whose memory is managed by the budget.
+     */
+    public interface Cache {
+        /**
+         * Returns the name used in metrics, e.g. "entityCache".
+         *
+         * @return The cache name
+         */
+        String name();
+
+        /**
+         * Estimates the heap held by the cache.
+         *
+         * @return Size in bytes
+         */
+        long sizeBytes();
+
+        /**
+         * Returns the relative cost of rebuilding one byte of this cache.
+         * Caches with the lowest cost are shed first.
+         *
+         * @return Rebuild cost per byte, e.g. 1 for a local decode
+         */
+        double rebuildCost();
+
+        /**
+         * Evicts entries, least valuable first, until about {@code bytes}
+         * have been released or the cache is empty.
+         *
+         * @param bytes Bytes to release
+         * @return Bytes actually released
+         */
+        long shed(long bytes);
+
+        /**
+         * Returns the number of lookups served from the cache.
+         *
+         * @return The hit count
+         */
+        long hitCount();
+
+        /**
+         * Returns the number of lookups the cache could not serve.
+         *
+         * @return The miss count
+         */
+        long missCount();
+    }
+
+    /** Registered caches, cheapest to rebuild first */
+    private final List<Cache> caches = new ArrayList<>();
+
+    /** Total heap the caches may hold, in bytes */
+    private volatile long budgetBytes;
+
+    /**
+     * Constructs a manager.
+     *
+     * @param budgetBytes Total heap the caches may hold, in bytes
+     */
+    public MemoryBudgetManager(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        ClientMetrics.registerGauge("memory.budgetBytes", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                return MemoryBudgetManager.this.budgetBytes;
+            }
+        });
+        ClientMetrics.registerGauge("memory.usedBytes", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                return usedBytes();
+            }
+        });
+    }
+
+    /**
+     * Changes the budget, e.g. to a fraction of the device's memory class,
+     * shedding bytes immediately if it is now exceeded.
+     *
+     * @param budgetBytes Total heap the caches may hold, in bytes
+     */
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        onCacheGrown();
+    }
+
+    /**
+     * Returns the budget.
+     *
+     * @return Total heap the caches may hold, in bytes
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * Registers a cache and its metrics. A cache registered under the name of
+     * a previous one replaces it.
+     *
+     * @param cache The cache
+     */
+    public void register(final Cache cache) {
+        synchronized (this) {
+            Cache previous = find(cache.name());
+            if (previous != null) {
+                caches.remove(previous);
+            }
+            caches.add(cache);
+            Collections.sort(caches, new Comparator<Cache>() {
+                @Override
+                public int compare(Cache a, Cache b) {
+                    return Double.compare(a.rebuildCost(), b.rebuildCost());
+                }
+            });
+        }
+        ClientMetrics.registerGauge("memory." + cache.name() + ".bytes", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                return cache.sizeBytes();
+            }
+        });
+        ClientMetrics.registerGauge("memory." + cache.name() + ".hitRate", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                long hits = cache.hitCount();
+                long lookups = hits + cache.missCount();
+                return lookups > 0 ? (double) hits / lookups : 0.0;
+            }
+        });
+        onCacheGrown();
+    }
+
+    /**
+     * Unregisters a cache, e.g. a list source that was closed. Its gauges
+     * keep reporting its last state.
+     *
+     * @param cache The cache
+     */
+    public synchronized void unregister(Cache cache) {
+        caches.remove(cache);
+    }
+
+    /**
+     * Enforces the budget. Called by caches after they add entries; must not
+     * be called while holding a cache's lock.
+     */
+    public void onCacheGrown() {
+        shrinkTo(budgetBytes);
+    }
+
+    /**
+     * Sheds memory in response to memory pressure: the caches are shrunk to
+     * the given fraction of the budget, cheapest to rebuild first.
+     *
+     * @param fraction Share of the budget to keep, 0 to empty every cache
+     */
+    public void trimToFraction(double fraction) {
+        ClientMetrics.increment("memory.trims");
+        shrinkTo((long) (budgetBytes * Math.max(0.0, Math.min(1.0, fraction))));
+    }
+
+    /**
+     * Returns the heap held by every registered cache.
+     *
+     * @return Size in bytes
+     */
+    public synchronized long usedBytes() {
+        long used = 0;
+        for (Cache cache : caches) {
+            used += cache.sizeBytes();
+        }
+        return used;
+    }
+
+    /**
+     * Sheds bytes from the cheapest caches until the total fits.
+     *
+     * @param targetBytes Total to reach
+     */
+    private synchronized void shrinkTo(long targetBytes) {
+        long excess = usedBytes() - targetBytes;
+        for (int i = 0; i < caches.size() && excess > 0; i++) {
+            Cache cache = caches.get(i);
+            long released = cache.shed(excess);
+            if (released > 0) {
+                ClientMetrics.add("memory." + cache.name() + ".evictedBytes", released);
+                excess -= released;
+            }
+        }
+    }
+
+    /**
+     * Finds a registered cache by name. Callers must hold the lock.
+     *
+     * @param name The cache name
+     * @return The cache, or null
+     */
+    private Cache find(String name) {
+        for (Cache cache : caches) {
+            if (cache.name().equals(name)) {
+                return cache;
+            }
+        }
+        return null;
+    }
+}
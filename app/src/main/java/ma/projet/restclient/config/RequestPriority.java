@@ -0,0 +1,24 @@
+package ma.projet.restclient.config;
+
+/**
+ * RequestPriority - Priority classes used by the RequestScheduler.
+ *
+ * <p>
+ * Constants are declared from the most to the least urgent; the scheduler
+ * relies on this declaration order when it picks the next call to run.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public enum RequestPriority {
+    /** User-initiated mutation from a dialog (add, update, delete) */
+    INTERACTIVE,
+
+    /** Fetch of the data currently displayed on screen */
+    VISIBLE,
+
+    /** Prefetch or background synchronization */
+    BACKGROUND
+}
@@ -0,0 +1,414 @@
+package ma.projet.restclient.config;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ma.projet.restclient.metrics.ClientMetrics;
+import ma.projet.restclient.metrics.InteractionTracer;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * RequestScheduler - Priority-aware dispatcher for Retrofit calls.
+ *
+ * <p>
+ * OkHttp's default dispatcher serves calls in arrival order, so a background
+ * refresh of the whole account list can delay an add/update/delete submitted
+ * from a dialog. This scheduler keeps its own ready queue ordered by
+ * {@link RequestPriority} and then by arrival, and runs each call
+ * synchronously on a worker thread once a slot is available.
+ * </p>
+ *
+ * <p>
+ * Scheduling rules:
+ * </p>
+ * <ul>
+ * <li>At most {@code maxRequests} calls run at the same time</li>
+ * <li>At most {@code maxRequestsPerHost} calls run against the same host, and
+ * fewer while the host is overloaded: an {@link AdaptiveLimit} per host
+ * shrinks when latency rises or calls fail with an overload signal, and grows
+ * back when the host recovers. Calls above the limit wait in the queue</li>
+ * <li>INTERACTIVE calls may use {@code interactiveReservedPerHost} slots
+ * beyond the host's current limit, so a mutation never waits behind running
+ * fetches, even when the limit has shrunk to one</li>
+ * <li>Only timeouts, HTTP 429 and 5xx count as overload signals; a canceled
+ * call, a refused connection or an unknown host says nothing about the
+ * host's load</li>
+ * </ul>
+ *
+ * <p>
+ * If an InteractionTracer span is current when a call is enqueued, the time
+ * spent queued, on the network and decoding the body is recorded on it.
+ * </p>
+ *
+ * <p>
+ * Exported metrics: {@code scheduler.queueDepth}, {@code scheduler.inFlight}
+ * and {@code scheduler.limit.<host>} (gauges), {@code scheduler.overloads}
+ * (counter).
+ * </p>
+ *
+ * <p>
+ * Callbacks are invoked on the worker thread that executed the call, callers
+ * must switch to the main thread before touching views.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class RequestScheduler {
+    /** Pool running the calls; threads are created on demand and reclaimed when idle */
+    private final ExecutorService executorService;
+
+    /** Calls waiting for a slot, ordered by priority then arrival */
+    private final TreeSet<ScheduledCall<?>> readyCalls = new TreeSet<>();
+
+    /** Number of running calls per host */
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+
+    /** Adaptive concurrency limit per host */
+    private final Map<String, AdaptiveLimit> limitsPerHost = new HashMap<>();
+
+    /** Total number of running calls */
+    private int runningCount = 0;
+
+    /** Monotonic counter used to keep FIFO order within a priority class */
+    private long nextSequence = 0;
+
+    /** Maximum number of concurrently running calls */
+    private int maxRequests = 64;
+
+    /** Maximum number of concurrently running calls per host */
+    private int maxRequestsPerHost = 5;
+
+    /** Number of per-host slots INTERACTIVE calls may use beyond the limit */
+    private int interactiveReservedPerHost = 1;
+
+    /**
+     * Constructs a scheduler backed by a cached pool of daemon worker threads.
+     */
+    public RequestScheduler() {
+        this(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new WorkerThreadFactory()));
+    }
+
+    /**
+     * Constructs a scheduler running calls on the given executor.
+     *
+     * @param executorService Executor used to run the calls
+     */
+    public RequestScheduler(ExecutorService executorService) {
+        this.executorService = executorService;
+        ClientMetrics.registerGauge("scheduler.queueDepth", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                return queuedCallsCount();
+            }
+        });
+        ClientMetrics.registerGauge("scheduler.inFlight", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                return runningCallsCount();
+            }
+        });
+    }
+
+    /**
+     * Sets the maximum number of concurrently running calls.
+     *
+     * @param maxRequests The global concurrency limit, at least 1
+     */
+    public void setMaxRequests(int maxRequests) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("maxRequests < 1: " + maxRequests);
+        }
+        synchronized (this) {
+            this.maxRequests = maxRequests;
+        }
+        promoteAndExecute();
+    }
+
+    /**
+     * Sets the maximum number of concurrently running calls per host.
+     *
+     * @param maxRequestsPerHost The per-host concurrency limit, at least 1
+     */
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("maxRequestsPerHost < 1: " + maxRequestsPerHost);
+        }
+        synchronized (this) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            for (AdaptiveLimit limit : limitsPerHost.values()) {
+                limit.setMaxLimit(maxRequestsPerHost);
+            }
+        }
+        promoteAndExecute();
+    }
+
+    /**
+     * Sets how many per-host slots INTERACTIVE calls may use beyond the
+     * host's limit.
+     *
+     * @param interactiveReservedPerHost Number of extra slots, at least 0
+     */
+    public void setInteractiveReservedPerHost(int interactiveReservedPerHost) {
+        if (interactiveReservedPerHost < 0) {
+            throw new IllegalArgumentException("interactiveReservedPerHost < 0: " + interactiveReservedPerHost);
+        }
+        synchronized (this) {
+            this.interactiveReservedPerHost = interactiveReservedPerHost;
+        }
+        promoteAndExecute();
+    }
+
+    /**
+     * Queues a call with the given priority.
+     *
+     * @param call     The Retrofit call to execute
+     * @param priority Priority class of the call
+     * @param callback Callback receiving the response or the failure
+     * @param <T>      Type of the response body
+     */
+    public <T> void enqueue(Call<T> call, RequestPriority priority, Callback<T> callback) {
+        synchronized (this) {
+            readyCalls.add(new ScheduledCall<>(call, priority, callback, nextSequence++));
+        }
+        promoteAndExecute();
+    }
+
+    /**
+     * Returns the number of calls waiting for a slot.
+     *
+     * @return The size of the ready queue
+     */
+    public synchronized int queuedCallsCount() {
+        return readyCalls.size();
+    }
+
+    /**
+     * Returns the number of calls currently executing.
+     *
+     * @return The number of running calls
+     */
+    public synchronized int runningCallsCount() {
+        return runningCount;
+    }
+
+    /**
+     * Moves eligible calls from the ready queue to the running set and starts
+     * them. Calls are examined in priority order; a call whose host is full is
+     * skipped so it does not block calls to other hosts.
+     */
+    private void promoteAndExecute() {
+        List<ScheduledCall<?>> executable = new ArrayList<>();
+        synchronized (this) {
+            Iterator<ScheduledCall<?>> iterator = readyCalls.iterator();
+            while (iterator.hasNext() && runningCount < maxRequests) {
+                ScheduledCall<?> scheduledCall = iterator.next();
+                Integer running = runningPerHost.get(scheduledCall.host);
+                int hostCount = running != null ? running : 0;
+                if (hostCount >= hostLimit(scheduledCall.host, scheduledCall.priority)) {
+                    continue;
+                }
+                iterator.remove();
+                runningPerHost.put(scheduledCall.host, hostCount + 1);
+                runningCount++;
+                executable.add(scheduledCall);
+            }
+        }
+        for (ScheduledCall<?> scheduledCall : executable) {
+            executorService.execute(scheduledCall);
+        }
+    }
+
+    /**
+     * Returns the current adaptive limit of a host.
+     *
+     * @param host The host name
+     * @return The number of calls that may run against the host
+     */
+    public synchronized int currentLimit(String host) {
+        return limitFor(host).getLimit();
+    }
+
+    /**
+     * Computes the per-host limit that applies to a priority class. Callers
+     * must hold the lock.
+     *
+     * @param host     Host of the candidate call
+     * @param priority Priority of the candidate call
+     * @return The number of per-host slots the call may compete for
+     */
+    private int hostLimit(String host, RequestPriority priority) {
+        int limit = Math.min(maxRequestsPerHost, limitFor(host).getLimit());
+        if (priority == RequestPriority.INTERACTIVE) {
+            return limit + interactiveReservedPerHost;
+        }
+        return limit;
+    }
+
+    /**
+     * Tells whether a call failure is a timeout: connect, read or whole-call.
+     * Other I/O errors do not reach the host or are not caused by its load.
+     *
+     * @param t The failure
+     * @return true for a timeout
+     */
+    private static boolean isTimeout(Throwable t) {
+        return t instanceof InterruptedIOException;
+    }
+
+    /**
+     * Returns the adaptive limit of a host, creating it on first use. Callers
+     * must hold the lock.
+     *
+     * @param host The host name
+     * @return The host's limit
+     */
+    private AdaptiveLimit limitFor(final String host) {
+        AdaptiveLimit limit = limitsPerHost.get(host);
+        if (limit == null) {
+            limit = new AdaptiveLimit(1, maxRequestsPerHost);
+            limitsPerHost.put(host, limit);
+            ClientMetrics.registerGauge("scheduler.limit." + host, new ClientMetrics.Gauge() {
+                @Override
+                public Number value() {
+                    return currentLimit(host);
+                }
+            });
+        }
+        return limit;
+    }
+
+    /**
+     * Releases the slot held by a finished call, feeds its outcome to the
+     * host's adaptive limit and starts the next calls.
+     *
+     * @param scheduledCall The call that just completed
+     * @param latencyNanos  Request sent to response headers, negative if
+     *                      unknown
+     * @param overloaded    Whether the call failed with an overload signal
+     */
+    private void finished(ScheduledCall<?> scheduledCall, long latencyNanos, boolean overloaded) {
+        if (overloaded) {
+            ClientMetrics.increment("scheduler.overloads");
+        }
+        synchronized (this) {
+            Integer running = runningPerHost.get(scheduledCall.host);
+            limitFor(scheduledCall.host).onSample(latencyNanos, running != null ? running : 1, overloaded);
+            if (running == null || running <= 1) {
+                runningPerHost.remove(scheduledCall.host);
+            } else {
+                runningPerHost.put(scheduledCall.host, running - 1);
+            }
+            runningCount--;
+        }
+        promoteAndExecute();
+    }
+
+    /**
+     * A queued call together with its scheduling metadata.
+     *
+     * @param <T> Type of the response body
+     */
+    private final class ScheduledCall<T> implements Runnable, Comparable<ScheduledCall<?>> {
+        private final Call<T> call;
+        private final RequestPriority priority;
+        private final Callback<T> callback;
+        private final long sequence;
+        private final String host;
+        private final InteractionTracer.Span span;
+        private final long enqueuedAt;
+
+        ScheduledCall(Call<T> call, RequestPriority priority, Callback<T> callback, long sequence) {
+            this.call = call;
+            this.priority = priority;
+            this.callback = callback;
+            this.sequence = sequence;
+            this.host = call.request().url().host();
+            this.span = InteractionTracer.current();
+            this.enqueuedAt = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            long latencyNanos = -1;
+            boolean overloaded = false;
+            try {
+                Response<T> response;
+                try {
+                    response = call.execute();
+                } catch (Throwable t) {
+                    overloaded = isTimeout(t) && !call.isCanceled();
+                    callback.onFailure(call, t);
+                    return;
+                }
+                latencyNanos = (response.raw().receivedResponseAtMillis()
+                        - response.raw().sentRequestAtMillis()) * 1000000L;
+                overloaded = response.code() == 429 || response.code() >= 500;
+                if (span != null) {
+                    tracePhases(response, startedAt);
+                }
+                callback.onResponse(call, response);
+            } finally {
+                finished(this, latencyNanos, overloaded);
+            }
+        }
+
+        /**
+         * Records the queue, network and decode phases on the captured span.
+         * OkHttp timestamps the reception of the response headers on the wall
+         * clock; it is converted to the monotonic clock to split network time
+         * from body download and decoding.
+         *
+         * @param response  The completed response
+         * @param startedAt When the call left the queue
+         */
+        private void tracePhases(Response<T> response, long startedAt) {
+            long finishedAt = System.nanoTime();
+            long headersAgoMillis = System.currentTimeMillis() - response.raw().receivedResponseAtMillis();
+            long headersAt = Math.max(startedAt, finishedAt - headersAgoMillis * 1000000L);
+            span.phase("queued:" + priority, enqueuedAt, startedAt);
+            span.phase("network", startedAt, headersAt);
+            span.phase("decode", headersAt, finishedAt);
+        }
+
+        @Override
+        public int compareTo(ScheduledCall<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            if (byPriority != 0) {
+                return byPriority;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Creates named daemon threads for the scheduler pool.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RequestScheduler-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,5 +1,12 @@
 package ma.projet.restclient.config;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ma.projet.restclient.metrics.ByteCountingInterceptor;
+
+import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 import retrofit2.converter.simplexml.SimpleXmlConverterFactory;
@@ -20,8 +27,13 @@ import retrofit2.converter.simplexml.SimpleXmlConverterFactory;
  * <ul>
  * <li>Singleton pattern implementation for resource efficiency</li>
  * <li>Dynamic converter selection (JSON/XML)</li>
- * <li>Automatic instance reuse when format hasn't changed</li>
+ * <li>One reusable instance per format, so AUTO mode can alternate freely</li>
+ * <li>Response size and decode cost measured per format for AUTO mode</li>
+ * <li>Gzip responses negotiated and inflated while the converters read them,
+ * opt-in gzip of large request bodies, byte counters per endpoint</li>
  * <li>Support for Android emulator (10.0.2.2) localhost connection</li>
+ * <li>Shared OkHttp client and priority-aware RequestScheduler</li>
+ * <li>One heap budget shared by every client-side cache</li>
  * </ul>
  * 
  * <p>
@@ -33,39 +45,159 @@ import retrofit2.converter.simplexml.SimpleXmlConverterFactory;
  * @since 2025-11-09
  */
 public class RetrofitClient {
-    /** Singleton Retrofit instance */
-    private static Retrofit retrofit = null;
-
-    /** Current converter format (JSON or XML) */
-    private static String currentFormat = null;
+    /** Retrofit instances indexed by converter format (JSON or XML) */
+    private static final Map<String, Retrofit> clients = new HashMap<>();
 
     /** Base URL for the REST API - Uses Android emulator localhost mapping */
     private static final String BASE_URL = "http://10.0.2.2:8082/";
 
+    /** OkHttp client shared by every Retrofit instance (connection pool reuse) */
+    private static OkHttpClient httpClient = null;
+
+    /** Scheduler through which every CompteService call is dispatched */
+    private static RequestScheduler scheduler = null;
+
+    /** Retrofit instance for long-lived streams (no read timeout) */
+    private static Retrofit streamingRetrofit = null;
+
+    /** Compression of large request bodies, disabled until a threshold is set */
+    private static final GzipRequestInterceptor requestCompression = new GzipRequestInterceptor();
+
+    /** Cost model shared by every repository in AUTO mode */
+    private static FormatNegotiator formatNegotiator = null;
+
+    /** Heap budget of the caches until the application sets its own */
+    private static final long DEFAULT_MEMORY_BUDGET_BYTES = 4L * 1024 * 1024;
+
+    /** Heap budget shared by every client-side cache */
+    private static MemoryBudgetManager memoryBudget = null;
+
+    /**
+     * Returns the shared OkHttp client, creating it on first use.
+     * 
+     * <p>
+     * Response compression needs no configuration: as long as no interceptor
+     * sets Accept-Encoding itself, OkHttp advertises gzip and inflates gzip
+     * bodies on the fly, so converters read a decompressed stream without the
+     * body ever being buffered whole. Application interceptors see
+     * uncompressed bodies and network interceptors see them as sent on the
+     * wire; a ByteCountingInterceptor at each level exposes both sizes.
+     * </p>
+     * 
+     * @return The OkHttpClient used by all Retrofit instances
+     */
+    public static synchronized OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            httpClient = new OkHttpClient.Builder()
+                    .addInterceptor(new ByteCountingInterceptor(false))
+                    .addInterceptor(requestCompression)
+                    .addNetworkInterceptor(new ByteCountingInterceptor(true))
+                    .build();
+        }
+        return httpClient;
+    }
+
+    /**
+     * Enables gzip compression of request bodies of at least the given size,
+     * e.g. bulk account creations. Only enable it if the backend accepts
+     * {@code Content-Encoding: gzip} requests.
+     * 
+     * @param thresholdBytes Minimum body size to compress, or a negative
+     *                       value to disable compression (the default)
+     */
+    public static void setRequestCompressionThreshold(long thresholdBytes) {
+        requestCompression.setThreshold(thresholdBytes);
+    }
+
+    /**
+     * Returns the shared request scheduler, creating it on first use.
+     * Per-host concurrency can be tuned through
+     * {@link RequestScheduler#setMaxRequestsPerHost(int)}.
+     * 
+     * @return The RequestScheduler used by all repositories
+     */
+    public static synchronized RequestScheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = new RequestScheduler();
+        }
+        return scheduler;
+    }
+
+    /**
+     * Returns the negotiator fed by every JSON and XML client, creating it on
+     * first use.
+     * 
+     * @return The FormatNegotiator used in AUTO mode
+     */
+    public static synchronized FormatNegotiator getFormatNegotiator() {
+        if (formatNegotiator == null) {
+            formatNegotiator = new FormatNegotiator();
+        }
+        return formatNegotiator;
+    }
+
+    /**
+     * Returns the memory budget every cache registers with, creating it on
+     * first use with a default budget; size it to the device through
+     * {@link MemoryBudgetManager#setBudgetBytes(long)}.
+     * 
+     * @return The MemoryBudgetManager shared by all caches
+     */
+    public static synchronized MemoryBudgetManager getMemoryBudget() {
+        if (memoryBudget == null) {
+            memoryBudget = new MemoryBudgetManager(DEFAULT_MEMORY_BUDGET_BYTES);
+        }
+        return memoryBudget;
+    }
+
+    /**
+     * Returns a Retrofit instance suited to long-lived streaming calls such as
+     * {@code streamChanges}. It shares the connection pool of the main client
+     * but disables the read timeout, since an idle event stream is normal.
+     * 
+     * @return A Retrofit instance for streaming endpoints
+     */
+    public static synchronized Retrofit getStreamingClient() {
+        if (streamingRetrofit == null) {
+            OkHttpClient client = getHttpClient().newBuilder()
+                    .readTimeout(0, TimeUnit.MILLISECONDS)
+                    .build();
+            streamingRetrofit = new Retrofit.Builder()
+                    .baseUrl(BASE_URL)
+                    .client(client)
+                    .build();
+        }
+        return streamingRetrofit;
+    }
+
     /**
      * Returns a configured Retrofit client instance.
-     * Creates a new instance only if none exists or if the converter type has
-     * changed.
+     * Creates a new instance only the first time a converter type is
+     * requested; later calls reuse it.
      * 
      * @param converterType The data format to use ("JSON" or "XML")
      * @return A configured Retrofit instance
      */
-    public static Retrofit getClient(String converterType) {
-        // Check if existing Retrofit instance can be reused
-        if (retrofit == null || !converterType.equals(currentFormat)) {
-            currentFormat = converterType;
+    public static synchronized Retrofit getClient(String converterType) {
+        // Check if an existing Retrofit instance can be reused
+        Retrofit retrofit = clients.get(converterType);
+        if (retrofit == null) {
             Retrofit.Builder builder = new Retrofit.Builder()
-                    .baseUrl(BASE_URL);
+                    .baseUrl(BASE_URL)
+                    .client(getHttpClient());
 
             // Add the appropriate converter factory based on the requested type
             if ("JSON".equals(converterType)) {
-                builder.addConverterFactory(GsonConverterFactory.create());
+                builder.addConverterFactory(new MeasuringConverterFactory(
+                        GsonConverterFactory.create(), converterType, getFormatNegotiator()));
             } else if ("XML".equals(converterType)) {
-                builder.addConverterFactory(SimpleXmlConverterFactory.createNonStrict());
+                builder.addConverterFactory(new MeasuringConverterFactory(
+                        SimpleXmlConverterFactory.createNonStrict(), converterType, getFormatNegotiator()));
             }
 
             retrofit = builder.build();
+            clients.put(converterType, retrofit);
         }
         return retrofit;
     }
-}
\ No newline at end of file
+}
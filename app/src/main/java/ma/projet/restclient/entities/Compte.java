@@ -32,26 +32,40 @@ import javax.xml.bind.annotation.XmlElement;
  * <li>@XmlElement - Additional XML binding for compatibility</li>
  * </ul>
  * 
+ * <p>
+ * List endpoints may return a sparse projection (see {@link #SUMMARY_FIELDS}).
+ * Every element except the id is therefore optional, and fields that were not
+ * requested keep their default value.
+ * </p>
+ * 
  * @author Mohamed
  * @version 1.0
  * @since 2025-11-09
  */
 @Root(name = "item", strict = false)
 public class Compte {
+    /**
+     * Fields shown by the list screen, requested through the fields=
+     * parameter. The list row shows every field of the entity today, so the
+     * projection is the whole entity; fields added later stay out of it
+     * unless the row shows them.
+     */
+    public static final String SUMMARY_FIELDS = "id,solde,type,dateCreation";
+
     /** Unique identifier for the account */
     @Element(name = "id")
     private Long id;
 
     /** Account balance amount */
-    @Element(name = "solde")
+    @Element(name = "solde", required = false)
     private double solde;
 
     /** Account type (COURANT or EPARGNE) */
-    @Element(name = "type")
+    @Element(name = "type", required = false)
     private String type;
 
     /** Date when the account was created (format: yyyy-MM-dd) */
-    @Element(name = "dateCreation")
+    @Element(name = "dateCreation", required = false)
     private String dateCreation;
 
     /**
@@ -0,0 +1,155 @@
+package ma.projet.restclient.metrics;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSink;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.Invocation;
+
+/**
+ * ByteCountingInterceptor - Counts request and response body bytes per
+ * endpoint in ClientMetrics.
+ *
+ * <p>
+ * Installed twice on the OkHttp client: as an application interceptor it sees
+ * bodies as the converters produce and consume them (uncompressed), as a
+ * network interceptor it sees them as they cross the wire (compressed when
+ * gzip was negotiated). Bodies are counted while they stream, nothing is
+ * buffered.
+ * </p>
+ *
+ * <p>
+ * The endpoint is the name of the CompteService method, taken from Retrofit's
+ * {@link Invocation} tag, or {@code other}. Exported counters:
+ * {@code http.<endpoint>.request.bytes}, {@code http.<endpoint>.response.bytes}
+ * (application) and {@code http.<endpoint>.request.wireBytes},
+ * {@code http.<endpoint>.response.wireBytes} (network).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class ByteCountingInterceptor implements Interceptor {
+    /** Suffix of the metric names, "bytes" or "wireBytes" */
+    private final String suffix;
+
+    /**
+     * Constructs an interceptor.
+     *
+     * @param network true when installed as a network interceptor
+     */
+    public ByteCountingInterceptor(boolean network) {
+        this.suffix = network ? "wireBytes" : "bytes";
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String prefix = "http." + endpoint(request) + ".";
+        if (request.body() != null) {
+            request = request.newBuilder()
+                    .method(request.method(), new CountingRequestBody(request.body(), prefix + "request." + suffix))
+                    .build();
+        }
+        Response response = chain.proceed(request);
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        BufferedSource counted = Okio.buffer(new CountingSource(body.source(), prefix + "response." + suffix));
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), counted))
+                .build();
+    }
+
+    /**
+     * Returns the endpoint name of a request.
+     *
+     * @param request The request
+     * @return The CompteService method name, or "other"
+     */
+    private static String endpoint(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        return invocation != null ? invocation.method().getName() : "other";
+    }
+
+    /**
+     * Request body adding the bytes it writes to a counter. Forwards the
+     * one-shot and duplex flags, so OkHttp never replays a body that can only
+     * be written once.
+     */
+    private static final class CountingRequestBody extends RequestBody {
+        private final RequestBody delegate;
+        private final String counter;
+
+        CountingRequestBody(RequestBody delegate, String counter) {
+            this.delegate = delegate;
+            this.counter = counter;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public boolean isDuplex() {
+            return delegate.isDuplex();
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return delegate.isOneShot();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            BufferedSink counting = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    super.write(source, byteCount);
+                    ClientMetrics.add(counter, byteCount);
+                }
+            });
+            delegate.writeTo(counting);
+            counting.emit();
+        }
+    }
+
+    /**
+     * Response source adding the bytes it reads to a counter.
+     */
+    private static final class CountingSource extends ForwardingSource {
+        private final String counter;
+
+        CountingSource(BufferedSource delegate, String counter) {
+            super(delegate);
+            this.counter = counter;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                ClientMetrics.add(counter, read);
+            }
+            return read;
+        }
+    }
+}
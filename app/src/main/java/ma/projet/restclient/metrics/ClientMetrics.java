@@ -0,0 +1,128 @@
+package ma.projet.restclient.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClientMetrics - Process-wide registry of client-side counters and gauges.
+ *
+ * <p>
+ * Counters are monotonic values incremented by the networking and repository
+ * layers (requests flushed, bytes received, ...). Gauges are sampled on demand
+ * from a supplier registered by the component that owns the value (queue
+ * depth, current limit, ...).
+ * </p>
+ *
+ * <p>
+ * Metric names are dot-separated, e.g. {@code outbox.depth}. A consistent
+ * view of every metric is returned by {@link #snapshot()}.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public final class ClientMetrics {
+
+    /**
+     * Supplier of an instantaneous metric value.
+     */
+    public interface Gauge {
+        /**
+         * Samples the current value.
+         *
+         * @return The current value of the gauge
+         */
+        Number value();
+    }
+
+    /** Monotonic counters indexed by name */
+    private static final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    /** Registered gauges indexed by name */
+    private static final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor - static registry only.
+     */
+    private ClientMetrics() {
+    }
+
+    /**
+     * Increments a counter by one.
+     *
+     * @param name Name of the counter
+     */
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Adds a delta to a counter, creating it on first use.
+     *
+     * @param name  Name of the counter
+     * @param delta Amount to add
+     */
+    public static void add(String name, long delta) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.addAndGet(delta);
+    }
+
+    /**
+     * Returns the current value of a counter.
+     *
+     * @param name Name of the counter
+     * @return The counter value, 0 if it was never incremented
+     */
+    public static long counter(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter != null ? counter.get() : 0;
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge previously registered under the
+     * same name.
+     *
+     * @param name  Name of the gauge
+     * @param gauge Supplier sampled when a snapshot is taken
+     */
+    public static void registerGauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Samples a single gauge.
+     *
+     * @param name Name of the gauge
+     * @return The sampled value, or null if no gauge has this name
+     */
+    public static Number gauge(String name) {
+        Gauge gauge = gauges.get(name);
+        return gauge != null ? gauge.value() : null;
+    }
+
+    /**
+     * Returns every counter and sampled gauge sorted by name.
+     *
+     * @return A new map containing all current metric values
+     */
+    public static Map<String, Number> snapshot() {
+        Map<String, Number> snapshot = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().value());
+        }
+        return snapshot;
+    }
+}
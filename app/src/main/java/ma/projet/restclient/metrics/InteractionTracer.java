@@ -0,0 +1,287 @@
+package ma.projet.restclient.metrics;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InteractionTracer - End-to-end latency tracing of user interactions.
+ *
+ * <p>
+ * A {@link Span} is opened when the user acts (add, edit, delete, format
+ * toggle) and closed at the frame where the result is drawn. In between,
+ * the layers it crosses record phases on it: time spent queued in the
+ * RequestScheduler, network, response decoding, adapter update.
+ * </p>
+ *
+ * <p>
+ * The span reaches the networking layer through {@link #current()}: the UI
+ * makes the span current around the repository call with
+ * {@link Span#makeCurrent()}, and the scheduler captures it at enqueue time.
+ * </p>
+ *
+ * <p>
+ * Frame durations reported by the UI are counted as slow (over 16 ms) or
+ * frozen (over 700 ms) in ClientMetrics ({@code frames.total},
+ * {@code frames.slow}, {@code frames.frozen}); slow frames are also kept as
+ * trace events. Completed spans and slow frames are exported in the Trace
+ * Event Format (JSON), which can be opened offline in chrome://tracing or
+ * Perfetto.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public final class InteractionTracer {
+    /** Frames longer than this are slow (one 60 Hz vsync interval) */
+    private static final long SLOW_FRAME_NANOS = 16000000L;
+
+    /** Frames longer than this are frozen */
+    private static final long FROZEN_FRAME_NANOS = 700000000L;
+
+    /** Maximum number of completed events kept for export */
+    private static final int MAX_EVENTS = 2000;
+
+    /** Origin of the exported timestamps */
+    private static final long EPOCH_NANOS = System.nanoTime();
+
+    /** Span made current on each thread, null when none */
+    private static final ThreadLocal<Span> currentSpan = new ThreadLocal<>();
+
+    /** Source of span ids, also used as trace track ids */
+    private static final AtomicLong nextSpanId = new AtomicLong(1);
+
+    /** Completed events, oldest first */
+    private static final ArrayDeque<TraceEvent> events = new ArrayDeque<>();
+
+    /**
+     * Private constructor - static tracer only.
+     */
+    private InteractionTracer() {
+    }
+
+    /**
+     * Opens a span for a user interaction.
+     *
+     * @param name Name of the interaction, e.g. "compte.add"
+     * @return The open span
+     */
+    public static Span begin(String name) {
+        return new Span(name, nextSpanId.getAndIncrement(), System.nanoTime());
+    }
+
+    /**
+     * Returns the span made current on this thread.
+     *
+     * @return The current span, or null if none
+     */
+    public static Span current() {
+        return currentSpan.get();
+    }
+
+    /**
+     * Records the duration of a rendered frame.
+     *
+     * @param startNanos    Frame start, on the System.nanoTime() clock
+     * @param durationNanos Total frame duration
+     */
+    public static void recordFrame(long startNanos, long durationNanos) {
+        ClientMetrics.increment("frames.total");
+        if (durationNanos > SLOW_FRAME_NANOS) {
+            ClientMetrics.increment("frames.slow");
+            if (durationNanos > FROZEN_FRAME_NANOS) {
+                ClientMetrics.increment("frames.frozen");
+            }
+            add(new TraceEvent(durationNanos > FROZEN_FRAME_NANOS ? "frozen frame" : "slow frame",
+                    "frame", 0, startNanos, durationNanos));
+        }
+    }
+
+    /**
+     * Serializes every retained event in the Trace Event Format.
+     *
+     * @return The trace as a JSON document
+     */
+    public static String exportTraceEvents() {
+        StringWriter out = new StringWriter();
+        try {
+            writeTrace(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes every retained event to a file in the Trace Event Format.
+     *
+     * @param file Destination file, replaced if it exists
+     * @throws IOException If the file cannot be written
+     */
+    public static void exportTo(File file) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writeTrace(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the trace document.
+     *
+     * @param out Destination writer
+     * @throws IOException If writing fails
+     */
+    private static void writeTrace(Writer out) throws IOException {
+        List<TraceEvent> snapshot;
+        synchronized (events) {
+            snapshot = new ArrayList<>(events);
+        }
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        json.name("displayTimeUnit").value("ms");
+        json.name("traceEvents").beginArray();
+        for (TraceEvent event : snapshot) {
+            json.beginObject();
+            json.name("name").value(event.name);
+            json.name("cat").value(event.category);
+            json.name("ph").value("X");
+            json.name("pid").value(1);
+            json.name("tid").value(event.track);
+            json.name("ts").value((event.startNanos - EPOCH_NANOS) / 1000);
+            json.name("dur").value(event.durationNanos / 1000);
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Retains a completed event, discarding the oldest beyond the limit.
+     *
+     * @param event The completed event
+     */
+    private static void add(TraceEvent event) {
+        synchronized (events) {
+            events.addLast(event);
+            while (events.size() > MAX_EVENTS) {
+                events.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * One user interaction, from the input event to the frame showing its
+     * result.
+     */
+    public static final class Span {
+        private final String name;
+        private final long id;
+        private final long startNanos;
+        private final List<TraceEvent> phases = new ArrayList<>();
+        private boolean ended = false;
+
+        private Span(String name, long id, long startNanos) {
+            this.name = name;
+            this.id = id;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Records a completed phase of the interaction.
+         *
+         * @param phase      Name of the phase, e.g. "network"
+         * @param startNanos Phase start, on the System.nanoTime() clock
+         * @param endNanos   Phase end, on the System.nanoTime() clock
+         */
+        public synchronized void phase(String phase, long startNanos, long endNanos) {
+            if (!ended) {
+                phases.add(new TraceEvent(phase, "phase", id, startNanos, Math.max(0, endNanos - startNanos)));
+            }
+        }
+
+        /**
+         * Makes this span current on the calling thread until the returned
+         * scope is closed.
+         *
+         * @return The scope restoring the previous span when closed
+         */
+        public Scope makeCurrent() {
+            Scope scope = new Scope(currentSpan.get());
+            currentSpan.set(this);
+            return scope;
+        }
+
+        /**
+         * Closes the span and its phases; later calls are ignored.
+         */
+        public void end() {
+            long endNanos = System.nanoTime();
+            List<TraceEvent> completed;
+            synchronized (this) {
+                if (ended) {
+                    return;
+                }
+                ended = true;
+                completed = new ArrayList<>(phases);
+            }
+            ClientMetrics.increment("interactions." + name);
+            add(new TraceEvent(name, "interaction", id, startNanos, endNanos - startNanos));
+            for (TraceEvent phase : completed) {
+                add(phase);
+            }
+        }
+    }
+
+    /**
+     * Restores the previously current span when closed.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Span previous;
+
+        private Scope(Span previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous != null) {
+                currentSpan.set(previous);
+            } else {
+                currentSpan.remove();
+            }
+        }
+    }
+
+    /**
+     * A completed trace event.
+     */
+    private static final class TraceEvent {
+        private final String name;
+        private final String category;
+        private final long track;
+        private final long startNanos;
+        private final long durationNanos;
+
+        TraceEvent(String name, String category, long track, long startNanos, long durationNanos) {
+            this.name = name;
+            this.category = category;
+            this.track = track;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.config.MemoryBudgetManager;
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * CompteCache - Bounded read-through LRU cache of full Compte entities keyed
+ * by account id.
+ *
+ * <p>
+ * Sits in front of {@code getCompteById} so that edit dialogs open without a
+ * network round trip. Features:
+ * </p>
+ * <ul>
+ * <li>Least-recently-used eviction above {@code maxEntries}</li>
+ * <li>Time-to-live on entries, shorter for negative (404) entries</li>
+ * <li>Single-flight loading: concurrent requests for the same id share one
+ * call</li>
+ * <li>Invalidation detaches the load in flight for an id, so a response
+ * read before a delete or an edit is delivered to its waiters but never
+ * cached</li>
+ * <li>Background prefetch of ids about to scroll into view</li>
+ * <li>Callers receive copies, so editing an account in place never alters
+ * the cached entity</li>
+ * <li>Shrunk by the shared MemoryBudgetManager when the caches together
+ * exceed their budget; entries need a network round trip to rebuild, so
+ * they are shed after locally rebuildable data</li>
+ * </ul>
+ *
+ * <p>
+ * Exported metrics: {@code entityCache.size} (gauge),
+ * {@code entityCache.hits} and {@code entityCache.misses} (counters).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class CompteCache implements MemoryBudgetManager.Cache {
+
+    /**
+     * Performs the actual network load of one account.
+     */
+    public interface Loader {
+        /**
+         * Loads an account from the backend.
+         *
+         * @param id       The account id
+         * @param priority Scheduling priority of the load
+         * @param callback Callback receiving the response
+         */
+        void load(Long id, RequestPriority priority, Callback<Compte> callback);
+    }
+
+    /** HTTP status cached as a negative entry */
+    private static final int NOT_FOUND = 404;
+
+    /** Estimated heap of one entry: Compte, its strings and the map entry */
+    static final int ENTRY_BYTES = 200;
+
+    /** Rebuild cost per byte reported to the memory budget: a network call */
+    private static final double REBUILD_COST = 20.0;
+
+    /** Maximum number of cached entries */
+    private final int maxEntries;
+
+    /** Lifetime of a found entity, in milliseconds */
+    private final long ttlMillis;
+
+    /** Lifetime of a 404 result, in milliseconds */
+    private final long negativeTtlMillis;
+
+    /** Entries in access order, eldest first */
+    private final LinkedHashMap<Long, CachedCompte> entries;
+
+    /** Current load in progress, per id */
+    private final Map<Long, InFlight> inFlight = new HashMap<>();
+
+    /** Source of load generations */
+    private long generation = 0;
+
+    /** Lookups served from the cache */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Lookups that needed a load */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Budget notified when entries are added, null if unmanaged */
+    private volatile MemoryBudgetManager budget = null;
+
+    /**
+     * Constructs a cache.
+     *
+     * @param maxEntries        Maximum number of cached entries
+     * @param ttlMillis         Lifetime of a found entity
+     * @param negativeTtlMillis Lifetime of a 404 result
+     */
+    public CompteCache(final int maxEntries, long ttlMillis, long negativeTtlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.entries = new LinkedHashMap<Long, CachedCompte>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedCompte> eldest) {
+                return size() > CompteCache.this.maxEntries;
+            }
+        };
+        ClientMetrics.registerGauge("entityCache.size", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                return size();
+            }
+        });
+    }
+
+    /**
+     * Returns an account, from the cache if fresh, otherwise through the
+     * loader. The callback may be invoked synchronously on a hit.
+     *
+     * @param id       The account id
+     * @param priority Priority of the load on a miss
+     * @param loader   Network loader used on a miss
+     * @param callback Callback receiving the account, or a 404 response
+     */
+    public void get(Long id, RequestPriority priority, Loader loader, Callback<Compte> callback) {
+        CachedCompte entry;
+        InFlight flight = null;
+        synchronized (this) {
+            entry = freshEntry(id);
+            if (entry == null) {
+                ClientMetrics.increment("entityCache.misses");
+                misses.incrementAndGet();
+                InFlight current = inFlight.get(id);
+                if (current != null) {
+                    current.waiters.add(callback);
+                    return;
+                }
+                flight = startLoad(id);
+                flight.waiters.add(callback);
+            } else {
+                ClientMetrics.increment("entityCache.hits");
+                hits.incrementAndGet();
+            }
+        }
+        if (entry != null) {
+            deliver(callback, entry.compte);
+            return;
+        }
+        load(id, flight, priority, loader);
+    }
+
+    /**
+     * Registers this cache with a memory budget, which will shed its entries
+     * when the caches together exceed it.
+     *
+     * @param budget The shared budget
+     */
+    public void setMemoryBudget(MemoryBudgetManager budget) {
+        this.budget = budget;
+        budget.register(this);
+    }
+
+    /**
+     * Loads the given ids in the background unless they are cached or
+     * already loading.
+     *
+     * @param ids    Ids of the rows about to become visible
+     * @param loader Network loader
+     */
+    public void prefetch(List<Long> ids, Loader loader) {
+        Map<Long, InFlight> missing = new LinkedHashMap<>();
+        synchronized (this) {
+            for (Long id : ids) {
+                if (id != null && freshEntry(id) == null && !inFlight.containsKey(id)) {
+                    missing.put(id, startLoad(id));
+                }
+            }
+        }
+        for (Map.Entry<Long, InFlight> entry : missing.entrySet()) {
+            load(entry.getKey(), entry.getValue(), RequestPriority.BACKGROUND, loader);
+        }
+    }
+
+    /**
+     * Drops an entry, e.g. after the account was deleted. A load in flight
+     * for the id still completes its waiters but is not cached, and the next
+     * lookup starts a new one.
+     *
+     * @param id The account id
+     */
+    public synchronized void invalidate(Long id) {
+        entries.remove(id);
+        inFlight.remove(id);
+    }
+
+    /**
+     * Drops every entry and detaches every load in flight.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        inFlight.clear();
+    }
+
+    /**
+     * Returns the number of cached entries, including expired ones not yet
+     * evicted.
+     *
+     * @return The number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Evicts least-recently-used entries until at most maxSize remain.
+     *
+     * @param maxSize Number of entries to keep
+     */
+    public synchronized void trimToSize(int maxSize) {
+        Iterator<Long> iterator = entries.keySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    @Override
+    public String name() {
+        return "entityCache";
+    }
+
+    @Override
+    public long sizeBytes() {
+        return (long) size() * ENTRY_BYTES;
+    }
+
+    @Override
+    public double rebuildCost() {
+        return REBUILD_COST;
+    }
+
+    @Override
+    public synchronized long shed(long bytes) {
+        int before = entries.size();
+        long count = (bytes + ENTRY_BYTES - 1) / ENTRY_BYTES;
+        trimToSize((int) Math.max(0, before - count));
+        return (long) (before - entries.size()) * ENTRY_BYTES;
+    }
+
+    @Override
+    public long hitCount() {
+        return hits.get();
+    }
+
+    @Override
+    public long missCount() {
+        return misses.get();
+    }
+
+    /**
+     * Registers a new load of an id as the current one. Must be called with
+     * the cache locked.
+     *
+     * @param id The account id
+     * @return The load
+     */
+    private InFlight startLoad(Long id) {
+        InFlight flight = new InFlight(++generation);
+        inFlight.put(id, flight);
+        return flight;
+    }
+
+    /**
+     * Issues the network load of one id and completes every waiter. The
+     * result is cached only if the load is still the current one for the id,
+     * i.e. it was not invalidated meanwhile.
+     *
+     * @param id       The account id
+     * @param flight   The load, registered by startLoad
+     * @param priority Scheduling priority
+     * @param loader   Network loader
+     */
+    private void load(final Long id, final InFlight flight, RequestPriority priority, Loader loader) {
+        loader.load(id, priority, new Callback<Compte>() {
+            @Override
+            public void onResponse(Call<Compte> call, Response<Compte> response) {
+                boolean cached = false;
+                synchronized (CompteCache.this) {
+                    if (finish(id, flight)) {
+                        if (response.isSuccessful() && response.body() != null) {
+                            entries.put(id, new CachedCompte(copy(response.body()), now() + ttlMillis));
+                            cached = true;
+                        } else if (response.code() == NOT_FOUND) {
+                            entries.put(id, new CachedCompte(null, now() + negativeTtlMillis));
+                            cached = true;
+                        }
+                    }
+                }
+                MemoryBudgetManager managedBy = budget;
+                if (cached && managedBy != null) {
+                    managedBy.onCacheGrown();
+                }
+                for (Callback<Compte> waiter : flight.waiters) {
+                    waiter.onResponse(call, response);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<Compte> call, Throwable t) {
+                synchronized (CompteCache.this) {
+                    finish(id, flight);
+                }
+                for (Callback<Compte> waiter : flight.waiters) {
+                    waiter.onFailure(call, t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Unregisters a completed load. Must be called with the cache locked.
+     *
+     * @param id     The account id
+     * @param flight The completed load
+     * @return Whether it was still the current load of the id
+     */
+    private boolean finish(Long id, InFlight flight) {
+        InFlight current = inFlight.get(id);
+        if (current == null || current.generation != flight.generation) {
+            return false;
+        }
+        inFlight.remove(id);
+        return true;
+    }
+
+    /**
+     * Returns the entry for an id if it has not expired, evicting it otherwise.
+     *
+     * @param id The account id
+     * @return The fresh entry, or null
+     */
+    private CachedCompte freshEntry(Long id) {
+        CachedCompte entry = entries.get(id);
+        if (entry != null && entry.expiresAt <= now()) {
+            entries.remove(id);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Completes a callback from a cached value.
+     *
+     * @param callback The callback
+     * @param compte   The cached account, null for a cached 404
+     */
+    private static void deliver(Callback<Compte> callback, Compte compte) {
+        if (compte != null) {
+            callback.onResponse(null, Response.success(copy(compte)));
+        } else {
+            callback.onResponse(null, Response.<Compte>error(NOT_FOUND, ResponseBody.create(null, "")));
+        }
+    }
+
+    /**
+     * Copies an account, so that the cached instance is never shared.
+     *
+     * @param compte The account
+     * @return A new Compte with the same values
+     */
+    private static Compte copy(Compte compte) {
+        return new Compte(compte.getId(), compte.getSolde(), compte.getType(), compte.getDateCreation());
+    }
+
+    /**
+     * Returns a monotonic time in milliseconds.
+     *
+     * @return The current time
+     */
+    private static long now() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    /**
+     * A load in progress and the callbacks waiting for it. Waiters are only
+     * added while the load is current, with the cache locked, and read once
+     * it has completed.
+     */
+    private static final class InFlight {
+        private final long generation;
+        private final List<Callback<Compte>> waiters = new ArrayList<>();
+
+        InFlight(long generation) {
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A cached value and its expiry time.
+     */
+    private static final class CachedCompte {
+        private final Compte compte;
+        private final long expiresAt;
+
+        CachedCompte(Compte compte, long expiresAt) {
+            this.compte = compte;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package ma.projet.restclient.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+
+import java.io.IOException;
+
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * CompteChangeStream - Subscription to the server-push stream of account
+ * changes.
+ *
+ * <p>
+ * Instead of re-downloading the whole collection to see other users' edits,
+ * the client keeps a Server-Sent Events connection open on
+ * {@code api/comptes/events} and applies each upsert/delete incrementally.
+ * Traffic is proportional to the number of changes, not to the collection
+ * size.
+ * </p>
+ *
+ * <p>
+ * The id of the last event received is kept as a cursor. After a disconnect
+ * the stream reconnects with exponential backoff and sends the cursor in the
+ * {@code Last-Event-ID} header so the server replays only the missed events.
+ * If the server no longer knows the cursor (HTTP 410), the cursor is dropped
+ * and the stream reconnects without it; that connection is reported as not
+ * resumed, which is the listener's cue to reload the full list. A
+ * {@code resync} event on an open stream asks for the reload directly.
+ * </p>
+ *
+ * <p>
+ * Events whose payload is missing or malformed, and non-positive
+ * {@code retry} hints, are ignored.
+ * </p>
+ *
+ * <p>
+ * A stream may be stopped and started again, e.g. with the activity, and
+ * keeps its cursor in between. Each connection is reported through
+ * {@link Listener#onConnected(boolean)}: a connection made without a cursor
+ * only receives changes made from then on, so a list loaded after it, and
+ * not before, misses nothing.
+ * </p>
+ *
+ * <p>
+ * The stream runs on its own daemon thread rather than through the
+ * RequestScheduler, where a never-ending call would hold a slot forever.
+ * Listener methods are invoked on that thread.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class CompteChangeStream {
+
+    /**
+     * Receives the changes pushed by the server.
+     */
+    public interface Listener {
+        /**
+         * Called when the event stream is open.
+         *
+         * @param resumed true if the server replays the events missed since
+         *                the cursor, false if the stream starts from now
+         */
+        void onConnected(boolean resumed);
+
+        /**
+         * Called when an account was created or modified.
+         *
+         * @param compte The new state of the account
+         */
+        void onUpsert(Compte compte);
+
+        /**
+         * Called when an account was deleted.
+         *
+         * @param id The id of the deleted account
+         */
+        void onDelete(Long id);
+
+        /**
+         * Called when the server asks, on an open stream, for the full list to
+         * be reloaded. An expired cursor is reported through
+         * {@link #onConnected(boolean)} instead.
+         */
+        void onResyncRequired();
+    }
+
+    /** HTTP status returned by the server when the cursor has expired */
+    private static final int CURSOR_EXPIRED = 410;
+
+    /** Service opening the event stream */
+    private final CompteService service;
+
+    /** Receiver of the changes */
+    private final Listener listener;
+
+    /** Decoder of event payloads */
+    private final Gson gson = new Gson();
+
+    /** Delay before the first reconnection attempt */
+    private volatile long initialReconnectDelayMillis = 1000;
+
+    /** Upper bound of the reconnection backoff */
+    private volatile long maxReconnectDelayMillis = 30000;
+
+    /** Id of the last event received, sent back on reconnection */
+    private volatile String lastEventId = null;
+
+    /** Whether the stream should keep running */
+    private volatile boolean running = false;
+
+    /** Whether the event stream is currently open */
+    private volatile boolean connected = false;
+
+    /** Call currently holding the stream, cancelled by {@link #stop()} */
+    private volatile Call<ResponseBody> currentCall = null;
+
+    /** Thread reading the stream, null when stopped */
+    private volatile Thread thread;
+
+    /**
+     * Constructs a change stream.
+     *
+     * @param service  Service created from RetrofitClient.getStreamingClient()
+     * @param listener Receiver of the changes
+     */
+    public CompteChangeStream(CompteService service, Listener listener) {
+        this.service = service;
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the reconnection backoff bounds.
+     *
+     * @param initialMillis Delay before the first reconnection attempt
+     * @param maxMillis     Maximum delay between attempts
+     */
+    public void setReconnectDelay(long initialMillis, long maxMillis) {
+        this.initialReconnectDelayMillis = initialMillis;
+        this.maxReconnectDelayMillis = maxMillis;
+    }
+
+    /**
+     * Returns the cursor of the last event received.
+     *
+     * @return The last event id, null if no event was received yet
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    /**
+     * Tells whether the event stream is currently open. While connected, local
+     * mutations are echoed back by the server and need no list reload.
+     *
+     * @return true if the stream is connected
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Opens the stream on a background thread, resuming from the cursor if
+     * any. Does nothing if already running.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runLoop();
+            }
+        }, "CompteChangeStream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Closes the stream. The cursor is kept, so a later {@link #start()}
+     * resumes after the last event received.
+     */
+    public synchronized void stop() {
+        running = false;
+        connected = false;
+        Call<ResponseBody> call = currentCall;
+        if (call != null) {
+            call.cancel();
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Connects, reads events until the stream ends, then reconnects with
+     * exponential backoff until stopped.
+     */
+    private void runLoop() {
+        long delay = initialReconnectDelayMillis;
+        while (isCurrent()) {
+            try {
+                String cursor = lastEventId;
+                Call<ResponseBody> call = service.streamChanges(cursor);
+                currentCall = call;
+                if (!isCurrent()) {
+                    // Stopped before the call could be cancelled
+                    break;
+                }
+                Response<ResponseBody> response = call.execute();
+                if (response.isSuccessful() && response.body() != null) {
+                    connected = true;
+                    delay = initialReconnectDelayMillis;
+                    ClientMetrics.increment("changes.connections");
+                    listener.onConnected(cursor != null);
+                    read(response.body());
+                } else {
+                    if (response.errorBody() != null) {
+                        response.errorBody().close();
+                    }
+                    if (response.code() == CURSOR_EXPIRED) {
+                        // Reconnects at once, as not resumed
+                        lastEventId = null;
+                        continue;
+                    }
+                }
+            } catch (IOException e) {
+                // Connection lost or refused, retry after the backoff delay
+            } finally {
+                if (thread == Thread.currentThread()) {
+                    connected = false;
+                    currentCall = null;
+                }
+            }
+            if (!isCurrent()) {
+                break;
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                break;
+            }
+            delay = Math.min(delay * 2, maxReconnectDelayMillis);
+        }
+    }
+
+    /**
+     * Tells whether the calling thread is the one the stream runs on, so that
+     * a thread left over from before a stop/start cycle exits instead of
+     * reading alongside the new one.
+     *
+     * @return true while the calling thread should keep streaming
+     */
+    private boolean isCurrent() {
+        return running && thread == Thread.currentThread();
+    }
+
+    /**
+     * Parses the event stream line by line and dispatches complete events.
+     *
+     * @param body The open stream
+     * @throws IOException If the connection is lost
+     */
+    private void read(ResponseBody body) throws IOException {
+        BufferedSource source = body.source();
+        String id = null;
+        String event = null;
+        StringBuilder data = new StringBuilder();
+        try {
+            String line;
+            while (isCurrent() && (line = source.readUtf8Line()) != null) {
+                if (line.isEmpty()) {
+                    dispatch(id, event, data.toString());
+                    id = null;
+                    event = null;
+                    data.setLength(0);
+                    continue;
+                }
+                if (line.startsWith(":")) {
+                    // Comment, used by servers as a keep-alive
+                    continue;
+                }
+                int colon = line.indexOf(':');
+                String field = colon < 0 ? line : line.substring(0, colon);
+                String value = colon < 0 ? "" : line.substring(colon + 1);
+                if (value.startsWith(" ")) {
+                    value = value.substring(1);
+                }
+                if ("id".equals(field)) {
+                    id = value;
+                } else if ("event".equals(field)) {
+                    event = value;
+                } else if ("data".equals(field)) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                } else if ("retry".equals(field)) {
+                    try {
+                        long retry = Long.parseLong(value);
+                        if (retry > 0) {
+                            initialReconnectDelayMillis = retry;
+                        }
+                    } catch (NumberFormatException e) {
+                        // Ignore malformed retry hints
+                    }
+                }
+            }
+        } finally {
+            body.close();
+        }
+    }
+
+    /**
+     * Delivers one complete event to the listener and advances the cursor.
+     *
+     * @param id    Event id, may be null
+     * @param event Event type, may be null
+     * @param data  JSON payload
+     */
+    private void dispatch(String id, String event, String data) {
+        if (event == null && data.isEmpty()) {
+            return;
+        }
+        try {
+            if ("upsert".equals(event) || "delete".equals(event)) {
+                Compte compte = gson.fromJson(data, Compte.class);
+                if (compte == null || compte.getId() == null) {
+                    // Empty or "null" payload
+                    throw new JsonParseException("No account id in " + event + " event");
+                }
+                if ("upsert".equals(event)) {
+                    listener.onUpsert(compte);
+                } else {
+                    listener.onDelete(compte.getId());
+                }
+            } else if ("resync".equals(event)) {
+                listener.onResyncRequired();
+            }
+            ClientMetrics.increment("changes.events");
+        } catch (JsonParseException e) {
+            ClientMetrics.increment("changes.malformed");
+        }
+        if (id != null) {
+            lastEventId = id;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package ma.projet.restclient.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.config.RequestScheduler;
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * CompteExporter - Streams every account from the backend to a CSV or JSON
+ * file in constant memory.
+ *
+ * <p>
+ * The list endpoint is read as a raw streaming body; each account is decoded
+ * with a Gson JsonReader and written to the file before the next one is read,
+ * so no list is ever materialized. The file is written next to its
+ * destination and renamed into place once complete; a failed export leaves
+ * no temporary file behind.
+ * </p>
+ *
+ * <p>
+ * The download can take minutes. Once the response headers are received,
+ * the body is read on a dedicated thread, so the BACKGROUND slot of the
+ * RequestScheduler is released instead of being held for the whole
+ * transfer.
+ * </p>
+ *
+ * <p>
+ * CSV fields containing a comma, a double quote or a line break are
+ * enclosed in double quotes, with inner quotes doubled (RFC 4180), as
+ * CompteImporter reads them.
+ * </p>
+ *
+ * <p>
+ * Exported metrics: {@code export.rows} (counter) and
+ * {@code export.rowsPerSecond} (gauge, throughput of the last export).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class CompteExporter {
+
+    /**
+     * Output file formats.
+     */
+    public enum Format {
+        /** Header line then one id,solde,type,dateCreation line per account */
+        CSV,
+        /** JSON array of account objects */
+        JSON
+    }
+
+    /** Rows between two progress reports */
+    private static final int PROGRESS_INTERVAL = 10000;
+
+    /** Encoding of the output file */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Throughput of the last completed export, in rows per second */
+    private static volatile double lastRate = 0;
+
+    static {
+        ClientMetrics.registerGauge("export.rowsPerSecond", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                return lastRate;
+            }
+        });
+    }
+
+    /** Service of a streaming Retrofit client */
+    private final CompteService streamingService;
+
+    /** Scheduler running the download */
+    private final RequestScheduler scheduler;
+
+    /** Decoder and encoder of accounts */
+    private final Gson gson = new Gson();
+
+    /**
+     * Constructs an exporter.
+     *
+     * @param streamingService Service of a Retrofit client without read
+     *                         timeout, see RetrofitClient.getStreamingClient()
+     * @param scheduler        Scheduler running the download
+     */
+    public CompteExporter(CompteService streamingService, RequestScheduler scheduler) {
+        this.streamingService = streamingService;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Starts exporting every account to a file, at BACKGROUND priority.
+     *
+     * @param file     Destination file, replaced once the export succeeds
+     * @param format   Output format
+     * @param listener Receiver of progress, completion or failure
+     */
+    public void export(final File file, final Format format, final TransferListener listener) {
+        scheduler.enqueue(streamingService.streamAllComptes(), RequestPriority.BACKGROUND,
+                new Callback<ResponseBody>() {
+                    @Override
+                    public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                        if (!response.isSuccessful() || response.body() == null) {
+                            listener.onError(new IOException("HTTP " + response.code()));
+                            return;
+                        }
+                        final ResponseBody body = response.body();
+                        Thread thread = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    write(body, file, format, listener);
+                                } catch (IOException | RuntimeException e) {
+                                    listener.onError(e);
+                                }
+                            }
+                        }, "CompteExporter");
+                        thread.setDaemon(true);
+                        thread.start();
+                    }
+
+                    @Override
+                    public void onFailure(Call<ResponseBody> call, Throwable t) {
+                        listener.onError(t);
+                    }
+                });
+    }
+
+    /**
+     * Copies the streamed accounts to the file, one at a time.
+     *
+     * @param body     The streaming JSON array of accounts
+     * @param file     Destination file
+     * @param format   Output format
+     * @param listener Receiver of progress and completion
+     * @throws IOException If reading or writing fails
+     */
+    private void write(ResponseBody body, File file, Format format, TransferListener listener) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        long start = System.nanoTime();
+        long rows = 0;
+        JsonReader reader = new JsonReader(body.charStream());
+        Writer out;
+        try {
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), UTF_8));
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+        boolean written = false;
+        try {
+            JsonWriter json = null;
+            if (format == Format.JSON) {
+                json = new JsonWriter(out);
+                json.beginArray();
+            } else {
+                out.write("id,solde,type,dateCreation\n");
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Compte compte = gson.fromJson(reader, Compte.class);
+                if (json != null) {
+                    gson.toJson(compte, Compte.class, json);
+                } else {
+                    writeCsvRow(out, compte);
+                }
+                if (++rows % PROGRESS_INTERVAL == 0) {
+                    ClientMetrics.add("export.rows", PROGRESS_INTERVAL);
+                    listener.onProgress(rows, rate(rows, start));
+                }
+            }
+            reader.endArray();
+            if (json != null) {
+                json.endArray();
+                json.flush();
+            }
+            out.close();
+            written = true;
+        } finally {
+            if (!written) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // The export already failed
+                }
+                temp.delete();
+            }
+            reader.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+        ClientMetrics.add("export.rows", rows % PROGRESS_INTERVAL);
+        lastRate = rate(rows, start);
+        listener.onComplete(rows, 0, lastRate);
+    }
+
+    /**
+     * Writes one CSV line.
+     *
+     * @param out    The output
+     * @param compte The account
+     * @throws IOException If writing fails
+     */
+    static void writeCsvRow(Writer out, Compte compte) throws IOException {
+        out.write(compte.getId() != null ? String.valueOf(compte.getId()) : "");
+        out.write(',');
+        out.write(String.valueOf(compte.getSolde()));
+        out.write(',');
+        writeCsvField(out, compte.getType());
+        out.write(',');
+        writeCsvField(out, compte.getDateCreation());
+        out.write('\n');
+    }
+
+    /**
+     * Writes one text field, quoted if it contains a separator, a quote or a
+     * line break.
+     *
+     * @param out   The output
+     * @param value The field, null for an empty one
+     * @throws IOException If writing fails
+     */
+    private static void writeCsvField(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * Computes an average throughput.
+     *
+     * @param rows  Rows transferred
+     * @param start Start of the transfer, System.nanoTime()
+     * @return Rows per second
+     */
+    static double rate(long rows, long start) {
+        long elapsed = System.nanoTime() - start;
+        return elapsed > 0 ? rows * 1e9 / elapsed : 0;
+    }
+}
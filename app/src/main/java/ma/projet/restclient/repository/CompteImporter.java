@@ -0,0 +1,470 @@
+package ma.projet.restclient.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.config.RequestScheduler;
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * CompteImporter - Creates accounts from a CSV or JSON file in constant
+ * memory.
+ *
+ * <p>
+ * The file is parsed one account at a time on a dedicated thread, and each
+ * account is sent as a BACKGROUND creation on the RequestScheduler. At most
+ * {@code batchSize} creations are in flight: the parser blocks until one
+ * completes, so a fast reader never queues the whole file in memory and a
+ * slow backend throttles the import instead of being flooded.
+ * </p>
+ *
+ * <p>
+ * The format is detected from the content: a file whose first non-blank
+ * character is {@code [} is a JSON array of accounts, anything else is CSV
+ * with the header written by {@link CompteExporter}. Invalid rows and
+ * rejected creations are counted as failed and do not stop the import.
+ * Creations go straight to the backend and are not journaled in the outbox.
+ * </p>
+ *
+ * <p>
+ * Exported metrics: {@code import.rows}, {@code import.failed} (counters) and
+ * {@code import.rowsPerSecond} (gauge, throughput of the last import).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class CompteImporter {
+    /** Rows between two progress reports */
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    /** Maximum number of lines of one CSV record */
+    static final int MAX_RECORD_LINES = 16;
+
+    /** Maximum length of one CSV record spanning lines, in characters */
+    static final int MAX_RECORD_CHARS = 4096;
+
+    /** Encoding of the input file */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Throughput of the last completed import, in rows per second */
+    private static volatile double lastRate = 0;
+
+    static {
+        ClientMetrics.registerGauge("import.rowsPerSecond", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                return lastRate;
+            }
+        });
+    }
+
+    /** JSON service creating the accounts */
+    private final CompteService compteService;
+
+    /** Scheduler running the creations */
+    private final RequestScheduler scheduler;
+
+    /** Maximum number of creations in flight */
+    private final int batchSize;
+
+    /** Decoder of JSON accounts */
+    private final Gson gson = new Gson();
+
+    /**
+     * Constructs an importer.
+     *
+     * @param compteService JSON service creating the accounts
+     * @param scheduler     Scheduler running the creations
+     * @param batchSize     Maximum number of creations in flight, at least 1
+     */
+    public CompteImporter(CompteService compteService, RequestScheduler scheduler, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize < 1: " + batchSize);
+        }
+        this.compteService = compteService;
+        this.scheduler = scheduler;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts importing a file on a background thread.
+     *
+     * @param file     CSV or JSON file of accounts
+     * @param listener Receiver of progress, completion or failure
+     */
+    public void start(final File file, final TransferListener listener) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    importFile(file, listener);
+                } catch (IOException | RuntimeException e) {
+                    listener.onError(e);
+                } catch (InterruptedException e) {
+                    listener.onError(e);
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "CompteImporter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Parses the file and sends its accounts, then waits for the last
+     * creations.
+     *
+     * @param file     The input file
+     * @param listener Receiver of progress and completion
+     * @throws IOException          If the file cannot be read or is not valid
+     *                              JSON
+     * @throws InterruptedException If the thread is interrupted
+     */
+    private void importFile(File file, TransferListener listener) throws IOException, InterruptedException {
+        Batch batch = new Batch(listener);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            if (isJsonArray(reader)) {
+                readJson(reader, batch);
+            } else {
+                readCsv(reader, batch);
+            }
+        } finally {
+            reader.close();
+        }
+        batch.awaitCompletion();
+        lastRate = CompteExporter.rate(batch.done.get(), batch.start);
+        listener.onComplete(batch.done.get() - batch.failed.get(), batch.failed.get(), lastRate);
+    }
+
+    /**
+     * Tells whether the file starts with a JSON array, without consuming it.
+     *
+     * @param reader The input, supporting mark
+     * @return true if the first non-blank character is {@code [}
+     * @throws IOException If reading fails
+     */
+    private static boolean isJsonArray(BufferedReader reader) throws IOException {
+        reader.mark(4096);
+        int c;
+        do {
+            c = reader.read();
+        } while (c != -1 && (Character.isWhitespace(c) || c == '\uFEFF'));
+        reader.reset();
+        return c == '[';
+    }
+
+    /**
+     * Sends every account of a JSON array. Ids are ignored; the backend
+     * assigns new ones.
+     *
+     * @param reader The input
+     * @param batch  The running batch
+     * @throws IOException          If the JSON is malformed
+     * @throws InterruptedException If the thread is interrupted
+     */
+    private void readJson(BufferedReader reader, Batch batch) throws IOException, InterruptedException {
+        JsonReader json = new JsonReader(reader);
+        json.beginArray();
+        while (json.hasNext()) {
+            Compte compte;
+            try {
+                compte = gson.fromJson(json, Compte.class);
+            } catch (JsonParseException e) {
+                throw new IOException("Invalid account at row " + (batch.sent + 1), e);
+            }
+            compte.setId(null);
+            batch.send(compte);
+        }
+        json.endArray();
+    }
+
+    /**
+     * Sends every valid line of a CSV file. The header line is optional;
+     * columns are solde,type,dateCreation, optionally preceded by an ignored
+     * id column as written by the exporter. A quoted field may span lines,
+     * up to {@link #MAX_RECORD_LINES} lines and {@link #MAX_RECORD_CHARS}
+     * characters; a quote still open beyond that or at the end of the file is
+     * taken as a stray quote: its line is rejected and the lines read after
+     * it are parsed again as records of their own.
+     *
+     * @param reader The input
+     * @param batch  The running batch
+     * @throws IOException          If reading fails
+     * @throws InterruptedException If the thread is interrupted
+     */
+    private void readCsv(BufferedReader reader, Batch batch) throws IOException, InterruptedException {
+        Deque<String> replayed = new ArrayDeque<>();
+        String line;
+        boolean first = true;
+        while ((line = nextLine(reader, replayed)) != null) {
+            if (first) {
+                first = false;
+                if (line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+                if (line.startsWith("id,") || line.startsWith("solde,")) {
+                    continue;
+                }
+            }
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            boolean open = hasOddQuotes(line);
+            List<String> continuation = new ArrayList<>();
+            StringBuilder record = new StringBuilder(line);
+            String next;
+            while (open && continuation.size() < MAX_RECORD_LINES - 1 && record.length() <= MAX_RECORD_CHARS
+                    && (next = nextLine(reader, replayed)) != null) {
+                continuation.add(next);
+                record.append('\n').append(next);
+                open = open != hasOddQuotes(next);
+            }
+            if (open) {
+                batch.reject();
+                for (int i = continuation.size() - 1; i >= 0; i--) {
+                    replayed.addFirst(continuation.get(i));
+                }
+                continue;
+            }
+            Compte compte = parseCsvRow(record.toString());
+            if (compte == null) {
+                batch.reject();
+            } else {
+                batch.send(compte);
+            }
+        }
+    }
+
+    /**
+     * Returns the next line to parse: a line given back after a stray quote,
+     * otherwise the next line of the input.
+     *
+     * @param reader   The input
+     * @param replayed Lines to parse again, in order
+     * @return The line, or null at the end of the input
+     * @throws IOException If reading fails
+     */
+    private static String nextLine(BufferedReader reader, Deque<String> replayed) throws IOException {
+        return replayed.isEmpty() ? reader.readLine() : replayed.pollFirst();
+    }
+
+    /**
+     * Parses one CSV record into an account without id.
+     *
+     * @param line The record, possibly holding line breaks inside quotes
+     * @return The account, or null if the record is invalid
+     */
+    static Compte parseCsvRow(String line) {
+        List<String> cells = splitCsvRow(line);
+        if (cells == null) {
+            return null;
+        }
+        int offset;
+        if (cells.size() == 4) {
+            offset = 1;
+        } else if (cells.size() == 3) {
+            offset = 0;
+        } else {
+            return null;
+        }
+        double solde;
+        try {
+            solde = Double.parseDouble(cells.get(offset));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String type = cells.get(offset + 1);
+        String date = cells.get(offset + 2);
+        return new Compte(null, solde, type.isEmpty() ? null : type, date.isEmpty() ? null : date);
+    }
+
+    /**
+     * Splits a CSV record into fields (RFC 4180). Quoted fields are kept
+     * verbatim with doubled quotes undone; unquoted fields are trimmed.
+     *
+     * @param line The record
+     * @return The fields, or null if a quote is not closed or is followed by
+     *         anything but a separator
+     */
+    private static List<String> splitCsvRow(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        int i = 0;
+        while (true) {
+            cell.setLength(0);
+            while (i < line.length() && line.charAt(i) == ' ') {
+                i++;
+            }
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        return null;
+                    }
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        cell.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        cell.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                while (i < line.length() && line.charAt(i) == ' ') {
+                    i++;
+                }
+                if (i < line.length() && line.charAt(i) != ',') {
+                    return null;
+                }
+                cells.add(cell.toString());
+            } else {
+                int end = line.indexOf(',', i);
+                cells.add(line.substring(i, end < 0 ? line.length() : end).trim());
+                i = end < 0 ? line.length() : end;
+            }
+            if (i >= line.length()) {
+                return cells;
+            }
+            // Skip the separator
+            i++;
+        }
+    }
+
+    /**
+     * Tells whether a line holds an odd number of quotes, i.e. opens or
+     * closes a quoted field spanning lines; doubled quotes do not change the
+     * parity.
+     *
+     * @param line One line of the input
+     * @return true if the line flips the quoting state of the record
+     */
+    private static boolean hasOddQuotes(String line) {
+        int quotes = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes % 2 != 0;
+    }
+
+    /**
+     * Creations of one import, bounded by a semaphore.
+     */
+    private class Batch {
+        /** Free creation slots */
+        private final Semaphore slots = new Semaphore(batchSize);
+
+        /** Receiver of progress */
+        private final TransferListener listener;
+
+        /** Start of the import, System.nanoTime() */
+        private final long start = System.nanoTime();
+
+        /** Rows handed to the backend or rejected, only touched by the parser */
+        private long sent = 0;
+
+        /** Rows whose outcome is known */
+        private final AtomicLong done = new AtomicLong();
+
+        /** Rows rejected locally or by the backend */
+        private final AtomicLong failed = new AtomicLong();
+
+        /**
+         * Constructs a batch.
+         *
+         * @param listener Receiver of progress
+         */
+        Batch(TransferListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Sends one creation, waiting for a free slot first.
+         *
+         * @param compte The account to create
+         * @throws InterruptedException If the thread is interrupted
+         */
+        void send(Compte compte) throws InterruptedException {
+            slots.acquire();
+            sent++;
+            scheduler.enqueue(compteService.addCompte(compte), RequestPriority.BACKGROUND,
+                    new Callback<Compte>() {
+                        @Override
+                        public void onResponse(Call<Compte> call, Response<Compte> response) {
+                            completed(response.isSuccessful());
+                        }
+
+                        @Override
+                        public void onFailure(Call<Compte> call, Throwable t) {
+                            completed(false);
+                        }
+                    });
+        }
+
+        /**
+         * Counts a row that could not be parsed.
+         *
+         * @throws InterruptedException If the thread is interrupted
+         */
+        void reject() throws InterruptedException {
+            slots.acquire();
+            sent++;
+            completed(false);
+        }
+
+        /**
+         * Records the outcome of one row and reports progress.
+         *
+         * @param success Whether the account was created
+         */
+        private void completed(boolean success) {
+            if (success) {
+                ClientMetrics.increment("import.rows");
+            } else {
+                ClientMetrics.increment("import.failed");
+                failed.incrementAndGet();
+            }
+            long rows = done.incrementAndGet();
+            if (rows % PROGRESS_INTERVAL == 0) {
+                listener.onProgress(rows, CompteExporter.rate(rows, start));
+            }
+            slots.release();
+        }
+
+        /**
+         * Waits until every sent creation has completed.
+         *
+         * @throws InterruptedException If the thread is interrupted
+         */
+        void awaitCompletion() throws InterruptedException {
+            slots.acquire(batchSize);
+            slots.release(batchSize);
+        }
+    }
+}
@@ -1,11 +1,24 @@
 package ma.projet.restclient.repository;
 
+import ma.projet.restclient.api.CompteQuery;
 import ma.projet.restclient.api.CompteService;
 import ma.projet.restclient.entities.Compte;
 import ma.projet.restclient.entities.CompteList;
+import ma.projet.restclient.config.FormatNegotiator;
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.config.RequestScheduler;
 import ma.projet.restclient.config.RetrofitClient;
+import ma.projet.restclient.metrics.ClientMetrics;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -32,6 +45,15 @@ import retrofit2.Response;
  * <li>Provides a clean API for data operations</li>
  * <li>Handles format conversion (JSON/XML)</li>
  * <li>Manages Retrofit service initialization</li>
+ * <li>Dispatches calls through the shared RequestScheduler with a priority</li>
+ * <li>Journals mutations in the MutationOutbox when the backend is
+ * unreachable</li>
+ * <li>Keeps a memory-mapped CompteSnapshot of the last successful list
+ * sync</li>
+ * <li>Serves getCompteById through a shared read-through CompteCache</li>
+ * <li>Optionally fetches large lists as concurrent pages (ShardedFetch)</li>
+ * <li>Pushes filters, sort and counts (CompteQuery) down to the server, with
+ * local evaluation as fallback</li>
  * </ul>
  * 
  * <p>
@@ -40,6 +62,9 @@ import retrofit2.Response;
  * <ul>
  * <li>JSON - Direct deserialization to List&lt;Compte&gt;</li>
  * <li>XML - Deserialization via CompteList wrapper</li>
+ * <li>AUTO - List reads use whichever of JSON and XML the
+ * {@link FormatNegotiator} currently measures as cheaper for the expected list
+ * size; single-entity reads and mutations use JSON</li>
  * </ul>
  * 
  * @author Mohamed
@@ -47,21 +72,147 @@ import retrofit2.Response;
  * @since 2025-11-09
  */
 public class CompteRepository {
+    /** Snapshot file replaced after each successful list sync, null if disabled */
+    private static File snapshotFile = null;
+
+    /** Maximum number of account creations in flight during an import */
+    private static final int IMPORT_BATCH_SIZE = 32;
+
+    /** Randomization of the background sync interval, +/- 20% */
+    private static final double SYNC_JITTER = 0.2;
+
+    /** Background sync started by {@link #startBackgroundSync}, null if none */
+    private static SyncScheduler backgroundSync = null;
+
+    /** Entity cache shared by every repository instance */
+    private static final CompteCache compteCache = new CompteCache(256, 60000, 15000);
+
+    static {
+        compteCache.setMemoryBudget(RetrofitClient.getMemoryBudget());
+    }
+
+    /** Drops the cached entity of each account changed by an outbox replay */
+    private static final MutationOutbox.Listener CACHE_INVALIDATION = new MutationOutbox.Listener() {
+        @Override
+        public void onDelivered(PendingMutation mutation, Long serverId, Compte result) {
+            if (serverId != null) {
+                compteCache.invalidate(serverId);
+            }
+        }
+
+        @Override
+        public void onDropped(PendingMutation mutation) {
+            // Nothing changed on the server
+        }
+    };
+
     /** Retrofit service interface for API calls */
     private CompteService compteService;
 
-    /** Data format being used (JSON or XML) */
+    /** XML service used by list reads in AUTO mode, null otherwise */
+    private CompteService autoXmlService;
+
+    /** Data format being used (JSON, XML or AUTO) */
     private String format;
 
+    /** Chooses the format of list reads in AUTO mode */
+    private FormatNegotiator negotiator;
+
+    /** Scheduler dispatching calls by priority */
+    private RequestScheduler scheduler;
+
     /**
      * Constructs a repository with the specified data format.
      * Initializes the Retrofit service with the appropriate converter.
      * 
-     * @param converterType The data format to use ("JSON" or "XML")
+     * @param converterType The data format to use ("JSON", "XML" or "AUTO")
      */
     public CompteRepository(String converterType) {
-        compteService = RetrofitClient.getClient(converterType).create(CompteService.class);
+        if ("AUTO".equals(converterType)) {
+            compteService = RetrofitClient.getClient("JSON").create(CompteService.class);
+            autoXmlService = RetrofitClient.getClient("XML").create(CompteService.class);
+        } else {
+            compteService = RetrofitClient.getClient(converterType).create(CompteService.class);
+        }
+        this.format = converterType;
+        this.negotiator = RetrofitClient.getFormatNegotiator();
+        this.scheduler = RetrofitClient.getScheduler();
+    }
+
+    /**
+     * Constructs a repository on a given service and scheduler, e.g. bound to
+     * a local test server.
+     * 
+     * @param converterType The format decoded by the service ("JSON" or "XML")
+     * @param service       Service of the backend
+     * @param scheduler     Scheduler dispatching the calls
+     */
+    CompteRepository(String converterType, CompteService service, RequestScheduler scheduler) {
+        this.compteService = service;
         this.format = converterType;
+        this.negotiator = RetrofitClient.getFormatNegotiator();
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Enables the cold-start snapshot. After each successful list fetch the
+     * file is atomically replaced with the received accounts.
+     * 
+     * @param file Snapshot location, e.g. in Context.getFilesDir()
+     */
+    public static synchronized void setSnapshotFile(File file) {
+        snapshotFile = file;
+    }
+
+    /**
+     * Maps the last saved snapshot. No row is decoded until it is accessed.
+     * 
+     * @return The snapshot, or null if disabled, missing or unreadable
+     */
+    public static CompteSnapshot readSnapshot() {
+        File file;
+        synchronized (CompteRepository.class) {
+            file = snapshotFile;
+        }
+        if (file == null) {
+            return null;
+        }
+        try {
+            return CompteSnapshot.open(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Opens the last saved snapshot as a windowed source: only the rows around
+     * the visible range are held in memory, whatever the size of the list.
+     * The source counts against the shared memory budget until closed.
+     * 
+     * @param margin           Rows kept resident on each side of the visible
+     *                         range
+     * @param callbackExecutor Executor on which the listener is notified
+     * @param listener         Receiver of load notifications
+     * @return The source, or null if disabled, missing or unreadable
+     */
+    public static WindowedCompteSource openWindowedSnapshot(int margin, Executor callbackExecutor,
+            WindowedCompteSource.Listener listener) {
+        File file;
+        synchronized (CompteRepository.class) {
+            file = snapshotFile;
+        }
+        if (file == null) {
+            return null;
+        }
+        try {
+            WindowedCompteSource source = WindowedCompteSource.open(file, margin, callbackExecutor, listener);
+            if (source != null) {
+                source.setMemoryBudget(RetrofitClient.getMemoryBudget());
+            }
+            return source;
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     /**
@@ -79,71 +230,684 @@ public class CompteRepository {
      * @param callback Retrofit callback to handle the response
      */
     public void getAllCompte(Callback<List<Compte>> callback) {
-        if ("JSON".equals(format)) {
-            Call<List<Compte>> call = compteService.getAllCompteJson();
-            call.enqueue(callback);
+        getAllCompte(RequestPriority.VISIBLE, callback);
+    }
+
+    /**
+     * Retrieves all accounts from the backend with an explicit priority.
+     * Use {@link RequestPriority#BACKGROUND} for refreshes the user is not
+     * waiting for.
+     * 
+     * @param priority Scheduling priority of the fetch
+     * @param callback Retrofit callback to handle the response
+     */
+    public void getAllCompte(RequestPriority priority, Callback<List<Compte>> callback) {
+        String readFormat = listReadFormat();
+        if ("JSON".equals(readFormat)) {
+            scheduler.enqueue(compteService.getAllCompteJson(), priority, snapshotOnSuccess(callback));
         } else {
-            Call<CompteList> call = compteService.getAllCompteXml();
-            call.enqueue(new Callback<CompteList>() {
-                @Override
-                public void onResponse(Call<CompteList> call, Response<CompteList> response) {
-                    if (response.isSuccessful() && response.body() != null) {
-                        // Convert CompteList wrapper to List<Compte>
-                        List<Compte> comptes = response.body().getComptes();
-                        callback.onResponse(null, Response.success(comptes));
+            enqueueXmlList(listService(readFormat).getAllCompteXml(), priority, snapshotOnSuccess(callback));
+        }
+    }
+
+    /**
+     * Retrieves all accounts as {@code shards} pages requested and decoded
+     * concurrently, merged in order. Pays off for large lists, where a single
+     * response leaves bandwidth and cores idle; falls back to a single request
+     * if the backend does not report a total count. Pages are always fetched
+     * in JSON. The list screen does not use it: it streams the summaries into
+     * the snapshot file ({@link #loadCompteSummaries}), which concurrent pages
+     * could only feed once merged in memory.
+     * 
+     * @param shards   Number of pages to split the list into
+     * @param priority Scheduling priority of the page calls
+     * @param callback Retrofit callback receiving the merged list
+     */
+    public void getAllCompteSharded(int shards, RequestPriority priority, Callback<List<Compte>> callback) {
+        CompteService jsonService = "XML".equals(format)
+                ? RetrofitClient.getClient("JSON").create(CompteService.class)
+                : compteService;
+        new ShardedFetch(jsonService, scheduler).fetch(shards, priority, snapshotOnSuccess(callback));
+    }
+
+    /**
+     * Fetches the summary projection of every account straight into the
+     * snapshot file, so that no list is materialized on the way. A JSON list
+     * is streamed into the file one account at a time; XML has no incremental
+     * decoder, so an XML list is decoded whole, written, then dropped. The
+     * caller receives the mapped snapshot and decides how much of it to
+     * decode. Counts as fresh data for the background sync.
+     * 
+     * @param priority Scheduling priority of the fetch
+     * @param callback Receives the new snapshot, on a worker thread; fails
+     *                 with an IOException if no snapshot file is set
+     */
+    public void loadCompteSummaries(RequestPriority priority, final Callback<CompteSnapshot> callback) {
+        final File file;
+        synchronized (CompteRepository.class) {
+            file = snapshotFile;
+        }
+        if (file == null) {
+            callback.onFailure(null, new IOException("No snapshot file"));
+            return;
+        }
+        final Callback<CompteSnapshot> marking = markFreshOnSuccess(callback);
+        String readFormat = listReadFormat();
+        if ("JSON".equals(readFormat)) {
+            new CompteSnapshotLoader(compteService, scheduler, negotiator).load(file, priority, marking);
+            return;
+        }
+        enqueueXmlList(listService(readFormat).getCompteSummariesXml(Compte.SUMMARY_FIELDS), priority,
+                new Callback<List<Compte>>() {
+                    @Override
+                    public void onResponse(Call<List<Compte>> call, Response<List<Compte>> response) {
+                        if (!response.isSuccessful()) {
+                            marking.onResponse(null,
+                                    Response.<CompteSnapshot>error(response.errorBody(), response.raw()));
+                            return;
+                        }
+                        CompteSnapshot snapshot;
+                        try {
+                            snapshot = CompteSnapshot.replace(file, response.body());
+                        } catch (IOException e) {
+                            marking.onFailure(null, e);
+                            return;
+                        }
+                        marking.onResponse(null, Response.success(snapshot, response.raw()));
                     }
+
+                    @Override
+                    public void onFailure(Call<List<Compte>> call, Throwable t) {
+                        marking.onFailure(null, t);
+                    }
+                });
+    }
+
+    /**
+     * Wraps a snapshot callback so that a successful load counts as fresh
+     * data for the background sync.
+     * 
+     * @param callback The caller's callback
+     * @return A callback marking the sync fresh before delegating
+     */
+    private static Callback<CompteSnapshot> markFreshOnSuccess(final Callback<CompteSnapshot> callback) {
+        return new Callback<CompteSnapshot>() {
+            @Override
+            public void onResponse(Call<CompteSnapshot> call, Response<CompteSnapshot> response) {
+                SyncScheduler sync;
+                synchronized (CompteRepository.class) {
+                    sync = backgroundSync;
+                }
+                if (sync != null && response.isSuccessful()) {
+                    sync.markFresh();
                 }
+                callback.onResponse(call, response);
+            }
+
+            @Override
+            public void onFailure(Call<CompteSnapshot> call, Throwable t) {
+                callback.onFailure(call, t);
+            }
+        };
+    }
+
+    /**
+     * Starts refreshing the account list in the background, replacing any
+     * previous background sync. Syncs run at BACKGROUND priority about every
+     * {@code intervalMillis} (+/- 20% jitter), only when the constraints
+     * allow, and are skipped while any list load succeeded less than half an
+     * interval ago. Each sync goes through {@link #loadCompteSummaries}.
+     * The snapshot file's modification time counts as the last refresh, so
+     * that a new process or scheduler does not refetch a list saved moments
+     * ago; with a stale or missing snapshot, the first sync runs within
+     * seconds.
+     * 
+     * @param intervalMillis Nominal time between two syncs
+     * @param constraints    Network and battery conditions
+     * @param callback       Callback receiving each synced snapshot, on a
+     *                       worker thread
+     * @return The running scheduler; call {@link SyncScheduler#stop()} to end
+     *         it
+     */
+    public SyncScheduler startBackgroundSync(long intervalMillis, SyncScheduler.Constraints constraints,
+            final Callback<CompteSnapshot> callback) {
+        SyncScheduler sync = new SyncScheduler(intervalMillis, SYNC_JITTER, intervalMillis / 2,
+                SyncScheduler.systemClock(), new Random(), constraints, new SyncScheduler.SyncTask() {
+                    @Override
+                    public void sync(final SyncScheduler.Completion done) {
+                        loadCompteSummaries(RequestPriority.BACKGROUND, new Callback<CompteSnapshot>() {
+                            @Override
+                            public void onResponse(Call<CompteSnapshot> call, Response<CompteSnapshot> response) {
+                                done.finished(response.isSuccessful() && response.body() != null);
+                                callback.onResponse(call, response);
+                            }
+
+                            @Override
+                            public void onFailure(Call<CompteSnapshot> call, Throwable t) {
+                                done.finished(false);
+                                callback.onFailure(call, t);
+                            }
+                        });
+                    }
+                });
+        File file;
+        synchronized (CompteRepository.class) {
+            if (backgroundSync != null) {
+                backgroundSync.stop();
+            }
+            backgroundSync = sync;
+            file = snapshotFile;
+        }
+        if (file != null && file.exists()) {
+            sync.markFresh(System.currentTimeMillis() - file.lastModified());
+        }
+        sync.start();
+        return sync;
+    }
 
-                @Override
-                public void onFailure(Call<CompteList> call, Throwable t) {
-                    // Propagate error to the callback
+    /**
+     * Retrieves the accounts matching a query. The filter and sort are sent to
+     * the server so that only matching accounts are transferred. If the
+     * server rejects the parameters (400, 404, 405, 501) the whole list is
+     * fetched and the query is evaluated on the device. Results are always
+     * re-checked locally, which costs nothing when the server honoured the
+     * query and keeps results correct when it silently ignored a parameter.
+     * 
+     * <p>
+     * Exported metrics: {@code query.rows}, {@code query.fallbacks} and
+     * {@code query.pushdown.ignored} (counters).
+     * </p>
+     * 
+     * @param query    Filter and sort criteria
+     * @param priority Scheduling priority of the fetch
+     * @param callback Retrofit callback receiving the matching accounts
+     */
+    public void searchComptes(final CompteQuery query, final RequestPriority priority,
+            final Callback<List<Compte>> callback) {
+        Callback<List<Compte>> pushedDown = new Callback<List<Compte>>() {
+            @Override
+            public void onResponse(Call<List<Compte>> call, Response<List<Compte>> response) {
+                if (response.isSuccessful() && response.body() != null) {
+                    List<Compte> matching = query.apply(response.body());
+                    if (matching.size() < response.body().size()) {
+                        ClientMetrics.increment("query.pushdown.ignored");
+                    }
+                    ClientMetrics.add("query.rows", matching.size());
+                    callback.onResponse(call, Response.success(matching));
+                } else if (isQueryUnsupported(response.code())) {
+                    ClientMetrics.increment("query.fallbacks");
+                    getAllCompte(priority, evaluateLocally(query, callback));
+                } else {
+                    callback.onResponse(call, response);
                 }
-            });
+            }
+
+            @Override
+            public void onFailure(Call<List<Compte>> call, Throwable t) {
+                callback.onFailure(call, t);
+            }
+        };
+        String readFormat = listReadFormat();
+        if ("JSON".equals(readFormat)) {
+            scheduler.enqueue(compteService.searchComptesJson(query.toQueryMap()), priority, pushedDown);
+        } else {
+            enqueueXmlList(listService(readFormat).searchComptesXml(query.toQueryMap()), priority, pushedDown);
         }
     }
 
+    /**
+     * Counts the accounts matching a query. Uses a HEAD request answered with
+     * an X-Total-Count header, so no account is transferred; if the server
+     * does not send the header, the matching accounts are fetched through
+     * {@link #searchComptes} and counted.
+     * 
+     * @param query    Filter criteria; the sort order is ignored
+     * @param priority Scheduling priority of the request
+     * @param callback Callback receiving the count
+     */
+    public void countComptes(final CompteQuery query, final RequestPriority priority,
+            final Callback<Long> callback) {
+        scheduler.enqueue(compteService.countComptes(query.toQueryMap()), priority, new Callback<Void>() {
+            @Override
+            public void onResponse(Call<Void> call, Response<Void> response) {
+                int total = ShardedFetch.totalCount(response);
+                if (total >= 0) {
+                    callback.onResponse(null, Response.success((long) total));
+                    return;
+                }
+                ClientMetrics.increment("query.fallbacks");
+                searchComptes(query, priority, new Callback<List<Compte>>() {
+                    @Override
+                    public void onResponse(Call<List<Compte>> call, Response<List<Compte>> response) {
+                        if (response.isSuccessful()) {
+                            long count = response.body() != null ? response.body().size() : 0;
+                            callback.onResponse(null, Response.success(count));
+                        } else {
+                            callback.onResponse(null, Response.<Long>error(response.errorBody(), response.raw()));
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Call<List<Compte>> call, Throwable t) {
+                        callback.onFailure(null, t);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Call<Void> call, Throwable t) {
+                callback.onFailure(null, t);
+            }
+        });
+    }
+
+    /**
+     * Wraps a callback so that the full list it receives is filtered and
+     * sorted on the device.
+     * 
+     * @param query    Filter and sort criteria
+     * @param callback The caller's callback
+     * @return A callback applying the query before delegating
+     */
+    private static Callback<List<Compte>> evaluateLocally(final CompteQuery query,
+            final Callback<List<Compte>> callback) {
+        return new Callback<List<Compte>>() {
+            @Override
+            public void onResponse(Call<List<Compte>> call, Response<List<Compte>> response) {
+                if (response.isSuccessful() && response.body() != null) {
+                    List<Compte> matching = query.apply(response.body());
+                    ClientMetrics.add("query.rows", matching.size());
+                    callback.onResponse(call, Response.success(matching));
+                } else {
+                    callback.onResponse(call, response);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<List<Compte>> call, Throwable t) {
+                callback.onFailure(call, t);
+            }
+        };
+    }
+
+    /**
+     * Tells whether an error status means the server does not support the
+     * query parameters.
+     * 
+     * @param code HTTP status code
+     * @return true for 400, 404, 405 and 501
+     */
+    private static boolean isQueryUnsupported(int code) {
+        return code == 400 || code == 404 || code == 405 || code == 501;
+    }
+
+    /**
+     * Returns the format of the next list read: the configured one, or in
+     * AUTO mode the negotiator's current choice.
+     * 
+     * @return "JSON" or "XML"
+     */
+    private String listReadFormat() {
+        return "AUTO".equals(format) ? negotiator.choose() : format;
+    }
+
+    /**
+     * Returns the service able to decode a list read in the given format.
+     * 
+     * @param readFormat Format returned by {@link #listReadFormat()}
+     * @return The matching service
+     */
+    private CompteService listService(String readFormat) {
+        return "XML".equals(readFormat) && autoXmlService != null ? autoXmlService : compteService;
+    }
+
+    /**
+     * Wraps a list callback so that a successful result replaces the snapshot
+     * file and counts as fresh data for the background sync. The snapshot is
+     * written on the worker thread after the caller has been served.
+     * 
+     * @param callback The caller's callback
+     * @return A callback saving the snapshot on success
+     */
+    private Callback<List<Compte>> snapshotOnSuccess(final Callback<List<Compte>> callback) {
+        return new Callback<List<Compte>>() {
+            @Override
+            public void onResponse(Call<List<Compte>> call, Response<List<Compte>> response) {
+                callback.onResponse(call, response);
+                File file;
+                SyncScheduler sync;
+                synchronized (CompteRepository.class) {
+                    file = snapshotFile;
+                    sync = backgroundSync;
+                }
+                if (sync != null && response.isSuccessful() && response.body() != null) {
+                    sync.markFresh();
+                }
+                if (file != null && response.isSuccessful() && response.body() != null) {
+                    try {
+                        CompteSnapshot.write(file, response.body());
+                    } catch (IOException e) {
+                        // Keep the previous snapshot
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Call<List<Compte>> call, Throwable t) {
+                callback.onFailure(call, t);
+            }
+        };
+    }
+
+    /**
+     * Dispatches an XML list call and unwraps the CompteList into a
+     * List&lt;Compte&gt; for the caller. Every outcome reaches the callback:
+     * error statuses as error responses, an empty body as an empty list.
+     * 
+     * @param call     The XML list call
+     * @param priority Scheduling priority of the fetch
+     * @param callback Callback receiving the unwrapped list
+     */
+    private void enqueueXmlList(Call<CompteList> call, RequestPriority priority,
+            final Callback<List<Compte>> callback) {
+        scheduler.enqueue(call, priority, new Callback<CompteList>() {
+            @Override
+            public void onResponse(Call<CompteList> call, Response<CompteList> response) {
+                if (!response.isSuccessful()) {
+                    // Propagate the status, e.g. for the query fallback
+                    callback.onResponse(null, Response.<List<Compte>>error(response.errorBody(), response.raw()));
+                    return;
+                }
+                // Convert CompteList wrapper to List<Compte>; an empty body is an empty list
+                CompteList body = response.body();
+                List<Compte> comptes = body != null ? body.getComptes() : null;
+                callback.onResponse(null, Response.success(
+                        comptes != null ? comptes : Collections.<Compte>emptyList(), response.raw()));
+            }
+
+            @Override
+            public void onFailure(Call<CompteList> call, Throwable t) {
+                // Propagate error to the callback
+                callback.onFailure(null, t);
+            }
+        });
+    }
+
     /**
      * Retrieves a specific account by its unique identifier.
+     * Served from the entity cache when fresh; concurrent requests for the
+     * same id share a single network call. A cache hit invokes the callback
+     * synchronously on the calling thread.
      * 
      * @param id       The unique identifier of the account to retrieve
      * @param callback Retrofit callback to handle the response
      */
     public void getCompteById(Long id, Callback<Compte> callback) {
-        Call<Compte> call = compteService.getCompteById(id);
-        call.enqueue(callback);
+        compteCache.get(id, RequestPriority.VISIBLE, networkLoader(), callback);
+    }
+
+    /**
+     * Loads in the background the full entities of rows about to scroll into
+     * view, so that opening them does not wait on the network.
+     * 
+     * @param ids Ids of the upcoming rows
+     */
+    public void prefetchComptes(List<Long> ids) {
+        compteCache.prefetch(ids, networkLoader());
+    }
+
+    /**
+     * Returns the loader used by the entity cache on a miss.
+     * 
+     * @return A loader calling getCompteById through the scheduler
+     */
+    private CompteCache.Loader networkLoader() {
+        return new CompteCache.Loader() {
+            @Override
+            public void load(Long id, RequestPriority priority, Callback<Compte> callback) {
+                scheduler.enqueue(compteService.getCompteById(id), priority, callback);
+            }
+        };
     }
 
     /**
      * Adds a new account to the backend.
+     * If the backend is unreachable the creation is journaled in the outbox and
+     * the callback receives an {@link OfflineQueuedException}.
      * 
      * @param compte   The Compte object to be created
      * @param callback Retrofit callback to handle the response
      */
     public void addCompte(Compte compte, Callback<Compte> callback) {
         Call<Compte> call = compteService.addCompte(compte);
-        call.enqueue(callback);
+        scheduler.enqueue(call, RequestPriority.INTERACTIVE,
+                journalOnNetworkFailure(callback, PendingMutation.Operation.CREATE, null, compte));
     }
 
     /**
      * Updates an existing account with new data.
+     * If the backend is unreachable the update is journaled in the outbox and
+     * the callback receives an {@link OfflineQueuedException}. An account
+     * created offline (negative provisional id) is unknown to the backend, so
+     * its update is journaled directly and folded into the pending creation.
+     * Likewise, an account with a mutation still in the outbox gets the update
+     * journaled behind it, so that the older one is not replayed over it.
      * 
      * @param id       The unique identifier of the account to update
      * @param compte   The Compte object containing updated data
      * @param callback Retrofit callback to handle the response
      */
     public void updateCompte(Long id, Compte compte, Callback<Compte> callback) {
+        if (journalIfPending(PendingMutation.Operation.UPDATE, id, compte, callback)) {
+            return;
+        }
         Call<Compte> call = compteService.updateCompte(id, compte);
-        call.enqueue(callback);
+        scheduler.enqueue(call, RequestPriority.INTERACTIVE,
+                journalOnNetworkFailure(callback, PendingMutation.Operation.UPDATE, id, compte));
     }
 
     /**
      * Deletes an account from the backend.
+     * If the backend is unreachable the deletion is journaled in the outbox and
+     * the callback receives an {@link OfflineQueuedException}. Deleting an
+     * account created offline cancels its pending creation without any
+     * request; deleting an account with a mutation still in the outbox is
+     * journaled behind it.
      * 
      * @param id       The unique identifier of the account to delete
      * @param callback Retrofit callback to handle the response
      */
     public void deleteCompte(Long id, Callback<Void> callback) {
+        if (journalIfPending(PendingMutation.Operation.DELETE, id, null, callback)) {
+            return;
+        }
         Call<Void> call = compteService.deleteCompte(id);
-        call.enqueue(callback);
+        scheduler.enqueue(call, RequestPriority.INTERACTIVE,
+                journalOnNetworkFailure(callback, PendingMutation.Operation.DELETE, id, null));
+    }
+
+    /**
+     * Writes every account to a file, decoding and writing them one at a time
+     * so that memory use does not grow with the number of accounts. Runs at
+     * BACKGROUND priority; the file is replaced only once complete.
+     * 
+     * @param file     Destination file
+     * @param format   CSV or JSON output
+     * @param listener Receiver of progress and rows per second, invoked on a
+     *                 background thread
+     */
+    public void exportComptes(File file, CompteExporter.Format format, TransferListener listener) {
+        CompteService streamingService = RetrofitClient.getStreamingClient().create(CompteService.class);
+        new CompteExporter(streamingService, scheduler).export(file, format, listener);
+    }
+
+    /**
+     * Creates the accounts of a CSV or JSON file, parsing it incrementally and
+     * keeping at most {@code IMPORT_BATCH_SIZE} creations in flight. Creations
+     * run at BACKGROUND priority and bypass the entity cache and the outbox.
+     * 
+     * @param file     CSV or JSON file of accounts
+     * @param listener Receiver of progress and rows per second, invoked on a
+     *                 background thread
+     */
+    public void importComptes(File file, TransferListener listener) {
+        CompteService jsonService = "XML".equals(format)
+                ? RetrofitClient.getClient("JSON").create(CompteService.class)
+                : compteService;
+        new CompteImporter(jsonService, scheduler, IMPORT_BATCH_SIZE).start(file, listener);
+    }
+
+    /**
+     * Creates a subscription to the server-push stream of account changes.
+     * The stream is not started; call {@link CompteChangeStream#start()} and
+     * {@link CompteChangeStream#stop()} as the changes are needed, the cursor
+     * being kept in between. Pushed changes also invalidate the matching
+     * entity cache entries, and a connection that does not resume from the
+     * cursor clears the cache.
+     * 
+     * @param listener Receiver of the pushed changes, invoked on a background
+     *                 thread
+     * @return The stopped change stream
+     */
+    public CompteChangeStream subscribeToChanges(final CompteChangeStream.Listener listener) {
+        CompteService streamingService = RetrofitClient.getStreamingClient().create(CompteService.class);
+        return new CompteChangeStream(streamingService, new CompteChangeStream.Listener() {
+            @Override
+            public void onConnected(boolean resumed) {
+                if (!resumed) {
+                    // Changes may have been missed, as the list is reloaded
+                    compteCache.clear();
+                }
+                listener.onConnected(resumed);
+            }
+
+            @Override
+            public void onUpsert(Compte compte) {
+                compteCache.invalidate(compte.getId());
+                listener.onUpsert(compte);
+            }
+
+            @Override
+            public void onDelete(Long id) {
+                compteCache.invalidate(id);
+                listener.onDelete(id);
+            }
+
+            @Override
+            public void onResyncRequired() {
+                compteCache.clear();
+                listener.onResyncRequired();
+            }
+        });
+    }
+
+    /**
+     * Sends the mutations journaled while offline, if any. Replayed updates
+     * and deletes drop the cached entity once the backend accepts them.
+     * Should be called when connectivity returns.
+     */
+    public void flushOutbox() {
+        MutationOutbox outbox = MutationOutbox.getInstance();
+        if (outbox != null) {
+            outbox.addListener(CACHE_INVALIDATION);
+            outbox.flush(compteService, scheduler);
+        }
+    }
+
+    /**
+     * Journals a mutation instead of sending it when the outbox must deliver
+     * it: the account was created offline and the backend does not know its
+     * provisional id yet, or an older mutation of the account is still
+     * pending and would be replayed over this one. The outbox coalesces the
+     * two; for a server id, a flush is started right away.
+     * 
+     * @param operation UPDATE or DELETE
+     * @param id        Target account id
+     * @param compte    Account body, null for DELETE
+     * @param callback  The caller's callback, receiving an
+     *                  {@link OfflineQueuedException} if the mutation was
+     *                  journaled
+     * @param <T>       Type of the response body
+     * @return false if nothing is pending for the account and the mutation
+     *         must be sent
+     */
+    private <T> boolean journalIfPending(PendingMutation.Operation operation, Long id, Compte compte,
+            Callback<T> callback) {
+        MutationOutbox outbox = MutationOutbox.getInstance();
+        if (id == null || outbox == null || (id >= 0 && !outbox.hasPending(id))) {
+            return false;
+        }
+        try {
+            outbox.record(operation, id, compte);
+            callback.onFailure(null, new OfflineQueuedException(null));
+        } catch (IOException e) {
+            callback.onFailure(null, e);
+            return true;
+        }
+        if (id >= 0) {
+            flushOutbox();
+        }
+        return true;
+    }
+
+    /**
+     * Wraps a mutation callback so that failures to reach the backend are
+     * journaled in the outbox instead of losing the user's edit. Only
+     * failures to connect are journaled: after a timeout or a reset, the
+     * request may have been processed, and replaying a creation would create
+     * the account twice. Once the backend accepts the
+     * mutation, the cached entity is dropped: invalidating before sending
+     * would let a read racing the mutation cache the old state again. A
+     * successful mutation also proves the backend is reachable again and
+     * triggers an outbox flush.
+     * 
+     * @param callback  The caller's callback
+     * @param operation The mutation being sent
+     * @param id        Target account id, null for CREATE
+     * @param compte    Account body, null for DELETE
+     * @param <T>       Type of the response body
+     * @return A callback journaling the mutation on network failure
+     */
+    private <T> Callback<T> journalOnNetworkFailure(final Callback<T> callback,
+            final PendingMutation.Operation operation, final Long id, final Compte compte) {
+        return new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                if (response.isSuccessful() && id != null) {
+                    compteCache.invalidate(id);
+                }
+                callback.onResponse(call, response);
+                if (response.isSuccessful()) {
+                    flushOutbox();
+                }
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                MutationOutbox outbox = MutationOutbox.getInstance();
+                if (outbox != null && isUnreachable(t)) {
+                    try {
+                        PendingMutation recorded = outbox.record(operation, id, compte);
+                        callback.onFailure(call, new OfflineQueuedException(t,
+                                operation == PendingMutation.Operation.CREATE ? recorded.getId() : null));
+                        return;
+                    } catch (IOException journalError) {
+                        // Journal unavailable, report the original failure
+                    }
+                }
+                callback.onFailure(call, t);
+            }
+        };
+    }
+
+    /**
+     * Tells whether a call failed before its request could reach the backend.
+     * 
+     * @param t The failure
+     * @return true if no connection could be made
+     */
+    private static boolean isUnreachable(Throwable t) {
+        return t instanceof ConnectException || t instanceof UnknownHostException
+                || t instanceof NoRouteToHostException;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,269 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.entities.Compte;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * CompteSnapshot - Fixed-layout, memory-mapped copy of the last known account
+ * list.
+ *
+ * <p>
+ * On cold start the list can be shown from this file before the network, the
+ * converters or any parsing are involved. The file is mapped read-only and
+ * rows are decoded one at a time when the adapter binds them, so opening a
+ * snapshot costs the same whatever its size.
+ * </p>
+ *
+ * <p>
+ * File layout (big-endian):
+ * </p>
+ *
+ * <pre>
+ * header  : magic (int) | version (int) | count (int) | recordSize (int)
+ * record  : id (long, Long.MIN_VALUE if null) | solde (double)
+ *           | type (16 bytes UTF-8, zero padded)
+ *           | dateCreation (16 bytes UTF-8, zero padded)
+ * </pre>
+ *
+ * <p>
+ * Longer strings are truncated to at most 16 bytes, without splitting a
+ * character. A snapshot is written to a
+ * temporary file, synced, then renamed over the previous one, so readers
+ * always see either the old or the new complete snapshot.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class CompteSnapshot extends AbstractList<Compte> implements RandomAccess {
+    /** File signature, "CSNP" */
+    private static final int MAGIC = 0x43534E50;
+
+    /** Current layout version */
+    private static final int VERSION = 1;
+
+    /** Size of the header in bytes */
+    private static final int HEADER_SIZE = 16;
+
+    /** Size of a text field in bytes */
+    private static final int TEXT_SIZE = 16;
+
+    /** Size of a record in bytes */
+    static final int RECORD_SIZE = 8 + 8 + TEXT_SIZE + TEXT_SIZE;
+
+    /** Encoded value of a null id */
+    private static final long NULL_ID = Long.MIN_VALUE;
+
+    /** Encoding of text fields */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Records written per buffer flush */
+    private static final int RECORDS_PER_CHUNK = 1024;
+
+    /** Read-only mapping of the whole file */
+    private final ByteBuffer buffer;
+
+    /** Number of records */
+    private final int count;
+
+    /**
+     * Constructs a view over a validated mapping.
+     *
+     * @param buffer The mapped file
+     * @param count  Number of records
+     */
+    private CompteSnapshot(ByteBuffer buffer, int count) {
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param file The snapshot file
+     * @return The mapped snapshot, or null if the file is missing or invalid
+     * @throws IOException If the file cannot be mapped
+     */
+    public static CompteSnapshot open(File file) throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION || mapped.getInt(12) != RECORD_SIZE) {
+                return null;
+            }
+            int count = mapped.getInt(8);
+            if (count < 0 || HEADER_SIZE + (long) count * RECORD_SIZE > channel.size()) {
+                return null;
+            }
+            return new CompteSnapshot(mapped, count);
+        } finally {
+            // The mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Atomically replaces a snapshot file with the given accounts. The accounts
+     * are streamed to disk, so the iterable may be larger than the heap.
+     *
+     * @param file    The snapshot file to replace
+     * @param comptes Accounts to store, in display order
+     * @throws IOException If the snapshot cannot be written
+     */
+    public static synchronized void write(File file, Iterable<Compte> comptes) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        boolean written = false;
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE * RECORDS_PER_CHUNK).order(ByteOrder.BIG_ENDIAN);
+            chunk.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(RECORD_SIZE);
+            int count = 0;
+            for (Compte compte : comptes) {
+                if (chunk.remaining() < RECORD_SIZE) {
+                    drain(chunk, channel);
+                }
+                chunk.putLong(compte.getId() != null ? compte.getId() : NULL_ID);
+                chunk.putDouble(compte.getSolde());
+                putText(chunk, compte.getType());
+                putText(chunk, compte.getDateCreation());
+                count++;
+            }
+            drain(chunk, channel);
+            ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN);
+            header.putInt(0, count);
+            channel.write(header, 8);
+            channel.force(true);
+            written = true;
+        } finally {
+            out.close();
+            if (!written) {
+                temp.delete();
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * Replaces a snapshot file, as {@link #write}, and maps the new file.
+     * Concurrent replacements are serialized, so the mapping is always the
+     * one just written.
+     *
+     * @param file    The snapshot file to replace
+     * @param comptes Accounts to store, in display order
+     * @return The mapped snapshot
+     * @throws IOException If the snapshot cannot be written or mapped
+     */
+    public static synchronized CompteSnapshot replace(File file, Iterable<Compte> comptes) throws IOException {
+        write(file, comptes);
+        CompteSnapshot snapshot = open(file);
+        if (snapshot == null) {
+            throw new IOException("Cannot map " + file);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the number of accounts in the snapshot.
+     *
+     * @return The record count
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decodes a single account from the mapping.
+     *
+     * @param index Position of the account
+     * @return A new Compte holding the stored values
+     */
+    @Override
+    public Compte get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + count);
+        }
+        int offset = HEADER_SIZE + index * RECORD_SIZE;
+        long id = buffer.getLong(offset);
+        double solde = buffer.getDouble(offset + 8);
+        String type = getText(offset + 16);
+        String dateCreation = getText(offset + 16 + TEXT_SIZE);
+        return new Compte(id == NULL_ID ? null : id, solde, type, dateCreation);
+    }
+
+    /**
+     * Reads a zero-padded text field.
+     *
+     * @param offset Absolute offset of the field
+     * @return The decoded string, null if the field is empty
+     */
+    private String getText(int offset) {
+        byte[] bytes = new byte[TEXT_SIZE];
+        int length = 0;
+        while (length < TEXT_SIZE) {
+            byte b = buffer.get(offset + length);
+            if (b == 0) {
+                break;
+            }
+            bytes[length++] = b;
+        }
+        return length == 0 ? null : new String(bytes, 0, length, UTF_8);
+    }
+
+    /**
+     * Writes a zero-padded text field, truncated to its fixed size on a
+     * character boundary so that no partial UTF-8 sequence is stored.
+     *
+     * @param chunk The output buffer
+     * @param value The string to write, may be null
+     */
+    private static void putText(ByteBuffer chunk, String value) {
+        byte[] bytes = value != null ? value.getBytes(UTF_8) : new byte[0];
+        int length = Math.min(bytes.length, TEXT_SIZE);
+        if (length < bytes.length) {
+            // Back off to the lead byte of the character that does not fit
+            while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+                length--;
+            }
+        }
+        chunk.put(bytes, 0, length);
+        for (int i = length; i < TEXT_SIZE; i++) {
+            chunk.put((byte) 0);
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the channel and clears the buffer.
+     *
+     * @param chunk   The output buffer
+     * @param channel The destination channel
+     * @throws IOException If the write fails
+     */
+    private static void drain(ByteBuffer chunk, FileChannel channel) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+            channel.write(chunk);
+        }
+        chunk.clear();
+    }
+}
@@ -0,0 +1,231 @@
+package ma.projet.restclient.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.FormatNegotiator;
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.config.RequestScheduler;
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * CompteSnapshotLoader - Streams the account summaries from the backend into
+ * the snapshot file, one row at a time.
+ *
+ * <p>
+ * The list endpoint is read as a raw streaming body; each account is decoded
+ * with a Gson JsonReader and appended to the snapshot before the next one is
+ * read, as CompteExporter does, so the list is never materialized. The
+ * caller receives the mapped snapshot, whose rows are decoded when accessed.
+ * </p>
+ *
+ * <p>
+ * A raw body bypasses MeasuringConverterFactory, so the loader reports the
+ * load to the {@link FormatNegotiator} itself: the time spent reading the
+ * body counts as transfer, the rest of the time spent producing rows as
+ * decoding. Writing the snapshot is left out, as it does not depend on the
+ * wire format.
+ * </p>
+ *
+ * <p>
+ * Exported metrics: {@code snapshotLoad.rows} (counter).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class CompteSnapshotLoader {
+
+    /** JSON service; a streaming body is not converted, any client works */
+    private final CompteService service;
+
+    /** Scheduler running the download */
+    private final RequestScheduler scheduler;
+
+    /** Receiver of the cost of each load, null if none */
+    private final FormatNegotiator negotiator;
+
+    /** Decoder of accounts */
+    private final Gson gson = new Gson();
+
+    /** Encoding of JSON bodies */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Constructs a loader.
+     *
+     * @param service    Service of the backend
+     * @param scheduler  Scheduler running the download
+     * @param negotiator Receiver of the cost of each load, may be null
+     */
+    public CompteSnapshotLoader(CompteService service, RequestScheduler scheduler, FormatNegotiator negotiator) {
+        this.service = service;
+        this.scheduler = scheduler;
+        this.negotiator = negotiator;
+    }
+
+    /**
+     * Fetches the summary projection of every account into a snapshot file.
+     * The file is replaced only once the whole list has been received.
+     *
+     * @param file     The snapshot file to replace
+     * @param priority Scheduling priority of the fetch
+     * @param callback Receives the mapped snapshot, an error response, or the
+     *                 transport or decoding failure; invoked on a worker
+     *                 thread
+     */
+    public void load(final File file, RequestPriority priority, final Callback<CompteSnapshot> callback) {
+        scheduler.enqueue(service.streamCompteSummaries(Compte.SUMMARY_FIELDS), priority,
+                new Callback<ResponseBody>() {
+                    @Override
+                    public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                        if (!response.isSuccessful() || response.body() == null) {
+                            callback.onResponse(null,
+                                    Response.<CompteSnapshot>error(response.errorBody(), response.raw()));
+                            return;
+                        }
+                        CompteSnapshot snapshot;
+                        try {
+                            snapshot = write(file, response.body());
+                        } catch (IOException | RuntimeException e) {
+                            callback.onFailure(null, e);
+                            return;
+                        }
+                        callback.onResponse(null, Response.success(snapshot, response.raw()));
+                    }
+
+                    @Override
+                    public void onFailure(Call<ResponseBody> call, Throwable t) {
+                        callback.onFailure(null, t);
+                    }
+                });
+    }
+
+    /**
+     * Decodes the streamed accounts into the snapshot, one at a time.
+     *
+     * @param file The snapshot file to replace
+     * @param body The streaming JSON array of accounts
+     * @return The mapped snapshot
+     * @throws IOException If reading or writing fails
+     */
+    private CompteSnapshot write(File file, ResponseBody body) throws IOException {
+        TimedSource source = new TimedSource(body.source());
+        JsonReader reader = new JsonReader(new InputStreamReader(Okio.buffer(source).inputStream(), UTF_8));
+        try {
+            long start = System.nanoTime();
+            reader.beginArray();
+            StreamedRows rows = new StreamedRows(reader);
+            rows.nanos = System.nanoTime() - start;
+            CompteSnapshot snapshot = CompteSnapshot.replace(file, rows);
+            ClientMetrics.add("snapshotLoad.rows", snapshot.size());
+            if (negotiator != null) {
+                negotiator.record("JSON", snapshot.size(), source.bytes, source.readNanos,
+                        Math.max(0, rows.nanos - source.readNanos));
+            }
+            return snapshot;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Single-use view of the remaining elements of a JSON array, decoded on
+     * demand. Read failures surface as UncheckedIOException. Counts the time
+     * spent producing rows, i.e. reading and decoding them.
+     */
+    private final class StreamedRows implements Iterable<Compte>, Iterator<Compte> {
+        private final JsonReader reader;
+        private boolean ended = false;
+        private long nanos = 0;
+
+        StreamedRows(JsonReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Iterator<Compte> iterator() {
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ended) {
+                return false;
+            }
+            long start = System.nanoTime();
+            try {
+                if (reader.hasNext()) {
+                    return true;
+                }
+                // Fails on a truncated body, so that no partial list is kept
+                reader.endArray();
+                ended = true;
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public Compte next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long start = System.nanoTime();
+            try {
+                return gson.fromJson(reader, Compte.class);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Source measuring the bytes read from the body and the time spent
+     * waiting for them.
+     */
+    private static final class TimedSource extends ForwardingSource {
+        private long bytes = 0;
+        private long readNanos = 0;
+
+        TimedSource(Source delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long start = System.nanoTime();
+            long read = super.read(sink, byteCount);
+            readNanos += System.nanoTime() - start;
+            if (read > 0) {
+                bytes += read;
+            }
+            return read;
+        }
+    }
+}
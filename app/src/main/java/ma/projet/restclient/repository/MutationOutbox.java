@@ -0,0 +1,771 @@
+package ma.projet.restclient.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.config.RequestScheduler;
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * MutationOutbox - Durable append-only journal of mutations that could not
+ * reach the backend.
+ *
+ * <p>
+ * When the backend is unreachable, CompteRepository records the add, update or
+ * delete here instead of dropping it. The journal is replayed on startup and
+ * flushed in batches once connectivity returns.
+ * </p>
+ *
+ * <p>
+ * Journal format, one record per line:
+ * </p>
+ * <ul>
+ * <li>{@code M<TAB>json} - a PendingMutation was recorded</li>
+ * <li>{@code A<TAB>sequence} - the mutation was delivered or superseded</li>
+ * <li>{@code R<TAB>provisionalId<TAB>serverId} - an offline creation received
+ * its server id</li>
+ * </ul>
+ *
+ * <p>
+ * Redundant mutations are coalesced as soon as they are recorded: successive
+ * updates of one account keep only the last one, an update of an account
+ * created offline is folded into the creation, and a delete of an account
+ * created offline cancels both. Mutations already being sent are never
+ * coalesced with newer ones.
+ * </p>
+ *
+ * <p>
+ * Accounts created offline are identified by their provisional id until the
+ * creation is delivered. Each delivered mutation is reported to the
+ * registered {@link Listener}s with the server id it applied to, so that the
+ * UI can replace a provisional row and caches can drop what it changed. A
+ * mutation the backend rejects is dropped and reported as well, so that the
+ * UI can undo it. Dropping a creation also drops the mutations waiting for
+ * its server id; they are covered by the report of the creation.
+ * Until the UI has done so, a mutation may still be recorded against the
+ * provisional id; resolutions are therefore kept after the creation is
+ * delivered, up to the last {@code MAX_RESOLVED_IDS}.
+ * </p>
+ *
+ * <p>
+ * Exported metrics: {@code outbox.depth} (gauge), {@code outbox.flushRate}
+ * (gauge, mutations per second of the last flush), {@code outbox.flushed},
+ * {@code outbox.coalesced} and {@code outbox.dropped} (counters).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class MutationOutbox {
+
+    /**
+     * Receives the mutations accepted or rejected by the backend during a
+     * flush.
+     */
+    public interface Listener {
+        /**
+         * Called, on a worker thread, when a replayed mutation was accepted
+         * by the backend.
+         *
+         * @param mutation The delivered mutation; a CREATE or a mutation of
+         *                 an account created offline carries the provisional
+         *                 id
+         * @param serverId Server id of the account, null if the backend did
+         *                 not return one for a creation
+         * @param result   Account returned by the backend, null for a delete
+         */
+        void onDelivered(PendingMutation mutation, Long serverId, Compte result);
+
+        /**
+         * Called, on a worker thread, when a replayed mutation was rejected
+         * by the backend with a final status, e.g. 400 or 404, and dropped.
+         * The mutations of an account whose creation was rejected are dropped
+         * with it and not reported.
+         *
+         * @param mutation The dropped mutation; a CREATE or a mutation of an
+         *                 account created offline carries the provisional id
+         */
+        void onDropped(PendingMutation mutation);
+    }
+
+    /** Name of the journal file inside the outbox directory */
+    private static final String JOURNAL_NAME = "outbox.journal";
+
+    /** Record type of a journaled mutation */
+    private static final String MUTATION = "M";
+
+    /** Record type of an acknowledged mutation */
+    private static final String ACK = "A";
+
+    /** Record type of a provisional id resolution */
+    private static final String RESOLVED = "R";
+
+    /** Resolved provisional ids kept by a compaction */
+    private static final int MAX_RESOLVED_IDS = 256;
+
+    /** Number of acknowledged records after which the journal is rewritten */
+    private static final int COMPACTION_THRESHOLD = 256;
+
+    /** Journal encoding */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Singleton outbox, null until {@link #init(File)} is called */
+    private static MutationOutbox instance = null;
+
+    /** Journal file */
+    private final File journal;
+
+    /** Serializer for journal records */
+    private final Gson gson = new Gson();
+
+    /** Live mutations in journal order, indexed by sequence */
+    private final LinkedHashMap<Long, PendingMutation> pending = new LinkedHashMap<>();
+
+    /** Sequence of the latest mutation per account that is not being sent */
+    private final Map<Long, Long> latestById = new HashMap<>();
+
+    /** Sequences of the mutations currently being sent */
+    private final Set<Long> inFlight = new HashSet<>();
+
+    /** Server ids assigned to accounts created offline, oldest first */
+    private final Map<Long, Long> resolvedIds = new LinkedHashMap<>();
+
+    /** Output stream of the journal, kept to fsync each record */
+    private FileOutputStream journalStream;
+
+    /** Writer appending to the journal */
+    private Writer writer;
+
+    /** Next sequence number to assign */
+    private long nextSequence = 1;
+
+    /** Whether the replayed journal ends with an unterminated record */
+    private boolean tornTail = false;
+
+    /** Number of acknowledgement records since the last compaction */
+    private int ackedRecords = 0;
+
+    /** Maximum number of mutations sent concurrently by one batch */
+    private int batchSize = 16;
+
+    /** Whether a flush is in progress */
+    private boolean flushing = false;
+
+    /** Start of the current flush, in nanoseconds */
+    private long flushStartedAt;
+
+    /** Mutations delivered by the current flush */
+    private int flushedInRun;
+
+    /** Throughput of the last completed flush, in mutations per second */
+    private volatile double lastFlushRate = 0;
+
+    /** Receivers of delivered mutations */
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Opens the outbox stored in the given directory, replaying its journal.
+     * Subsequent calls return the already opened outbox.
+     *
+     * @param directory Directory holding the journal (e.g. Context.getFilesDir())
+     * @return The process-wide outbox
+     * @throws IOException If the journal cannot be read or opened for append
+     */
+    public static synchronized MutationOutbox init(File directory) throws IOException {
+        if (instance == null) {
+            instance = new MutationOutbox(new File(directory, JOURNAL_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Replaces the process-wide outbox; exposed to the package for tests.
+     *
+     * @param outbox The outbox, null to forget it
+     */
+    static synchronized void setInstance(MutationOutbox outbox) {
+        instance = outbox;
+    }
+
+    /**
+     * Returns the process-wide outbox.
+     *
+     * @return The outbox, or null if {@link #init(File)} was never called
+     */
+    public static synchronized MutationOutbox getInstance() {
+        return instance;
+    }
+
+    /**
+     * Constructs an outbox over a journal file and replays it.
+     *
+     * @param journal The journal file, created if missing
+     * @throws IOException If the journal cannot be read or opened for append
+     */
+    MutationOutbox(File journal) throws IOException {
+        this.journal = journal;
+        replay();
+        openWriter();
+        ClientMetrics.registerGauge("outbox.depth", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                return depth();
+            }
+        });
+        ClientMetrics.registerGauge("outbox.flushRate", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                return lastFlushRate;
+            }
+        });
+    }
+
+    /**
+     * Sets the maximum number of mutations sent concurrently by one batch.
+     *
+     * @param batchSize The batch size, at least 1
+     */
+    public synchronized void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize < 1: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Registers a receiver of delivered mutations. Registering the same
+     * listener twice has no effect.
+     *
+     * @param listener The listener
+     */
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Unregisters a receiver of delivered mutations.
+     *
+     * @param listener The listener
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the number of mutations waiting to be delivered.
+     *
+     * @return The outbox depth after coalescing
+     */
+    public synchronized int depth() {
+        return pending.size();
+    }
+
+    /**
+     * Tells whether a mutation of an account is waiting to be delivered,
+     * including one recorded against its provisional id. A new mutation of
+     * such an account must be recorded rather than sent directly, or the
+     * older one would be replayed over it.
+     *
+     * @param id Server or provisional id of the account
+     * @return true if a pending or in-flight mutation targets the account
+     */
+    public synchronized boolean hasPending(Long id) {
+        for (PendingMutation mutation : pending.values()) {
+            if (id.equals(mutation.getId()) || id.equals(resolvedIds.get(mutation.getId()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the live mutations in journal order; exposed to the package for
+     * tests.
+     *
+     * @return A copy of the pending mutations
+     */
+    synchronized List<PendingMutation> pendingMutations() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Returns the throughput of the last completed flush.
+     *
+     * @return Mutations delivered per second
+     */
+    public double getLastFlushRate() {
+        return lastFlushRate;
+    }
+
+    /**
+     * Durably records a mutation and coalesces it with pending ones.
+     *
+     * @param operation Operation to replay
+     * @param id        Target account id, ignored for CREATE
+     * @param compte    Account body, null for DELETE
+     * @return The recorded mutation; a CREATE carries its provisional id
+     * @throws IOException If the journal cannot be written
+     */
+    public synchronized PendingMutation record(PendingMutation.Operation operation, Long id, Compte compte)
+            throws IOException {
+        long sequence = nextSequence++;
+        Long target = operation == PendingMutation.Operation.CREATE ? Long.valueOf(-sequence) : id;
+        PendingMutation mutation = new PendingMutation(sequence, operation, target, compte);
+        appendRecord(MUTATION + "\t" + gson.toJson(mutation));
+        apply(mutation, true);
+        syncJournal();
+        return mutation;
+    }
+
+    /**
+     * Starts delivering pending mutations, one batch at a time. Does nothing if
+     * a flush is already running or the outbox is empty. The flush stops at the
+     * first batch containing a retryable failure.
+     *
+     * @param service   Service used to replay the mutations
+     * @param scheduler Scheduler dispatching the calls
+     */
+    public void flush(CompteService service, RequestScheduler scheduler) {
+        List<PendingMutation> batch;
+        synchronized (this) {
+            if (flushing) {
+                return;
+            }
+            batch = nextBatch();
+            if (batch.isEmpty()) {
+                return;
+            }
+            flushing = true;
+            flushStartedAt = System.nanoTime();
+            flushedInRun = 0;
+        }
+        sendBatch(batch, service, scheduler);
+    }
+
+    /**
+     * Replays the journal file into memory. Notes whether the last record
+     * lacks its line terminator, so that the next append starts on a line of
+     * its own instead of extending the torn record.
+     *
+     * @throws IOException If the journal cannot be read
+     */
+    private void replay() throws IOException {
+        if (!journal.exists()) {
+            return;
+        }
+        long complete = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                complete += line.getBytes(UTF_8).length + 1;
+                String[] parts = line.split("\t");
+                try {
+                    if (MUTATION.equals(parts[0]) && parts.length == 2) {
+                        PendingMutation mutation = gson.fromJson(parts[1], PendingMutation.class);
+                        nextSequence = Math.max(nextSequence, mutation.getSequence() + 1);
+                        apply(mutation, false);
+                    } else if (ACK.equals(parts[0]) && parts.length == 2) {
+                        acknowledge(Long.parseLong(parts[1]));
+                        ackedRecords++;
+                    } else if (RESOLVED.equals(parts[0]) && parts.length == 3) {
+                        resolvedIds.put(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                    }
+                } catch (JsonSyntaxException | NumberFormatException e) {
+                    // Torn record left by a crash during append, skip it
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        tornTail = complete > journal.length();
+    }
+
+    /**
+     * Adds a mutation to the in-memory state, coalescing it with the latest
+     * pending mutation of the same account.
+     *
+     * @param mutation The mutation to apply
+     * @param live     true when recording, false when replaying the journal
+     * @throws IOException If an acknowledgement cannot be journaled
+     */
+    private void apply(PendingMutation mutation, boolean live) throws IOException {
+        Long previousSequence = latestById.get(mutation.getId());
+        PendingMutation previous = previousSequence != null ? pending.get(previousSequence) : null;
+        PendingMutation effective = mutation;
+
+        if (previous != null) {
+            PendingMutation.Operation before = previous.getOperation();
+            if (before == PendingMutation.Operation.DELETE) {
+                // Nothing can follow a delete, drop the new mutation
+                supersede(mutation.getSequence(), live);
+                return;
+            }
+            if (mutation.getOperation() == PendingMutation.Operation.DELETE
+                    && before == PendingMutation.Operation.CREATE) {
+                // Create then delete: neither needs to reach the backend
+                supersede(previous.getSequence(), live);
+                supersede(mutation.getSequence(), live);
+                return;
+            }
+            if (mutation.getOperation() == PendingMutation.Operation.UPDATE
+                    && before == PendingMutation.Operation.CREATE) {
+                effective = new PendingMutation(mutation.getSequence(), PendingMutation.Operation.CREATE,
+                        mutation.getId(), mutation.getCompte());
+            }
+            supersede(previous.getSequence(), live);
+        }
+        pending.put(effective.getSequence(), effective);
+        latestById.put(effective.getId(), effective.getSequence());
+    }
+
+    /**
+     * Removes a mutation made redundant by a newer one.
+     *
+     * @param sequence Sequence of the redundant mutation
+     * @param live     Whether to journal the acknowledgement
+     * @throws IOException If the acknowledgement cannot be journaled
+     */
+    private void supersede(long sequence, boolean live) throws IOException {
+        acknowledge(sequence);
+        if (live) {
+            appendRecord(ACK + "\t" + sequence);
+            ackedRecords++;
+            ClientMetrics.increment("outbox.coalesced");
+        }
+    }
+
+    /**
+     * Removes a mutation from the in-memory state.
+     *
+     * @param sequence Sequence of the mutation
+     */
+    private void acknowledge(long sequence) {
+        PendingMutation removed = pending.remove(sequence);
+        if (removed != null) {
+            Long latest = latestById.get(removed.getId());
+            if (latest != null && latest == sequence) {
+                latestById.remove(removed.getId());
+            }
+        }
+    }
+
+    /**
+     * Selects the next mutations to send and marks them in flight. Mutations
+     * targeting an offline-created account wait until its creation is
+     * delivered.
+     *
+     * @return Up to batchSize mutations, empty if nothing can be sent
+     */
+    private synchronized List<PendingMutation> nextBatch() {
+        List<PendingMutation> batch = new ArrayList<>();
+        Set<Long> batchIds = new HashSet<>();
+        Iterator<PendingMutation> iterator = pending.values().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            PendingMutation mutation = iterator.next();
+            if (inFlight.contains(mutation.getSequence()) || batchIds.contains(mutation.getId())) {
+                continue;
+            }
+            if (mutation.hasProvisionalId() && mutation.getOperation() != PendingMutation.Operation.CREATE
+                    && !resolvedIds.containsKey(mutation.getId())) {
+                continue;
+            }
+            batch.add(mutation);
+            batchIds.add(mutation.getId());
+            inFlight.add(mutation.getSequence());
+            Long latest = latestById.get(mutation.getId());
+            if (latest != null && latest == mutation.getSequence()) {
+                latestById.remove(mutation.getId());
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Sends every mutation of a batch concurrently.
+     *
+     * @param batch     Mutations to send
+     * @param service   Service used to replay the mutations
+     * @param scheduler Scheduler dispatching the calls
+     */
+    private void sendBatch(List<PendingMutation> batch, CompteService service, RequestScheduler scheduler) {
+        BatchTracker tracker = new BatchTracker(batch.size(), service, scheduler);
+        for (PendingMutation mutation : batch) {
+            Long target = mutation.getId();
+            if (mutation.hasProvisionalId() && mutation.getOperation() != PendingMutation.Operation.CREATE) {
+                synchronized (this) {
+                    target = resolvedIds.get(mutation.getId());
+                }
+            }
+            switch (mutation.getOperation()) {
+                case CREATE:
+                    send(service.addCompte(mutation.getCompte()), mutation, tracker, scheduler);
+                    break;
+                case UPDATE:
+                    send(service.updateCompte(target, mutation.getCompte()), mutation, tracker, scheduler);
+                    break;
+                default:
+                    send(service.deleteCompte(target), mutation, tracker, scheduler);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Dispatches one replayed mutation and reports its outcome to the batch.
+     *
+     * @param call      The Retrofit call replaying the mutation
+     * @param mutation  The mutation being replayed
+     * @param tracker   Batch the mutation belongs to
+     * @param scheduler Scheduler dispatching the call
+     * @param <T>       Type of the response body
+     */
+    private <T> void send(Call<T> call, final PendingMutation mutation, final BatchTracker tracker,
+            RequestScheduler scheduler) {
+        scheduler.enqueue(call, RequestPriority.BACKGROUND, new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                int code = response.code();
+                boolean retryable = code >= 500 || code == 408 || code == 429;
+                Object body = response.body();
+                completed(mutation, !retryable, response.isSuccessful(),
+                        body instanceof Compte ? (Compte) body : null, tracker);
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                completed(mutation, false, false, null, tracker);
+            }
+        });
+    }
+
+    /**
+     * Records the outcome of one replayed mutation.
+     *
+     * @param mutation  The replayed mutation
+     * @param done      false if the mutation must be retried later
+     * @param delivered true if the backend accepted the mutation
+     * @param result    Account returned by the backend, may be null
+     * @param tracker   Batch the mutation belongs to
+     */
+    private void completed(PendingMutation mutation, boolean done, boolean delivered, Compte result,
+            BatchTracker tracker) {
+        boolean creation = mutation.getOperation() == PendingMutation.Operation.CREATE;
+        Long serverId = creation ? (result != null ? result.getId() : null) : mutation.getId();
+        boolean lastOfBatch;
+        List<PendingMutation> orphans = Collections.emptyList();
+        synchronized (this) {
+            inFlight.remove(mutation.getSequence());
+            if (!creation && mutation.hasProvisionalId()) {
+                serverId = resolvedIds.get(mutation.getId());
+            }
+            try {
+                if (done) {
+                    if (delivered && creation && serverId != null) {
+                        resolvedIds.put(mutation.getId(), serverId);
+                        appendRecord(RESOLVED + "\t" + mutation.getId() + "\t" + serverId);
+                    }
+                    if (!delivered && creation) {
+                        // Never resolved, they would wait forever
+                        orphans = waitingFor(mutation.getId());
+                    }
+                    acknowledge(mutation.getSequence());
+                    appendRecord(ACK + "\t" + mutation.getSequence());
+                    ackedRecords++;
+                    for (PendingMutation orphan : orphans) {
+                        acknowledge(orphan.getSequence());
+                        appendRecord(ACK + "\t" + orphan.getSequence());
+                        ackedRecords++;
+                    }
+                    syncJournal();
+                    flushedInRun++;
+                    ClientMetrics.increment(delivered ? "outbox.flushed" : "outbox.dropped");
+                    ClientMetrics.add("outbox.dropped", orphans.size());
+                } else {
+                    tracker.retry = true;
+                    if (!latestById.containsKey(mutation.getId())) {
+                        latestById.put(mutation.getId(), mutation.getSequence());
+                    }
+                }
+            } catch (IOException e) {
+                // The acknowledgement is lost; the mutation is replayed after a restart
+                tracker.retry = true;
+            }
+            lastOfBatch = --tracker.remaining == 0;
+        }
+        if (done && delivered) {
+            for (Listener listener : listeners) {
+                listener.onDelivered(mutation, serverId, result);
+            }
+        }
+        if (done && !delivered) {
+            for (Listener listener : listeners) {
+                listener.onDropped(mutation);
+            }
+        }
+        if (lastOfBatch) {
+            batchCompleted(tracker);
+        }
+    }
+
+    /**
+     * Returns the pending mutations of an account created offline, other
+     * than its creation. Must be called with the outbox locked.
+     *
+     * @param provisionalId Provisional id of the account
+     * @return The mutations, oldest first
+     */
+    private List<PendingMutation> waitingFor(Long provisionalId) {
+        List<PendingMutation> waiting = new ArrayList<>();
+        for (PendingMutation pendingMutation : pending.values()) {
+            if (provisionalId.equals(pendingMutation.getId())
+                    && pendingMutation.getOperation() != PendingMutation.Operation.CREATE
+                    && !inFlight.contains(pendingMutation.getSequence())) {
+                waiting.add(pendingMutation);
+            }
+        }
+        return waiting;
+    }
+
+    /**
+     * Continues with the next batch, or ends the flush.
+     *
+     * @param tracker The batch that just completed
+     */
+    private void batchCompleted(BatchTracker tracker) {
+        List<PendingMutation> batch = null;
+        synchronized (this) {
+            if (!tracker.retry) {
+                batch = nextBatch();
+            }
+            if (batch == null || batch.isEmpty()) {
+                flushing = false;
+                double seconds = (System.nanoTime() - flushStartedAt) / 1e9;
+                lastFlushRate = seconds > 0 ? flushedInRun / seconds : 0;
+                if (pending.isEmpty() || ackedRecords > COMPACTION_THRESHOLD) {
+                    try {
+                        compact();
+                    } catch (IOException e) {
+                        // Keep appending to the current journal
+                    }
+                }
+                return;
+            }
+        }
+        sendBatch(batch, tracker.service, tracker.scheduler);
+    }
+
+    /**
+     * Rewrites the journal with only the live records and atomically replaces
+     * the previous file. Runs after a flush; exposed to the package for tests.
+     *
+     * @throws IOException If the new journal cannot be written
+     */
+    synchronized void compact() throws IOException {
+        writer.close();
+        Iterator<Long> oldest = resolvedIds.keySet().iterator();
+        while (resolvedIds.size() > MAX_RESOLVED_IDS) {
+            oldest.next();
+            oldest.remove();
+        }
+        File temp = new File(journal.getPath() + ".tmp");
+        Writer out = new OutputStreamWriter(new FileOutputStream(temp), UTF_8);
+        try {
+            for (Map.Entry<Long, Long> entry : resolvedIds.entrySet()) {
+                out.write(RESOLVED + "\t" + entry.getKey() + "\t" + entry.getValue() + "\n");
+            }
+            for (PendingMutation mutation : pending.values()) {
+                out.write(MUTATION + "\t" + gson.toJson(mutation) + "\n");
+            }
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(journal)) {
+            openWriter();
+            throw new IOException("Cannot replace " + journal);
+        }
+        ackedRecords = 0;
+        openWriter();
+    }
+
+    /**
+     * Opens the journal writer in append mode.
+     *
+     * @throws IOException If the journal cannot be opened
+     */
+    private void openWriter() throws IOException {
+        journalStream = new FileOutputStream(journal, true);
+        writer = new OutputStreamWriter(journalStream, UTF_8);
+        if (tornTail) {
+            // Terminate the record torn by a crash; replay skips it as malformed
+            writer.write('\n');
+            syncJournal();
+            tornTail = false;
+        }
+    }
+
+    /**
+     * Appends one record to the journal buffer.
+     *
+     * @param record The record, without line terminator
+     * @throws IOException If the journal cannot be written
+     */
+    private void appendRecord(String record) throws IOException {
+        writer.write(record);
+        writer.write('\n');
+    }
+
+    /**
+     * Flushes buffered records and forces them to storage.
+     *
+     * @throws IOException If the journal cannot be synced
+     */
+    private void syncJournal() throws IOException {
+        writer.flush();
+        journalStream.getFD().sync();
+    }
+
+    /**
+     * Progress of one batch of replayed mutations.
+     */
+    private static final class BatchTracker {
+        private final CompteService service;
+        private final RequestScheduler scheduler;
+        private int remaining;
+        private boolean retry = false;
+
+        BatchTracker(int size, CompteService service, RequestScheduler scheduler) {
+            this.remaining = size;
+            this.service = service;
+            this.scheduler = scheduler;
+        }
+    }
+}
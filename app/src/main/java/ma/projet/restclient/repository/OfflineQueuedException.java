@@ -0,0 +1,58 @@
+package ma.projet.restclient.repository;
+
+import java.io.IOException;
+
+/**
+ * OfflineQueuedException - Failure reported when a mutation could not reach
+ * the backend, or had to follow an earlier mutation still undelivered, and
+ * was journaled in the MutationOutbox instead.
+ *
+ * <p>
+ * The edit is not lost: it will be sent when connectivity returns. Callers
+ * can test for this type in {@code onFailure} to show a softer message. For a
+ * creation, {@link #getProvisionalId()} is the id the account can be shown
+ * with, and later updated or deleted by, until the outbox delivers it.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class OfflineQueuedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /** Provisional id of a journaled creation, null for other mutations */
+    private final Long provisionalId;
+
+    /**
+     * Constructs the exception from the network failure that triggered it.
+     *
+     * @param cause The original network error
+     */
+    public OfflineQueuedException(Throwable cause) {
+        this(cause, null);
+    }
+
+    /**
+     * Constructs the exception for a journaled mutation.
+     *
+     * @param cause         The original network error, null if the mutation
+     *                      was journaled without trying the network
+     * @param provisionalId Provisional id of a journaled creation, null
+     *                      otherwise
+     */
+    public OfflineQueuedException(Throwable cause, Long provisionalId) {
+        super("Backend unreachable, mutation queued for later delivery", cause);
+        this.provisionalId = provisionalId;
+    }
+
+    /**
+     * Returns the id given to an account created offline.
+     *
+     * @return The negative provisional id, or null if the mutation was not a
+     *         creation
+     */
+    public Long getProvisionalId() {
+        return provisionalId;
+    }
+}
@@ -0,0 +1,119 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.entities.Compte;
+
+/**
+ * PendingMutation - A mutation journaled in the MutationOutbox.
+ *
+ * <p>
+ * Accounts created while offline have no server identifier yet; they are
+ * given a negative provisional id ({@code -sequence}) so that later updates
+ * and deletes of the same account can be coalesced with the creation.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class PendingMutation {
+
+    /**
+     * Kind of mutation waiting to be sent.
+     */
+    public enum Operation {
+        /** POST api/comptes */
+        CREATE,
+        /** PUT api/comptes/{id} */
+        UPDATE,
+        /** DELETE api/comptes/{id} */
+        DELETE
+    }
+
+    /** Position of the mutation in the journal */
+    private long sequence;
+
+    /** Operation to replay */
+    private Operation operation;
+
+    /** Target account id, negative for accounts created offline */
+    private Long id;
+
+    /** Account body for CREATE and UPDATE, null for DELETE */
+    private Compte compte;
+
+    /**
+     * Default no-argument constructor.
+     * Required for JSON deserialization of the journal.
+     */
+    public PendingMutation() {
+    }
+
+    /**
+     * Parameterized constructor for creating a PendingMutation instance.
+     *
+     * @param sequence  Position of the mutation in the journal
+     * @param operation Operation to replay
+     * @param id        Target account id
+     * @param compte    Account body, null for DELETE
+     */
+    public PendingMutation(long sequence, Operation operation, Long id, Compte compte) {
+        this.sequence = sequence;
+        this.operation = operation;
+        this.id = id;
+        this.compte = compte;
+    }
+
+    /**
+     * Gets the journal sequence number.
+     *
+     * @return The position of the mutation in the journal
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the operation.
+     *
+     * @return The operation to replay
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Gets the target account id.
+     *
+     * @return The account id, negative for a provisional id
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Gets the account body.
+     *
+     * @return The account to send, null for DELETE
+     */
+    public Compte getCompte() {
+        return compte;
+    }
+
+    /**
+     * Tells whether the target account only exists locally.
+     *
+     * @return true if the id is a provisional id
+     */
+    public boolean hasProvisionalId() {
+        return id != null && id < 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PendingMutation{" +
+                "sequence=" + sequence +
+                ", operation=" + operation +
+                ", id=" + id +
+                '}';
+    }
+}
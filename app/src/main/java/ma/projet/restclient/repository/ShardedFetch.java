@@ -0,0 +1,196 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.config.RequestScheduler;
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * ShardedFetch - Fetches the full account list as several pages requested
+ * concurrently.
+ *
+ * <p>
+ * A single {@code GET api/comptes} downloads over one connection and decodes
+ * on one thread. Here a one-row probe first reads the total from the
+ * {@code X-Total-Count} header, then the list is split into contiguous pages
+ * that are enqueued together on the RequestScheduler. Each page is downloaded
+ * and decoded on its own worker thread, up to the scheduler's per-host limit,
+ * and the pages are concatenated in order once all have arrived.
+ * </p>
+ *
+ * <p>
+ * A backend that does not return {@code X-Total-Count} is served by the
+ * single-request path. Pages are fetched in JSON. Exported metrics:
+ * {@code shardedFetch.shards}, {@code shardedFetch.rows} and
+ * {@code shardedFetch.fallbacks} (counters).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class ShardedFetch {
+    /** Response header carrying the total number of accounts */
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    /** JSON service exposing the paged endpoint */
+    private final CompteService compteService;
+
+    /** Scheduler running the page calls */
+    private final RequestScheduler scheduler;
+
+    /**
+     * Constructs a sharded fetcher.
+     *
+     * @param compteService JSON service exposing the paged endpoint
+     * @param scheduler     Scheduler running the page calls
+     */
+    public ShardedFetch(CompteService compteService, RequestScheduler scheduler) {
+        this.compteService = compteService;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Fetches every account in at most {@code shards} concurrent pages.
+     *
+     * @param shards   Number of pages to split the list into, at least 1
+     * @param priority Scheduling priority of the page calls
+     * @param callback Callback receiving the merged list, on a worker thread
+     */
+    public void fetch(final int shards, final RequestPriority priority, final Callback<List<Compte>> callback) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards < 1: " + shards);
+        }
+        if (shards == 1) {
+            scheduler.enqueue(compteService.getAllCompteJson(), priority, callback);
+            return;
+        }
+        scheduler.enqueue(compteService.getComptePageJson(0, 1), priority, new Callback<List<Compte>>() {
+            @Override
+            public void onResponse(Call<List<Compte>> call, Response<List<Compte>> response) {
+                int total = totalCount(response);
+                if (total < 0) {
+                    ClientMetrics.increment("shardedFetch.fallbacks");
+                    scheduler.enqueue(compteService.getAllCompteJson(), priority, callback);
+                } else {
+                    fetchPages(total, shards, priority, callback);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<List<Compte>> call, Throwable t) {
+                callback.onFailure(null, t);
+            }
+        });
+    }
+
+    /**
+     * Enqueues the pages and merges them in order.
+     *
+     * @param total    Total number of accounts
+     * @param shards   Requested number of pages
+     * @param priority Scheduling priority of the page calls
+     * @param callback Callback receiving the merged list
+     */
+    private void fetchPages(final int total, int shards, RequestPriority priority,
+            final Callback<List<Compte>> callback) {
+        if (total == 0) {
+            callback.onResponse(null, Response.success((List<Compte>) new ArrayList<Compte>()));
+            return;
+        }
+        final int pageSize = (total + shards - 1) / shards;
+        final int pageCount = (total + pageSize - 1) / pageSize;
+        final List<List<Compte>> pages = new ArrayList<>(pageCount);
+        for (int page = 0; page < pageCount; page++) {
+            pages.add(null);
+        }
+        final AtomicInteger remaining = new AtomicInteger(pageCount);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        ClientMetrics.add("shardedFetch.shards", pageCount);
+        for (int page = 0; page < pageCount; page++) {
+            final int index = page;
+            scheduler.enqueue(compteService.getComptePageJson(page, pageSize), priority,
+                    new Callback<List<Compte>>() {
+                        @Override
+                        public void onResponse(Call<List<Compte>> call, Response<List<Compte>> response) {
+                            if (!response.isSuccessful()) {
+                                if (failed.compareAndSet(false, true)) {
+                                    callback.onResponse(null, Response.<List<Compte>>error(response.code(),
+                                            response.errorBody()));
+                                }
+                                return;
+                            }
+                            if (response.body() == null) {
+                                // Response.error refuses a success code, e.g. a 204 page
+                                if (failed.compareAndSet(false, true)) {
+                                    callback.onFailure(null,
+                                            new IOException("Page " + index + " answered " + response.code()
+                                                    + " without a body"));
+                                }
+                                return;
+                            }
+                            synchronized (pages) {
+                                pages.set(index, response.body());
+                            }
+                            if (remaining.decrementAndGet() == 0 && !failed.get()) {
+                                callback.onResponse(null, Response.success(merge(pages, total)));
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Call<List<Compte>> call, Throwable t) {
+                            if (failed.compareAndSet(false, true)) {
+                                callback.onFailure(null, t);
+                            }
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Concatenates the pages in order.
+     *
+     * @param pages Decoded pages, all present
+     * @param total Expected number of accounts, used to size the list
+     * @return The merged list
+     */
+    private static List<Compte> merge(List<List<Compte>> pages, int total) {
+        List<Compte> merged = new ArrayList<>(total);
+        synchronized (pages) {
+            for (List<Compte> page : pages) {
+                merged.addAll(page);
+            }
+        }
+        ClientMetrics.add("shardedFetch.rows", merged.size());
+        return merged;
+    }
+
+    /**
+     * Reads the total number of accounts from the X-Total-Count header.
+     *
+     * @param response A page or count response
+     * @return The total, or -1 if the backend did not send one
+     */
+    static int totalCount(Response<?> response) {
+        String header = response.isSuccessful() ? response.headers().get(TOTAL_COUNT_HEADER) : null;
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(header.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
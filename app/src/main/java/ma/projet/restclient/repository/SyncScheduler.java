@@ -0,0 +1,437 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.metrics.ClientMetrics;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SyncScheduler - Periodic background refresh with jitter, constraints and a
+ * freshness check.
+ *
+ * <p>
+ * Syncs are spaced by {@code intervalMillis}, each delay randomized by
+ * +/- {@code jitter} of the interval so that clients started together drift
+ * apart instead of hitting the backend in lockstep. The first sync after
+ * {@link #start()} is planned one interval after the last refresh; if that
+ * time has passed, or no refresh is known, it runs after a short random
+ * delay, so that a fleet of clients opened at the same hour does not fetch
+ * at the same second. When a sync is due:
+ * </p>
+ * <ul>
+ * <li>It is skipped if the data was refreshed less than
+ * {@code freshnessMillis} ago, by a sync or by any other list load reported
+ * through {@link #markFresh()}; the next one is planned from that refresh.
+ * The age of data loaded by an earlier process, e.g. a snapshot file, is
+ * reported through {@link #markFresh(long)}</li>
+ * <li>It is postponed while there is no network or the battery is low; it
+ * runs after a short random delay once {@link #onConstraintsChanged()}
+ * reports them satisfied</li>
+ * <li>A failed sync is retried with exponential backoff, randomized over the
+ * whole backoff window and capped at the interval</li>
+ * </ul>
+ *
+ * <p>
+ * Time and delayed execution go through a {@link Clock}, so the schedule can
+ * be driven by a fake clock in JVM tests.
+ * </p>
+ *
+ * <p>
+ * Exported metrics: {@code sync.runs}, {@code sync.failures},
+ * {@code sync.skipped.fresh} and {@code sync.skipped.constraints} (counters).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class SyncScheduler {
+
+    /**
+     * Source of time and of delayed execution.
+     */
+    public interface Clock {
+        /**
+         * Returns a monotonic time.
+         *
+         * @return The current time in milliseconds
+         */
+        long nowMillis();
+
+        /**
+         * Runs a task once after a delay.
+         *
+         * @param task        The task
+         * @param delayMillis Delay in milliseconds
+         * @return An action cancelling the task if it has not run yet
+         */
+        Runnable schedule(Runnable task, long delayMillis);
+    }
+
+    /**
+     * Device conditions a sync requires.
+     */
+    public interface Constraints {
+        /**
+         * Tells whether a network is available.
+         *
+         * @return true if the backend may be reachable
+         */
+        boolean isNetworkAvailable();
+
+        /**
+         * Tells whether the battery is low and not charging.
+         *
+         * @return true if background work should wait
+         */
+        boolean isBatteryLow();
+    }
+
+    /**
+     * The refresh itself.
+     */
+    public interface SyncTask {
+        /**
+         * Starts a refresh and reports its outcome through {@code done}.
+         *
+         * @param done Completion to call exactly once, from any thread
+         */
+        void sync(Completion done);
+    }
+
+    /**
+     * Outcome of a refresh.
+     */
+    public interface Completion {
+        /**
+         * Reports that the refresh finished.
+         *
+         * @param success Whether fresh data was received
+         */
+        void finished(boolean success);
+    }
+
+    /** First retry delay after a failure */
+    private static final long MIN_BACKOFF_MILLIS = 5000;
+
+    /** Spread of the delay before a sync unblocked by a constraint change */
+    private static final long CONSTRAINT_SPREAD_MILLIS = 30000;
+
+    /** Value of lastFreshAt before any refresh */
+    private static final long NEVER = Long.MIN_VALUE;
+
+    /** Spread of the delay before the first sync when the data is stale */
+    private static final long START_SPREAD_MILLIS = 10000;
+
+    /** Clock shared by every scheduler using the system time, created on first use */
+    private static Clock systemClock = null;
+
+    /** Nominal time between two syncs */
+    private final long intervalMillis;
+
+    /** Relative randomization of each delay, in [0, 1) */
+    private final double jitter;
+
+    /** Age below which data is fresh enough to skip a sync */
+    private final long freshnessMillis;
+
+    /** Time source and timer */
+    private final Clock clock;
+
+    /** Source of jitter */
+    private final Random random;
+
+    /** Conditions checked before each sync */
+    private final Constraints constraints;
+
+    /** The refresh */
+    private final SyncTask task;
+
+    /** Time of the last successful refresh, NEVER if none; may precede the clock's origin */
+    private long lastFreshAt = NEVER;
+
+    /** Incremented on each (re)planning; stale timer tasks compare it and exit */
+    private long generation = 0;
+
+    /** Cancels the planned check, null if none */
+    private Runnable cancelPlanned = null;
+
+    /** Whether the scheduler is started */
+    private boolean running = false;
+
+    /** Whether a sync is in progress */
+    private boolean syncing = false;
+
+    /** Whether a due sync is waiting for the constraints */
+    private boolean waitingForConstraints = false;
+
+    /** Consecutive failed syncs */
+    private int failures = 0;
+
+    /**
+     * Constructs a scheduler.
+     *
+     * @param intervalMillis  Nominal time between two syncs
+     * @param jitter          Relative randomization of each delay, e.g. 0.2
+     *                        for +/- 20%
+     * @param freshnessMillis Age below which data is fresh enough to skip a
+     *                        sync
+     * @param clock           Time source and timer
+     * @param random          Source of jitter
+     * @param constraints     Conditions checked before each sync
+     * @param task            The refresh
+     */
+    public SyncScheduler(long intervalMillis, double jitter, long freshnessMillis, Clock clock, Random random,
+            Constraints constraints, SyncTask task) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis <= 0: " + intervalMillis);
+        }
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("jitter not in [0, 1): " + jitter);
+        }
+        this.intervalMillis = intervalMillis;
+        this.jitter = jitter;
+        this.freshnessMillis = freshnessMillis;
+        this.clock = clock;
+        this.random = random;
+        this.constraints = constraints;
+        this.task = task;
+    }
+
+    /**
+     * Returns the clock backed by System.nanoTime() and a daemon timer
+     * thread, shared by every scheduler.
+     *
+     * @return The system clock
+     */
+    public static synchronized Clock systemClock() {
+        if (systemClock != null) {
+            return systemClock;
+        }
+        final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SyncScheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        systemClock = new Clock() {
+            @Override
+            public long nowMillis() {
+                return System.nanoTime() / 1000000L;
+            }
+
+            @Override
+            public Runnable schedule(Runnable task, long delayMillis) {
+                final ScheduledFuture<?> future = timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+                return new Runnable() {
+                    @Override
+                    public void run() {
+                        future.cancel(false);
+                    }
+                };
+            }
+        };
+        return systemClock;
+    }
+
+    /**
+     * Starts, or restarts after {@link #stop()}, the schedule. The first sync
+     * is due one jittered interval after the last refresh, or within
+     * {@code START_SPREAD_MILLIS} if that time has passed or there was no
+     * refresh.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        long now = clock.nowMillis();
+        long due = lastFreshAt != NEVER ? lastFreshAt + jittered(intervalMillis) : now;
+        if (due <= now) {
+            due = now + (long) (random.nextDouble() * START_SPREAD_MILLIS);
+        }
+        planAt(due);
+    }
+
+    /**
+     * Tells whether the schedule is started.
+     *
+     * @return true between {@link #start()} and {@link #stop()}
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops the schedule. A sync in progress completes but is not followed by
+     * another.
+     */
+    public synchronized void stop() {
+        running = false;
+        waitingForConstraints = false;
+        generation++;
+        if (cancelPlanned != null) {
+            // Releases the task, and what it references, right away
+            cancelPlanned.run();
+            cancelPlanned = null;
+        }
+    }
+
+    /**
+     * Records that fresh data was just received, e.g. by a user-triggered
+     * load, so that the next sync is planned from now.
+     */
+    public synchronized void markFresh() {
+        markFresh(0);
+    }
+
+    /**
+     * Records that fresh data was received some time ago, e.g. the snapshot
+     * file written by an earlier process. Data already known to be fresher is
+     * kept.
+     *
+     * @param ageMillis Age of the data
+     */
+    public synchronized void markFresh(long ageMillis) {
+        lastFreshAt = Math.max(lastFreshAt, clock.nowMillis() - Math.max(0, ageMillis));
+    }
+
+    /**
+     * Re-checks a sync postponed by the constraints, e.g. when a network
+     * becomes available or the device is plugged in. The sync runs after a
+     * random delay so that clients regaining connectivity together do not
+     * sync together.
+     */
+    public synchronized void onConstraintsChanged() {
+        if (running && waitingForConstraints && !syncing && constraintsMet()) {
+            waitingForConstraints = false;
+            planAt(clock.nowMillis() + (long) (random.nextDouble() * CONSTRAINT_SPREAD_MILLIS));
+        }
+    }
+
+    /**
+     * Plans the next check at an absolute time, invalidating any earlier
+     * plan. Callers must hold the lock.
+     *
+     * @param atMillis Time of the check
+     */
+    private void planAt(long atMillis) {
+        final long planned = ++generation;
+        if (cancelPlanned != null) {
+            cancelPlanned.run();
+        }
+        cancelPlanned = clock.schedule(new Runnable() {
+            @Override
+            public void run() {
+                onDue(planned);
+            }
+        }, Math.max(0, atMillis - clock.nowMillis()));
+    }
+
+    /**
+     * Runs a due sync unless the plan is stale, the data is fresh or the
+     * constraints are not met.
+     *
+     * @param planned Generation of the plan that fired
+     */
+    private void onDue(long planned) {
+        synchronized (this) {
+            if (!running || planned != generation || syncing) {
+                return;
+            }
+            long now = clock.nowMillis();
+            if (lastFreshAt != NEVER && now - lastFreshAt < freshnessMillis) {
+                ClientMetrics.increment("sync.skipped.fresh");
+                planAt(lastFreshAt + jittered(intervalMillis));
+                return;
+            }
+            if (!constraintsMet()) {
+                ClientMetrics.increment("sync.skipped.constraints");
+                waitingForConstraints = true;
+                // Also re-check on schedule in case no change is reported
+                planAt(now + jittered(intervalMillis));
+                return;
+            }
+            waitingForConstraints = false;
+            syncing = true;
+        }
+        ClientMetrics.increment("sync.runs");
+        task.sync(new Completion() {
+            private boolean reported = false;
+
+            @Override
+            public void finished(boolean success) {
+                synchronized (SyncScheduler.this) {
+                    if (reported) {
+                        return;
+                    }
+                    reported = true;
+                    onSyncFinished(success);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records the outcome of a sync and plans the next one. Callers must hold
+     * the lock.
+     *
+     * @param success Whether fresh data was received
+     */
+    private void onSyncFinished(boolean success) {
+        syncing = false;
+        long now = clock.nowMillis();
+        if (success) {
+            failures = 0;
+            lastFreshAt = now;
+        } else {
+            ClientMetrics.increment("sync.failures");
+            failures++;
+        }
+        if (!running) {
+            return;
+        }
+        if (success) {
+            planAt(now + jittered(intervalMillis));
+        } else {
+            planAt(now + backoff());
+        }
+    }
+
+    /**
+     * Returns the retry delay after the current number of failures: uniform
+     * over [0, min(interval, MIN_BACKOFF_MILLIS * 2^(failures-1))].
+     *
+     * @return The delay in milliseconds
+     */
+    private long backoff() {
+        long window = MIN_BACKOFF_MILLIS << Math.min(failures - 1, 20);
+        window = Math.min(intervalMillis, window);
+        return (long) (random.nextDouble() * window);
+    }
+
+    /**
+     * Randomizes a delay by +/- jitter.
+     *
+     * @param millis The nominal delay
+     * @return The randomized delay
+     */
+    private long jittered(long millis) {
+        return (long) (millis * (1 - jitter + 2 * jitter * random.nextDouble()));
+    }
+
+    /**
+     * Checks the device conditions.
+     *
+     * @return true if a sync may run
+     */
+    private boolean constraintsMet() {
+        return constraints.isNetworkAvailable() && !constraints.isBatteryLow();
+    }
+}
@@ -0,0 +1,38 @@
+package ma.projet.restclient.repository;
+
+/**
+ * TransferListener - Progress of a bulk account import or export.
+ *
+ * <p>
+ * Methods are invoked on the background thread running the transfer.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public interface TransferListener {
+    /**
+     * Called periodically while rows are transferred.
+     *
+     * @param rows          Rows transferred so far
+     * @param rowsPerSecond Average throughput since the start
+     */
+    void onProgress(long rows, double rowsPerSecond);
+
+    /**
+     * Called once when the transfer has finished.
+     *
+     * @param rows          Rows transferred
+     * @param failedRows    Rows skipped because they were invalid or rejected
+     * @param rowsPerSecond Average throughput of the whole transfer
+     */
+    void onComplete(long rows, long failedRows, double rowsPerSecond);
+
+    /**
+     * Called once if the transfer was aborted.
+     *
+     * @param t The cause
+     */
+    void onError(Throwable t);
+}
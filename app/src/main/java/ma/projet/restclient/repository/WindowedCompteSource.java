@@ -0,0 +1,419 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.config.MemoryBudgetManager;
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WindowedCompteSource - Disk-backed account list that keeps only a window
+ * of rows in the Java heap.
+ *
+ * <p>
+ * Rows live in a {@link CompteSnapshot} file. The UI reports the visible
+ * range with {@link #setVisibleRange(int, int)}; the rows of that range plus
+ * {@code margin} rows on each side are decoded on a background thread, in
+ * pages of {@code PAGE_SIZE} rows, and pages leaving the window are dropped.
+ * Heap usage therefore depends on the window size, not on the number of
+ * accounts.
+ * </p>
+ *
+ * <p>
+ * {@link #get(int)} never blocks: a row that is not resident yet returns
+ * null, and the {@link Listener} is notified once its page has been loaded so
+ * the adapter can rebind it.
+ * </p>
+ *
+ * <p>
+ * Under a {@link MemoryBudgetManager}, margin pages are shed first since they
+ * are rebuilt by a local decode; pages holding visible rows are kept. Shed
+ * pages are decoded again when the visible range next moves.
+ * </p>
+ *
+ * <p>
+ * Exported metrics: {@code window.residentRows} (gauge) and
+ * {@code window.pagesLoaded} (counter).
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class WindowedCompteSource extends AbstractList<Compte>
+        implements RandomAccess, MemoryBudgetManager.Cache {
+
+    /**
+     * Receives notifications of rows becoming resident.
+     */
+    public interface Listener {
+        /**
+         * Called, on the callback executor, when a range of rows has been
+         * loaded.
+         *
+         * @param from  Position of the first loaded row
+         * @param count Number of loaded rows
+         */
+        void onRowsLoaded(int from, int count);
+    }
+
+    /** Number of rows decoded and evicted together */
+    static final int PAGE_SIZE = 64;
+
+    /** Estimated heap of one decoded row */
+    static final int ROW_BYTES = 160;
+
+    /** Rebuild cost per byte reported to the memory budget: a local decode */
+    private static final double REBUILD_COST = 1.0;
+
+    /** File holding every row */
+    private final CompteSnapshot snapshot;
+
+    /** Rows kept resident on each side of the visible range */
+    private final int margin;
+
+    /** Executor decoding pages */
+    private final Executor loader;
+
+    /** Executor on which the listener is notified, e.g. the main thread */
+    private final Executor callbackExecutor;
+
+    /** Receiver of load notifications */
+    private final Listener listener;
+
+    /** Resident pages indexed by page number */
+    private final Map<Integer, Compte[]> pages = new HashMap<>();
+
+    /** Pages submitted to the loader and not finished yet */
+    private final Set<Integer> loading = new HashSet<>();
+
+    /** First page of the window, inclusive */
+    private int firstPage = 0;
+
+    /** Last page of the window, inclusive; -1 before the first range */
+    private int lastPage = -1;
+
+    /** First page holding a visible row */
+    private int firstVisiblePage = 0;
+
+    /** Last page holding a visible row; -1 before the first range */
+    private int lastVisiblePage = -1;
+
+    /** Rows returned by {@link #get(int)} */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Rows {@link #get(int)} found not resident */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Budget notified when pages are loaded, null if unmanaged */
+    private volatile MemoryBudgetManager budget = null;
+
+    /**
+     * Constructs a source over an opened snapshot.
+     *
+     * @param snapshot         File holding every row
+     * @param margin           Rows kept resident on each side of the visible
+     *                         range
+     * @param loader           Executor decoding pages
+     * @param callbackExecutor Executor on which the listener is notified
+     * @param listener         Receiver of load notifications
+     */
+    WindowedCompteSource(CompteSnapshot snapshot, int margin, Executor loader, Executor callbackExecutor,
+            Listener listener) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("margin < 0: " + margin);
+        }
+        this.snapshot = snapshot;
+        this.margin = margin;
+        this.loader = loader;
+        this.callbackExecutor = callbackExecutor;
+        this.listener = listener;
+        ClientMetrics.registerGauge("window.residentRows", new ClientMetrics.Gauge() {
+            @Override
+            public Number value() {
+                return residentRowCount();
+            }
+        });
+    }
+
+    /**
+     * Opens a windowed view of a snapshot file, decoding pages on a dedicated
+     * background thread.
+     *
+     * @param file             A file written by {@link CompteSnapshot#write}
+     * @param margin           Rows kept resident on each side of the visible
+     *                         range
+     * @param callbackExecutor Executor on which the listener is notified
+     * @param listener         Receiver of load notifications
+     * @return The source, or null if the file is missing or invalid
+     * @throws IOException If the file cannot be mapped
+     */
+    public static WindowedCompteSource open(File file, int margin, Executor callbackExecutor,
+            Listener listener) throws IOException {
+        CompteSnapshot snapshot = CompteSnapshot.open(file);
+        if (snapshot == null) {
+            return null;
+        }
+        ExecutorService loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "WindowedCompteSource");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        return new WindowedCompteSource(snapshot, margin, loader, callbackExecutor, listener);
+    }
+
+    /**
+     * Moves the window to the visible range. Pages entering the window are
+     * loaded asynchronously, pages leaving it are evicted immediately.
+     *
+     * @param firstVisible Position of the first visible row
+     * @param lastVisible  Position of the last visible row
+     */
+    public void setVisibleRange(int firstVisible, int lastVisible) {
+        int count = snapshot.size();
+        if (count == 0 || lastVisible < firstVisible) {
+            return;
+        }
+        int from = Math.max(0, firstVisible - margin);
+        int to = Math.min(count - 1, lastVisible + margin);
+        final int first = from / PAGE_SIZE;
+        final int last = to / PAGE_SIZE;
+        synchronized (this) {
+            firstPage = first;
+            lastPage = last;
+            firstVisiblePage = firstVisible / PAGE_SIZE;
+            lastVisiblePage = Math.min(count - 1, lastVisible) / PAGE_SIZE;
+            Iterator<Integer> iterator = pages.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (!inWindow(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+        }
+        for (int page = first; page <= last; page++) {
+            final int pageToLoad = page;
+            synchronized (this) {
+                if (pages.containsKey(page) || !loading.add(page)) {
+                    continue;
+                }
+            }
+            try {
+                loader.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        loadPage(pageToLoad);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Closed: the page stays unloaded
+                synchronized (this) {
+                    loading.remove(page);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers this source with a memory budget until it is closed.
+     *
+     * @param budget The shared budget
+     */
+    public void setMemoryBudget(MemoryBudgetManager budget) {
+        this.budget = budget;
+        budget.register(this);
+    }
+
+    /**
+     * Stops the background loader of a source created by {@link #open}.
+     * Resident rows stay readable; no further page is loaded.
+     */
+    public void close() {
+        if (loader instanceof ExecutorService) {
+            ((ExecutorService) loader).shutdownNow();
+        }
+        MemoryBudgetManager managedBy = budget;
+        if (managedBy != null) {
+            managedBy.unregister(this);
+        }
+    }
+
+    /**
+     * Returns the number of accounts in the file.
+     *
+     * @return The row count
+     */
+    @Override
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Returns a resident row without blocking.
+     *
+     * @param index Position of the row
+     * @return The account, or null if its page is not loaded
+     */
+    @Override
+    public Compte get(int index) {
+        if (index < 0 || index >= snapshot.size()) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + snapshot.size());
+        }
+        Compte[] page;
+        synchronized (this) {
+            page = pages.get(index / PAGE_SIZE);
+        }
+        (page != null ? hits : misses).incrementAndGet();
+        return page != null ? page[index % PAGE_SIZE] : null;
+    }
+
+    /**
+     * Returns the number of rows currently held in the heap.
+     *
+     * @return The resident row count
+     */
+    public synchronized int residentRowCount() {
+        int rows = 0;
+        for (Compte[] page : pages.values()) {
+            rows += page.length;
+        }
+        return rows;
+    }
+
+    @Override
+    public String name() {
+        return "window";
+    }
+
+    @Override
+    public long sizeBytes() {
+        return (long) residentRowCount() * ROW_BYTES;
+    }
+
+    @Override
+    public double rebuildCost() {
+        return REBUILD_COST;
+    }
+
+    /**
+     * Drops margin pages, farthest from the visible rows first. Pages holding
+     * visible rows are never shed.
+     *
+     * @param bytes Bytes to release
+     * @return Bytes actually released
+     */
+    @Override
+    public synchronized long shed(long bytes) {
+        long released = 0;
+        while (released < bytes) {
+            Integer farthest = null;
+            int farthestDistance = 0;
+            for (Integer page : pages.keySet()) {
+                int distance = page < firstVisiblePage ? firstVisiblePage - page
+                        : page > lastVisiblePage ? page - lastVisiblePage : 0;
+                if (distance > farthestDistance) {
+                    farthest = page;
+                    farthestDistance = distance;
+                }
+            }
+            if (farthest == null) {
+                break;
+            }
+            released += (long) pages.remove(farthest).length * ROW_BYTES;
+        }
+        return released;
+    }
+
+    @Override
+    public long hitCount() {
+        return hits.get();
+    }
+
+    @Override
+    public long missCount() {
+        return misses.get();
+    }
+
+    /**
+     * Decodes one page unless it left the window while queued, then notifies
+     * the listener.
+     *
+     * @param page The page number
+     */
+    private void loadPage(int page) {
+        try {
+            synchronized (this) {
+                if (!inWindow(page)) {
+                    return;
+                }
+            }
+            int from = page * PAGE_SIZE;
+            int count = Math.min(PAGE_SIZE, snapshot.size() - from);
+            Compte[] rows = new Compte[count];
+            for (int i = 0; i < count; i++) {
+                rows[i] = snapshot.get(from + i);
+            }
+            synchronized (this) {
+                if (!inWindow(page)) {
+                    return;
+                }
+                pages.put(page, rows);
+            }
+            ClientMetrics.increment("window.pagesLoaded");
+            MemoryBudgetManager managedBy = budget;
+            if (managedBy != null) {
+                managedBy.onCacheGrown();
+            }
+            notifyLoaded(from, count);
+        } finally {
+            synchronized (this) {
+                loading.remove(page);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listener on the callback executor.
+     *
+     * @param from  Position of the first loaded row
+     * @param count Number of loaded rows
+     */
+    private void notifyLoaded(final int from, final int count) {
+        if (listener == null) {
+            return;
+        }
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onRowsLoaded(from, count);
+            }
+        });
+    }
+
+    /**
+     * Tells whether a page belongs to the current window. Callers must hold
+     * the lock.
+     *
+     * @param page The page number
+     * @return true if the page should be resident
+     */
+    private boolean inWindow(int page) {
+        return page >= firstPage && page <= lastPage;
+    }
+}
@@ -0,0 +1,712 @@
+package ma.projet.restclient;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import ma.projet.restclient.entities.Compte;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * LocalCompteServer - In-process stand-in for the Spring backend, used by JVM
+ * tests.
+ *
+ * <p>
+ * Serves {@code api/comptes/events} as a Server-Sent Events stream. Published
+ * events are kept so that a client reconnecting with {@code Last-Event-ID}
+ * receives only what it missed.
+ * </p>
+ *
+ * <p>
+ * Serves {@code GET api/comptes} from {@link #setAccountCount(int)} generated
+ * accounts, whole or paged with {@code page} and {@code size} (total in
+ * {@code X-Total-Count}), or fails them with {@link #setListFailure(int)}.
+ * The filter and sort parameters of CompteQuery are evaluated by the server,
+ * unless it is told to ignore them ({@link #setFiltersIgnored(boolean)}) or
+ * to reject them ({@link #setFilterFailure(int)}). List bodies can be
+ * throttled per connection ({@link #setBytesPerSecond(long)}), as a mobile
+ * link where one TCP stream does not fill the available bandwidth.
+ * </p>
+ *
+ * <p>
+ * Accepts {@code POST api/comptes}, {@code PUT api/comptes/{id}} and
+ * {@code DELETE api/comptes/{id}}, answering like the backend and recording
+ * each request in {@link #getMutations()}, or rejecting them with
+ * {@link #setMutationFailure(int)}. Created accounts get ids from
+ * 1000; the last body put for each account is kept ({@link #getStored(long)}).
+ * Request bodies may be gzip-encoded; the encoding of each one is recorded in
+ * {@link #getMutationEncodings()}.
+ * </p>
+ *
+ * @author Mohamed
+ * @version 1.0
+ * @since 2025-11-09
+ */
+public class LocalCompteServer {
+    /** Marker closing a subscriber's stream */
+    private static final String END_OF_STREAM = "";
+
+    /** Encoding of response bodies */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Creation date of every generated account */
+    private static final String CREATION_DATE = "2025-11-09";
+
+    /** Parameters of a CompteQuery, i.e. of a filtered or sorted list */
+    private static final Pattern FILTER_PARAMETERS = Pattern
+            .compile("(^|&)(type|soldeMin|soldeMax|dateFrom|dateTo|sort)=");
+
+    /** Underlying JDK HTTP server */
+    private final HttpServer server;
+
+    /** JSON encoder of event payloads */
+    private final Gson gson = new Gson();
+
+    /** Every event published so far, as complete SSE frames */
+    private final List<String> events = new ArrayList<>();
+
+    /** Frame queues of the currently connected subscribers */
+    private final List<BlockingQueue<String>> subscribers = new CopyOnWriteArrayList<>();
+
+    /** Last-Event-ID header of each accepted connection, null when absent */
+    private final List<String> connectionCursors = new CopyOnWriteArrayList<>();
+
+    /** Whether requests carrying a cursor are answered with 410 Gone */
+    private volatile boolean cursorsExpired = false;
+
+    /** Number of accounts served by api/comptes */
+    private volatile int accountCount = 0;
+
+    /** Status answered to list requests instead of the list, 0 if none */
+    private volatile int listFailureStatus = 0;
+
+    /** Throughput of each list response, 0 if unthrottled */
+    private volatile long bytesPerSecond = 0;
+
+    /** Whether filter and sort parameters are ignored, as an older backend */
+    private volatile boolean filtersIgnored = false;
+
+    /** Status answered to list requests with filter parameters, 0 if none */
+    private volatile int filterFailureStatus = 0;
+
+    /** Query string of each list request received, "" when absent */
+    private final List<String> listQueries = new CopyOnWriteArrayList<>();
+
+    /** Mutation requests received, e.g. "POST", "PUT 1000" or "DELETE 1000" */
+    private final List<String> mutations = new CopyOnWriteArrayList<>();
+
+    /** Status answered to mutations instead of applying them, 0 if none */
+    private volatile int mutationFailureStatus = 0;
+
+    /** Content-Encoding of each mutation body, "identity" if none */
+    private final List<String> mutationEncodings = new CopyOnWriteArrayList<>();
+
+    /** Last body received by PUT, by account id */
+    private final Map<Long, Compte> stored = new ConcurrentHashMap<>();
+
+    /** Id given to the next created account */
+    private final AtomicLong nextCreatedId = new AtomicLong(1000);
+
+    /**
+     * Starts the server on an ephemeral localhost port.
+     *
+     * @throws IOException If the server socket cannot be bound
+     */
+    public LocalCompteServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/comptes/events", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleEvents(exchange);
+            }
+        });
+        server.createContext("/api/comptes", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if ("GET".equals(exchange.getRequestMethod())) {
+                    handleList(exchange);
+                } else {
+                    handleMutation(exchange);
+                }
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "LocalCompteServer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+        server.start();
+    }
+
+    /**
+     * Returns the last body put for an account.
+     *
+     * @param id The account id
+     * @return The account as last updated, null if never updated
+     */
+    public Compte getStored(long id) {
+        return stored.get(id);
+    }
+
+    /**
+     * Returns the base URL to give to Retrofit.
+     *
+     * @return The base URL, ending with a slash
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Sets the number of generated accounts served by api/comptes. Account i
+     * (from 1) has id i.
+     *
+     * @param count Number of accounts
+     */
+    public void setAccountCount(int count) {
+        accountCount = count;
+    }
+
+    /**
+     * Makes list requests fail with the given status, without a body.
+     *
+     * @param status HTTP status to answer, 0 to serve the list again
+     */
+    public void setListFailure(int status) {
+        listFailureStatus = status;
+    }
+
+    /**
+     * Throttles each list response to the given throughput. Concurrent
+     * responses are throttled independently.
+     *
+     * @param rate Bytes per second of each response, 0 for unthrottled
+     */
+    public void setBytesPerSecond(long rate) {
+        bytesPerSecond = rate;
+    }
+
+    /**
+     * Makes the server answer filtered or sorted list requests with the whole
+     * list in server order, as a backend without query support.
+     *
+     * @param ignored Whether filter and sort parameters are ignored
+     */
+    public void setFiltersIgnored(boolean ignored) {
+        filtersIgnored = ignored;
+    }
+
+    /**
+     * Makes list requests carrying filter or sort parameters fail with the
+     * given status; requests without them are still served.
+     *
+     * @param status HTTP status to answer, 0 to evaluate the parameters again
+     */
+    public void setFilterFailure(int status) {
+        filterFailureStatus = status;
+    }
+
+    /**
+     * Returns the query string of each list request received so far.
+     *
+     * @return The query strings, "" for a request without one
+     */
+    public List<String> getListQueries() {
+        return new ArrayList<>(listQueries);
+    }
+
+    /**
+     * Returns the mutation requests received so far.
+     *
+     * @return Requests in arrival order, e.g. "POST", "PUT 1000", "DELETE 1000"
+     */
+    public List<String> getMutations() {
+        return mutations;
+    }
+
+    /**
+     * Makes mutations fail with the given status, without a body. They are
+     * still recorded in {@link #getMutations()}.
+     *
+     * @param status HTTP status to answer, 0 to apply mutations again
+     */
+    public void setMutationFailure(int status) {
+        mutationFailureStatus = status;
+    }
+
+    /**
+     * Returns the Content-Encoding of each mutation received, in order.
+     *
+     * @return "gzip" or "identity" per mutation
+     */
+    public List<String> getMutationEncodings() {
+        return mutationEncodings;
+    }
+
+    /**
+     * Publishes an upsert event.
+     *
+     * @param compte The new state of the account
+     */
+    public void publishUpsert(Compte compte) {
+        publish("upsert", gson.toJson(compte));
+    }
+
+    /**
+     * Publishes a delete event.
+     *
+     * @param id The id of the deleted account
+     */
+    public void publishDelete(long id) {
+        publish("delete", "{\"id\":" + id + "}");
+    }
+
+    /**
+     * Pushes a raw frame to connected clients without recording it, e.g. a
+     * malformed event or a {@code retry} hint.
+     *
+     * @param frame The frame, ending with a blank line
+     */
+    public void publishFrame(String frame) {
+        for (BlockingQueue<String> queue : subscribers) {
+            queue.offer(frame);
+        }
+    }
+
+    /**
+     * Makes the server forget its history: reconnections carrying a cursor are
+     * answered with 410 Gone until the client connects without one.
+     */
+    public void expireCursors() {
+        cursorsExpired = true;
+    }
+
+    /**
+     * Closes every open event stream, as a network drop would.
+     */
+    public void dropConnections() {
+        for (BlockingQueue<String> queue : subscribers) {
+            queue.offer(END_OF_STREAM);
+        }
+    }
+
+    /**
+     * Waits until the given number of clients are connected to the stream.
+     *
+     * @param count     Expected number of subscribers
+     * @param timeoutMs Maximum time to wait
+     * @return true if the count was reached in time
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public boolean awaitSubscribers(int count, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (subscribers.size() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the Last-Event-ID header of each accepted stream connection.
+     *
+     * @return Cursors in connection order, null entries for fresh connections
+     */
+    public List<String> getConnectionCursors() {
+        return connectionCursors;
+    }
+
+    /**
+     * Stops the server and closes every open stream.
+     */
+    public void close() {
+        dropConnections();
+        server.stop(0);
+    }
+
+    /**
+     * Appends an event to the history and pushes it to connected clients.
+     *
+     * @param type Event type
+     * @param data JSON payload
+     */
+    private synchronized void publish(String type, String data) {
+        long id = events.size() + 1;
+        String frame = "id: " + id + "\nevent: " + type + "\ndata: " + data + "\n\n";
+        events.add(frame);
+        for (BlockingQueue<String> queue : subscribers) {
+            queue.offer(frame);
+        }
+    }
+
+    /**
+     * Serves the account list, one page of it or the accounts matching a
+     * query, as JSON.
+     *
+     * @param exchange The HTTP exchange
+     * @throws IOException If the response cannot be written
+     */
+    private void handleList(HttpExchange exchange) throws IOException {
+        if (!"/api/comptes".equals(exchange.getRequestURI().getPath())) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        String query = exchange.getRequestURI().getQuery();
+        listQueries.add(query != null ? query : "");
+        boolean filtered = query != null && FILTER_PARAMETERS.matcher(query).find();
+        int failure = filtered && filterFailureStatus != 0 ? filterFailureStatus : listFailureStatus;
+        if (failure != 0) {
+            exchange.sendResponseHeaders(failure, -1);
+            exchange.close();
+            return;
+        }
+        if (filtered && !filtersIgnored) {
+            writeAccounts(exchange, filter(query));
+            return;
+        }
+        int total = accountCount;
+        int from = 0;
+        int to = total;
+        if (query != null && query.contains("page=")) {
+            int page = queryParameter(query, "page");
+            int size = queryParameter(query, "size");
+            from = (int) Math.min(total, (long) page * size);
+            to = (int) Math.min(total, (long) from + size);
+            exchange.getResponseHeaders().add("X-Total-Count", String.valueOf(total));
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        Writer out = new BufferedWriter(new OutputStreamWriter(listBody(exchange), UTF_8), 65536);
+        try {
+            out.write('[');
+            for (int i = from; i < to; i++) {
+                if (i > from) {
+                    out.write(',');
+                }
+                writeAccount(out, i + 1);
+            }
+            out.write(']');
+        } finally {
+            out.close();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Evaluates the filter and sort parameters over the generated accounts.
+     *
+     * @param query The raw query string
+     * @return Ids of the matching accounts, in the requested order
+     */
+    private List<Long> filter(String query) {
+        String type = parameter(query, "type");
+        String soldeMin = parameter(query, "soldeMin");
+        String soldeMax = parameter(query, "soldeMax");
+        String dateFrom = parameter(query, "dateFrom");
+        String dateTo = parameter(query, "dateTo");
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= accountCount; id++) {
+            if ((type == null || type.equals(typeOf(id)))
+                    && (soldeMin == null || id * 10.0 >= Double.parseDouble(soldeMin))
+                    && (soldeMax == null || id * 10.0 <= Double.parseDouble(soldeMax))
+                    && (dateFrom == null || CREATION_DATE.compareTo(dateFrom) >= 0)
+                    && (dateTo == null || CREATION_DATE.compareTo(dateTo) <= 0)) {
+                ids.add(id);
+            }
+        }
+        String sort = parameter(query, "sort");
+        if (sort != null) {
+            String field = sort.substring(0, sort.indexOf(','));
+            if ("type".equals(field)) {
+                Collections.sort(ids, new Comparator<Long>() {
+                    @Override
+                    public int compare(Long a, Long b) {
+                        return typeOf(a).compareTo(typeOf(b));
+                    }
+                });
+            }
+            // Ids and balances grow together, creation dates are all equal
+            if (sort.endsWith(",desc")) {
+                Collections.reverse(ids);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Serves the given accounts as a JSON array.
+     *
+     * @param exchange The HTTP exchange
+     * @param ids      Ids of the accounts, in order
+     * @throws IOException If the response cannot be written
+     */
+    private void writeAccounts(HttpExchange exchange, List<Long> ids) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        Writer out = new BufferedWriter(new OutputStreamWriter(listBody(exchange), UTF_8), 65536);
+        try {
+            out.write('[');
+            for (int i = 0; i < ids.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeAccount(out, ids.get(i));
+            }
+            out.write(']');
+        } finally {
+            out.close();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the body stream of a list response, throttled if requested.
+     *
+     * @param exchange The HTTP exchange
+     * @return The stream to write the list to
+     */
+    private OutputStream listBody(HttpExchange exchange) {
+        long rate = bytesPerSecond;
+        return rate > 0 ? new ThrottledOutputStream(exchange.getResponseBody(), rate) : exchange.getResponseBody();
+    }
+
+    /**
+     * Writes one generated account as a JSON object.
+     *
+     * @param out Destination
+     * @param id  Id of the account
+     * @throws IOException If writing fails
+     */
+    private static void writeAccount(Writer out, long id) throws IOException {
+        out.write("{\"id\":" + id + ",\"solde\":" + (id * 10.0) + ",\"type\":\"" + typeOf(id)
+                + "\",\"dateCreation\":\"" + CREATION_DATE + "\"}");
+    }
+
+    /**
+     * Returns the type of a generated account.
+     *
+     * @param id Id of the account
+     * @return "COURANT" for even ids, "EPARGNE" otherwise
+     */
+    private static String typeOf(long id) {
+        return id % 2 == 0 ? "COURANT" : "EPARGNE";
+    }
+
+    /**
+     * Answers a creation, update or deletion as the backend would.
+     *
+     * @param exchange The HTTP exchange
+     * @throws IOException If the response cannot be written
+     */
+    private void handleMutation(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        try {
+            int failure = mutationFailureStatus;
+            if (failure != 0) {
+                mutations.add("POST".equals(method) ? method : method + " " + path.substring(path.lastIndexOf('/') + 1));
+                exchange.sendResponseHeaders(failure, -1);
+            } else if ("POST".equals(method) && "/api/comptes".equals(path)) {
+                Compte compte = gson.fromJson(new InputStreamReader(requestBody(exchange), UTF_8), Compte.class);
+                compte.setId(nextCreatedId.getAndIncrement());
+                mutations.add("POST");
+                sendJson(exchange, 201, gson.toJson(compte));
+            } else if ("PUT".equals(method) && path.startsWith("/api/comptes/")) {
+                Compte compte = gson.fromJson(new InputStreamReader(requestBody(exchange), UTF_8), Compte.class);
+                compte.setId(Long.parseLong(path.substring("/api/comptes/".length())));
+                stored.put(compte.getId(), compte);
+                mutations.add("PUT " + compte.getId());
+                sendJson(exchange, 200, gson.toJson(compte));
+            } else if ("DELETE".equals(method) && path.startsWith("/api/comptes/")) {
+                mutations.add("DELETE " + path.substring("/api/comptes/".length()));
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the decoded body of a mutation and records its encoding.
+     *
+     * @param exchange The HTTP exchange
+     * @return The uncompressed body
+     * @throws IOException If the gzip header is invalid
+     */
+    private InputStream requestBody(HttpExchange exchange) throws IOException {
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        mutationEncodings.add(encoding != null ? encoding : "identity");
+        return "gzip".equals(encoding) ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody();
+    }
+
+    /**
+     * Sends a JSON response body.
+     *
+     * @param exchange The HTTP exchange
+     * @param status   HTTP status code
+     * @param json     The body
+     * @throws IOException If the response cannot be written
+     */
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    /**
+     * Reads an integer query parameter.
+     *
+     * @param query The raw query string
+     * @param name  The parameter name
+     * @return The parameter value
+     */
+    private static int queryParameter(String query, String name) {
+        String value = parameter(query, name);
+        if (value == null) {
+            throw new IllegalArgumentException("missing " + name);
+        }
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * Reads an optional query parameter.
+     *
+     * @param query The raw query string
+     * @param name  The parameter name
+     * @return The parameter value, null if absent
+     */
+    private static String parameter(String query, String name) {
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return pair.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Serves one event stream connection until it is dropped.
+     *
+     * @param exchange The HTTP exchange
+     * @throws IOException If the response cannot be written
+     */
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        String cursor = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        if (cursor != null && cursorsExpired) {
+            exchange.sendResponseHeaders(410, -1);
+            exchange.close();
+            return;
+        }
+        if (cursor == null) {
+            cursorsExpired = false;
+        }
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        synchronized (this) {
+            if (cursor != null) {
+                for (int i = Integer.parseInt(cursor); i < events.size(); i++) {
+                    queue.offer(events.get(i));
+                }
+            }
+            subscribers.add(queue);
+            connectionCursors.add(cursor);
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(": connected\n\n".getBytes(UTF_8));
+            out.flush();
+            while (true) {
+                String frame = queue.take();
+                if (END_OF_STREAM.equals(frame)) {
+                    break;
+                }
+                out.write(frame.getBytes(UTF_8));
+                out.flush();
+            }
+        } catch (InterruptedException | IOException e) {
+            // Client went away
+        } finally {
+            subscribers.remove(queue);
+            exchange.close();
+        }
+    }
+
+    /**
+     * Stream holding writes back so that the bytes written never run ahead
+     * of a constant rate.
+     */
+    private static final class ThrottledOutputStream extends FilterOutputStream {
+        private static final int CHUNK = 4096;
+        private final long bytesPerSecond;
+        private final long start = System.nanoTime();
+        private long written = 0;
+
+        ThrottledOutputStream(OutputStream out, long bytesPerSecond) {
+            super(out);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int chunk = Math.min(len, CHUNK);
+                out.write(b, off, chunk);
+                written += chunk;
+                off += chunk;
+                len -= chunk;
+                long aheadNanos = written * 1000000000L / bytesPerSecond - (System.nanoTime() - start);
+                if (aheadNanos > 0) {
+                    out.flush();
+                    try {
+                        Thread.sleep(aheadNanos / 1000000L, (int) (aheadNanos % 1000000L));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while throttled", e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package ma.projet.restclient.adapter;
+
+import ma.projet.restclient.config.MemoryBudgetManager;
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.repository.CompteSnapshot;
+import ma.projet.restclient.repository.WindowedCompteSource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of CompteChanges: how pending lists and single changes are merged,
+ * and how the change log corrects lists fetched while changes were posted.
+ */
+public class CompteChangesTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mergeReplacesInPlaceAppendsAndRemoves() {
+        List<Compte> comptes = Arrays.asList(compte(1, 10), compte(2, 20), compte(3, 30));
+        Map<Long, Compte> changes = new LinkedHashMap<>();
+        changes.put(4L, compte(4, 40));
+        changes.put(2L, compte(2, 25));
+        changes.put(3L, null);
+        changes.put(5L, null);
+
+        List<Compte> merged = CompteChanges.merge(comptes, changes);
+
+        assertEquals(Arrays.asList(1L, 2L, 4L), ids(merged));
+        assertEquals(25, merged.get(1).getSolde(), 0);
+        assertEquals(3, comptes.size());
+        assertSame(comptes, CompteChanges.merge(comptes, Collections.<Long, Compte>emptyMap()));
+    }
+
+    @Test
+    public void aListReplacesEarlierPendingChanges() {
+        CompteChanges changes = new CompteChanges();
+        changes.post(1L, compte(1, 10));
+        long token = changes.token();
+        List<Compte> list = list(compte(2, 20));
+
+        assertTrue(changes.postList(list, token));
+        CompteChanges.Batch batch = changes.take();
+
+        assertSame(list, batch.list);
+        assertTrue(batch.changes.isEmpty());
+    }
+
+    @Test
+    public void changesPostedWhileAListWasFetchedAreReapplied() {
+        CompteChanges changes = new CompteChanges();
+        long token = changes.token();
+        changes.post(1L, compte(1, 15));
+        changes.post(2L, null);
+        changes.take();
+
+        assertTrue(changes.postList(list(compte(1, 10), compte(2, 20)), token));
+        CompteChanges.Batch batch = changes.take();
+
+        assertEquals(Arrays.asList(1L, 2L), new ArrayList<>(batch.changes.keySet()));
+        List<Compte> merged = CompteChanges.merge(batch.list, batch.changes);
+        assertEquals(Arrays.asList(1L), ids(merged));
+        assertEquals(15, merged.get(0).getSolde(), 0);
+    }
+
+    @Test
+    public void aListRequestedBeforeTheLastOneIsStale() {
+        CompteChanges changes = new CompteChanges();
+        long older = changes.token();
+        changes.post(1L, compte(1, 10));
+        long newer = changes.token();
+
+        assertTrue(changes.postList(list(compte(1, 10)), newer));
+        assertFalse(changes.postList(list(), older));
+
+        assertEquals(1, changes.take().list.size());
+        assertEquals(newer, changes.listToken());
+    }
+
+    @Test
+    public void changedSinceTellsWhetherALoggedChangeFollowsTheToken() {
+        CompteChanges changes = new CompteChanges();
+        long token = changes.token();
+        changes.post(1L, compte(1, 10));
+
+        assertTrue(changes.changedSince(1L, token));
+        assertFalse(changes.changedSince(1L, changes.token()));
+        assertFalse(changes.changedSince(2L, token));
+    }
+
+    @Test
+    public void theLogKeepsOnlyTheLastChangedAccounts() {
+        CompteChanges changes = new CompteChanges();
+        long token = changes.token();
+        for (long id = 1; id <= CompteChanges.MAX_LOGGED_CHANGES + 1; id++) {
+            changes.post(id, compte(id, id));
+        }
+
+        assertFalse(changes.changedSince(1L, token));
+        assertTrue(changes.changedSince(2L, token));
+        changes.postList(list(), token);
+        assertEquals(CompteChanges.MAX_LOGGED_CHANGES, changes.take().changes.size());
+    }
+
+    @Test
+    public void takeClearsThePendingChangesButKeepsTheLog() {
+        CompteChanges changes = new CompteChanges();
+        long token = changes.token();
+        changes.post(1L, compte(1, 10));
+
+        assertEquals(1, changes.take().changes.size());
+        CompteChanges.Batch empty = changes.take();
+
+        assertNull(empty.list);
+        assertNull(empty.window);
+        assertTrue(empty.changes.isEmpty());
+        assertTrue(changes.changedSince(1L, token));
+    }
+
+    @Test
+    public void aSupersededWindowIsClosed() throws Exception {
+        File file = folder.newFile("comptes.snapshot");
+        CompteSnapshot.write(file, Arrays.asList(compte(1, 10), compte(2, 20)));
+        MemoryBudgetManager budget = new MemoryBudgetManager(1 << 20);
+        WindowedCompteSource first = openWindow(file);
+        first.setMemoryBudget(budget);
+        first.setVisibleRange(0, 1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (first.residentRowCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(budget.usedBytes() > 0);
+        CompteChanges changes = new CompteChanges();
+
+        assertTrue(changes.postWindow(first, changes.token()));
+        WindowedCompteSource second = openWindow(file);
+        assertTrue(changes.postWindow(second, changes.token()));
+
+        assertEquals(0, budget.usedBytes());
+        assertSame(second, changes.take().window);
+        second.close();
+    }
+
+    private static WindowedCompteSource openWindow(File file) throws Exception {
+        return WindowedCompteSource.open(file, 0, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }, new WindowedCompteSource.Listener() {
+            @Override
+            public void onRowsLoaded(int from, int count) {
+            }
+        });
+    }
+
+    private static Compte compte(long id, double solde) {
+        return new Compte(id, solde, "COURANT", "2025-11-09");
+    }
+
+    private static List<Compte> list(Compte... comptes) {
+        return new ArrayList<>(Arrays.asList(comptes));
+    }
+
+    private static List<Long> ids(List<Compte> comptes) {
+        List<Long> ids = new ArrayList<>();
+        for (Compte compte : comptes) {
+            ids.add(compte.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,109 @@
+package ma.projet.restclient.api;
+
+import ma.projet.restclient.entities.Compte;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of CompteQuery: request parameters and on-device evaluation.
+ */
+public class CompteQueryTest {
+
+    @Test
+    public void emptyQueryHasNoParametersAndMatchesEverything() {
+        CompteQuery query = new CompteQuery();
+
+        assertTrue(query.toQueryMap().isEmpty());
+        assertNull(query.comparator());
+        List<Compte> comptes = Arrays.asList(compte(2, 5, "EPARGNE", null), compte(1, 9, "COURANT", "2025-01-01"));
+        assertEquals(comptes, query.apply(comptes));
+    }
+
+    @Test
+    public void toQueryMapListsOnlySetCriteria() {
+        CompteQuery query = new CompteQuery()
+                .type("COURANT")
+                .solde(100.0, null)
+                .createdBetween(null, "2025-12-31")
+                .sortBy("solde", true);
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("type", "COURANT");
+        expected.put("soldeMin", "100.0");
+        expected.put("dateTo", "2025-12-31");
+        expected.put("sort", "solde,desc");
+        assertEquals(expected, query.toQueryMap());
+    }
+
+    @Test
+    public void boundsAreInclusive() {
+        CompteQuery query = new CompteQuery().solde(10.0, 20.0).createdBetween("2025-01-01", "2025-01-31");
+
+        assertTrue(query.matches(compte(1, 10, "COURANT", "2025-01-01")));
+        assertTrue(query.matches(compte(1, 20, "COURANT", "2025-01-31")));
+        assertFalse(query.matches(compte(1, 20.5, "COURANT", "2025-01-15")));
+        assertFalse(query.matches(compte(1, 15, "COURANT", "2025-02-01")));
+        assertFalse(query.matches(compte(1, 15, "COURANT", null)));
+    }
+
+    @Test
+    public void applyFiltersThenSorts() {
+        List<Compte> comptes = Arrays.asList(
+                compte(1, 30, "COURANT", "2025-01-01"),
+                compte(2, 10, "EPARGNE", "2025-01-02"),
+                compte(3, 20, "COURANT", "2025-01-03"),
+                compte(4, 40, "COURANT", "2025-01-04"));
+
+        List<Compte> result = new CompteQuery().type("COURANT").solde(null, 35.0).sortBy("solde", false)
+                .apply(comptes);
+
+        assertEquals(Arrays.asList(3L, 1L), ids(result));
+        assertEquals(Arrays.asList(4L, 3L, 2L, 1L),
+                ids(new CompteQuery().sortBy("dateCreation", true).apply(comptes)));
+    }
+
+    @Test
+    public void sortPutsMissingValuesFirst() {
+        List<Compte> comptes = Arrays.asList(compte(1, 0, "COURANT", null), compte(2, 0, null, null));
+
+        assertEquals(Arrays.asList(2L, 1L), ids(new CompteQuery().sortBy("type", false).apply(comptes)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownSortField() {
+        new CompteQuery().sortBy("owner", false);
+    }
+
+    @Test
+    public void applyLeavesTheInputUntouched() {
+        List<Compte> comptes = Arrays.asList(compte(2, 0, "COURANT", null), compte(1, 0, "COURANT", null));
+
+        new CompteQuery().sortBy("id", false).apply(comptes);
+
+        assertEquals(Arrays.asList(2L, 1L), ids(comptes));
+        assertEquals(Collections.emptyList(), new CompteQuery().type("EPARGNE").apply(comptes));
+    }
+
+    private static Compte compte(long id, double solde, String type, String date) {
+        return new Compte(id, solde, type, date);
+    }
+
+    private static List<Long> ids(List<Compte> comptes) {
+        Long[] ids = new Long[comptes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = comptes.get(i).getId();
+        }
+        return Arrays.asList(ids);
+    }
+}
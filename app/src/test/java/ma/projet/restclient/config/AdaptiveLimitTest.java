@@ -0,0 +1,96 @@
+package ma.projet.restclient.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of AdaptiveLimit: multiplicative decrease on overload or latency
+ * rise, additive increase while the limit is used.
+ */
+public class AdaptiveLimitTest {
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    public void overloadShrinksTheLimitMultiplicatively() {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 20);
+
+        limit.onSample(-1, 20, true);
+        assertEquals(18, limit.getLimit());
+        limit.onSample(-1, 18, true);
+        assertEquals(16, limit.getLimit());
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(-1, 1, true);
+        }
+        assertEquals(1, limit.getLimit());
+    }
+
+    @Test
+    public void growsByOneForAboutEachLimitWorthOfFastCalls() {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 10);
+        limit.onSample(-1, 10, true);
+        assertEquals(9, limit.getLimit());
+
+        for (int i = 0; i < 8; i++) {
+            limit.onSample(10 * MILLIS, 9, false);
+        }
+        assertEquals(9, limit.getLimit());
+        // About nine calls, as the fractional steps do not add up exactly
+        limit.onSample(10 * MILLIS, 9, false);
+        limit.onSample(10 * MILLIS, 9, false);
+        assertEquals(10, limit.getLimit());
+
+        // Capped at the highest limit
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(10 * MILLIS, 10, false);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    public void doesNotGrowAnUnusedLimit() {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 10);
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(-1, 10, true);
+        }
+        int shrunk = limit.getLimit();
+
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(10 * MILLIS, shrunk / 2 - 1, false);
+        }
+        assertEquals(shrunk, limit.getLimit());
+    }
+
+    @Test
+    public void latencyAboveTwiceTheNoLoadLatencyIsCongestion() {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 10);
+        limit.onSample(10 * MILLIS, 10, false);
+
+        limit.onSample(19 * MILLIS, 10, false);
+        assertEquals(10, limit.getLimit());
+        limit.onSample(30 * MILLIS, 10, false);
+        assertEquals(9, limit.getLimit());
+    }
+
+    @Test
+    public void toleratesJitterOnFastLinks() {
+        AdaptiveLimit limit = new AdaptiveLimit(1, 10);
+        limit.onSample(1 * MILLIS, 10, false);
+
+        // Four times the no-load latency, but within the slack
+        limit.onSample(4 * MILLIS, 10, false);
+        assertEquals(10, limit.getLimit());
+        limit.onSample(7 * MILLIS, 10, false);
+        assertEquals(9, limit.getLimit());
+    }
+
+    @Test
+    public void loweringTheMaximumCapsTheLimit() {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 10);
+
+        limit.setMaxLimit(4);
+        assertEquals(4, limit.getLimit());
+        limit.setMaxLimit(0);
+        assertEquals(2, limit.getLimit());
+    }
+}
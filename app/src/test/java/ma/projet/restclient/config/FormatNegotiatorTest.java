@@ -0,0 +1,87 @@
+package ma.projet.restclient.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of FormatNegotiator with synthetic samples: the cost model, its
+ * fallback without a slope, and how reads are steered between formats.
+ */
+public class FormatNegotiatorTest {
+    private static final long MILLI = 1000000L;
+
+    @Test
+    public void fitsAFixedAndAPerRowCost() {
+        FormatNegotiator negotiator = new FormatNegotiator();
+        // 2 ms per request plus 10 us per row, split between transfer and decode
+        for (int rows : new int[] { 100, 200, 400, 800 }) {
+            long nanos = 2 * MILLI + rows * 10000L;
+            negotiator.record("JSON", rows, rows * 60L, nanos / 2, nanos - nanos / 2);
+        }
+
+        assertEquals(2 * MILLI + 1000 * 10000L, negotiator.estimate("JSON", 1000), 1000);
+        assertEquals(2 * MILLI, negotiator.estimate("JSON", 0), 1000);
+    }
+
+    @Test
+    public void usesTheMeanCostWithoutASlope() {
+        FormatNegotiator negotiator = new FormatNegotiator();
+        negotiator.record("JSON", 1000, 60000, 3 * MILLI, 2 * MILLI);
+        negotiator.record("JSON", 1000, 60000, 4 * MILLI, 3 * MILLI);
+
+        // Not extrapolated to a per-row cost
+        assertEquals(6 * MILLI, negotiator.estimate("JSON", 10), 1);
+        assertEquals(6 * MILLI, negotiator.estimate("JSON", 100000), 1);
+    }
+
+    @Test
+    public void keepsSingleEntitiesOutOfTheListModel() {
+        FormatNegotiator negotiator = new FormatNegotiator();
+        negotiator.record("JSON", 1000, 60000, 5 * MILLI, 5 * MILLI);
+        for (int i = 0; i < 50; i++) {
+            negotiator.record("JSON", -1, 60, MILLI, 0);
+        }
+
+        assertEquals(10 * MILLI, negotiator.estimate("JSON", 1000), 1);
+        assertTrue(Double.isNaN(negotiator.estimate("XML", 1000)));
+    }
+
+    @Test
+    public void triesEachFormatThenPicksTheCheaper() {
+        FormatNegotiator negotiator = new FormatNegotiator();
+        negotiator.setReevaluation(1000, Long.MAX_VALUE);
+
+        assertEquals("JSON", negotiator.choose());
+        assertTrue(negotiator.getLastReason(), negotiator.getLastReason().startsWith("unmeasured"));
+        negotiator.record("JSON", 1000, 60000, 4 * MILLI, 4 * MILLI);
+        assertEquals("XML", negotiator.choose());
+        negotiator.record("XML", 1000, 90000, 6 * MILLI, 12 * MILLI);
+
+        assertEquals("JSON", negotiator.choose());
+        assertTrue(negotiator.getLastReason(), negotiator.getLastReason().startsWith("cheaper"));
+        assertEquals("JSON", negotiator.getChosenFormat());
+    }
+
+    @Test
+    public void reevaluatesTheOtherFormatAndSwitchesWhenItBecomesCheaper() {
+        FormatNegotiator negotiator = new FormatNegotiator();
+        negotiator.setReevaluation(3, Long.MAX_VALUE);
+        negotiator.record("JSON", 1000, 60000, 4 * MILLI, 4 * MILLI);
+        negotiator.record("XML", 1000, 90000, 6 * MILLI, 12 * MILLI);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("JSON", negotiator.choose());
+        }
+        assertEquals("XML", negotiator.choose());
+        assertTrue(negotiator.getLastReason(), negotiator.getLastReason().startsWith("reevaluate"));
+
+        // The network got slower for JSON, e.g. a proxy stopped compressing it
+        for (int i = 0; i < 16; i++) {
+            negotiator.record("JSON", 1000, 60000, 30 * MILLI, 4 * MILLI);
+        }
+        assertEquals("XML", negotiator.choose());
+        assertEquals("XML", negotiator.getChosenFormat());
+    }
+}
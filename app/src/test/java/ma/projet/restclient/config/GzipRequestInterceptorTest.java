@@ -0,0 +1,83 @@
+package ma.projet.restclient.config;
+
+import ma.projet.restclient.LocalCompteServer;
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.entities.Compte;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import okhttp3.OkHttpClient;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of GzipRequestInterceptor against the in-process LocalCompteServer,
+ * which decodes gzip request bodies like the backend.
+ */
+public class GzipRequestInterceptorTest {
+    private static final long THRESHOLD = 1024;
+
+    private LocalCompteServer server;
+    private GzipRequestInterceptor interceptor;
+    private CompteService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCompteServer();
+        interceptor = new GzipRequestInterceptor();
+        service = new Retrofit.Builder()
+                .baseUrl(server.baseUrl())
+                .client(new OkHttpClient.Builder().addInterceptor(interceptor).build())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void compressesOnlyBodiesAboveTheThreshold() throws Exception {
+        interceptor.setThreshold(THRESHOLD);
+        Compte small = new Compte(1L, 10, "COURANT", "2025-11-09");
+        Compte large = new Compte(2L, 20, repeat("COURANT ", 512), "2025-11-09");
+
+        assertTrue(service.updateCompte(1L, small).execute().isSuccessful());
+        Response<Compte> response = service.updateCompte(2L, large).execute();
+
+        assertTrue(response.isSuccessful());
+        assertEquals(Arrays.asList("identity", "gzip"), server.getMutationEncodings());
+        assertEquals(large.getType(), server.getStored(2L).getType());
+        assertEquals(small.getType(), server.getStored(1L).getType());
+    }
+
+    @Test
+    public void sendsBodiesAsIsWhenDisabled() throws Exception {
+        Compte large = new Compte(2L, 20, repeat("COURANT ", 512), "2025-11-09");
+
+        assertTrue(service.updateCompte(2L, large).execute().isSuccessful());
+        interceptor.setThreshold(THRESHOLD);
+        interceptor.setThreshold(-1);
+        assertTrue(service.updateCompte(2L, large).execute().isSuccessful());
+
+        assertEquals(Arrays.asList("identity", "identity"), server.getMutationEncodings());
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(text);
+        }
+        return repeated.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package ma.projet.restclient.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of MemoryBudgetManager with fake caches: bytes are shed from the
+ * cheapest cache to rebuild first, and only as many as needed.
+ */
+public class MemoryBudgetManagerTest {
+
+    @Test
+    public void shedsTheCheapestCacheFirstAndOnlyTheExcess() {
+        MemoryBudgetManager budget = new MemoryBudgetManager(1000);
+        FakeCache network = new FakeCache("network", 10.0, 500);
+        FakeCache local = new FakeCache("local", 1.0, 300);
+        budget.register(network);
+        budget.register(local);
+
+        local.size = 700;
+        budget.onCacheGrown();
+
+        assertEquals(500, local.size);
+        assertEquals(500, network.size);
+        assertEquals(1000, budget.usedBytes());
+    }
+
+    @Test
+    public void reachesCostlierCachesOnceCheaperOnesAreEmpty() {
+        MemoryBudgetManager budget = new MemoryBudgetManager(1000);
+        FakeCache network = new FakeCache("network", 10.0, 900);
+        FakeCache decoded = new FakeCache("decoded", 2.0, 100);
+        FakeCache local = new FakeCache("local", 1.0, 100);
+        budget.register(network);
+        budget.register(decoded);
+        budget.register(local);
+
+        network.size = 1100;
+        budget.onCacheGrown();
+
+        assertEquals(0, local.size);
+        assertEquals(0, decoded.size);
+        assertEquals(1000, network.size);
+    }
+
+    @Test
+    public void trimToFractionShrinksToAShareOfTheBudget() {
+        MemoryBudgetManager budget = new MemoryBudgetManager(1000);
+        FakeCache network = new FakeCache("network", 10.0, 500);
+        FakeCache local = new FakeCache("local", 1.0, 300);
+        budget.register(network);
+        budget.register(local);
+
+        budget.trimToFraction(1.0);
+        assertEquals(800, budget.usedBytes());
+
+        budget.trimToFraction(0.5);
+        assertEquals(0, local.size);
+        assertEquals(500, network.size);
+
+        budget.trimToFraction(0.25);
+        assertEquals(250, network.size);
+
+        budget.trimToFraction(-1);
+        assertEquals(0, budget.usedBytes());
+    }
+
+    @Test
+    public void loweringTheBudgetShedsImmediately() {
+        MemoryBudgetManager budget = new MemoryBudgetManager(1000);
+        FakeCache local = new FakeCache("local", 1.0, 800);
+        budget.register(local);
+
+        budget.setBudgetBytes(600);
+
+        assertEquals(600, local.size);
+    }
+
+    @Test
+    public void aCacheRegisteredUnderAnExistingNameReplacesIt() {
+        MemoryBudgetManager budget = new MemoryBudgetManager(1000);
+        FakeCache first = new FakeCache("window", 1.0, 400);
+        FakeCache second = new FakeCache("window", 1.0, 300);
+        budget.register(first);
+        budget.register(second);
+
+        assertEquals(300, budget.usedBytes());
+        budget.unregister(second);
+        assertEquals(0, budget.usedBytes());
+    }
+
+    /**
+     * Cache whose size is set by the test and shed byte by byte.
+     */
+    private static final class FakeCache implements MemoryBudgetManager.Cache {
+        private final String name;
+        private final double cost;
+        long size;
+
+        FakeCache(String name, double cost, long size) {
+            this.name = name;
+            this.cost = cost;
+            this.size = size;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public long sizeBytes() {
+            return size;
+        }
+
+        @Override
+        public double rebuildCost() {
+            return cost;
+        }
+
+        @Override
+        public long shed(long bytes) {
+            long released = Math.min(bytes, size);
+            size -= released;
+            return released;
+        }
+
+        @Override
+        public long hitCount() {
+            return 0;
+        }
+
+        @Override
+        public long missCount() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ma.projet.restclient.config;
+
+import ma.projet.restclient.LocalCompteServer;
+import ma.projet.restclient.api.CompteService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests of RequestScheduler's overload detection against the in-process
+ * LocalCompteServer.
+ */
+public class RequestSchedulerTest {
+    private static final String HOST = "127.0.0.1";
+
+    private LocalCompteServer server;
+    private RequestScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCompteServer();
+        scheduler = new RequestScheduler();
+        scheduler.setMaxRequestsPerHost(10);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void serverErrorsShrinkTheHostLimit() throws Exception {
+        server.setListFailure(503);
+
+        runAll(service(server.baseUrl()), 3);
+
+        assertEquals(7, scheduler.currentLimit(HOST));
+    }
+
+    @Test
+    public void refusedConnectionsDoNotShrinkTheHostLimit() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int closedPort = socket.getLocalPort();
+        socket.close();
+
+        runAll(service("http://" + HOST + ":" + closedPort + "/"), 3);
+
+        assertEquals(10, scheduler.currentLimit(HOST));
+    }
+
+    private static CompteService service(String baseUrl) {
+        return new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+    }
+
+    /**
+     * Runs list calls one after the other, each waiting for the previous one.
+     */
+    private void runAll(CompteService service, int calls) throws InterruptedException {
+        for (int i = 0; i < calls; i++) {
+            final BlockingQueue<Object> done = new LinkedBlockingQueue<>();
+            scheduler.enqueue(service.streamAllComptes(), RequestPriority.VISIBLE, new Callback<ResponseBody>() {
+                @Override
+                public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                    if (response.body() != null) {
+                        response.body().close();
+                    }
+                    done.add(response);
+                }
+
+                @Override
+                public void onFailure(Call<ResponseBody> call, Throwable t) {
+                    done.add(t);
+                }
+            });
+            assertNotNull(done.poll(10, TimeUnit.SECONDS));
+        }
+        // The slot is released after the callback returns
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.runningCallsCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
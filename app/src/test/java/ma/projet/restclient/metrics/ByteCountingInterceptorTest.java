@@ -0,0 +1,139 @@
+package ma.projet.restclient.metrics;
+
+import com.google.gson.Gson;
+
+import ma.projet.restclient.LocalCompteServer;
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.GzipRequestInterceptor;
+import ma.projet.restclient.entities.Compte;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of ByteCountingInterceptor against the in-process LocalCompteServer,
+ * installed as in RetrofitClient: at the application level, before request
+ * compression, and at the network level.
+ */
+public class ByteCountingInterceptorTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private LocalCompteServer server;
+    private OkHttpClient client;
+    private CompteService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCompteServer();
+        GzipRequestInterceptor compression = new GzipRequestInterceptor();
+        compression.setThreshold(1024);
+        client = new OkHttpClient.Builder()
+                .addInterceptor(new ByteCountingInterceptor(false))
+                .addInterceptor(compression)
+                .addNetworkInterceptor(new ByteCountingInterceptor(true))
+                .build();
+        service = new Retrofit.Builder()
+                .baseUrl(server.baseUrl())
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void countsResponseBytesPerEndpoint() throws Exception {
+        server.setAccountCount(1000);
+        long length = client.newCall(new Request.Builder().url(server.baseUrl() + "api/comptes").build())
+                .execute().body().bytes().length;
+        long bytes = ClientMetrics.counter("http.getAllCompteJson.response.bytes");
+        long wireBytes = ClientMetrics.counter("http.getAllCompteJson.response.wireBytes");
+        long otherRequests = ClientMetrics.counter("http.updateCompte.response.bytes");
+
+        List<Compte> comptes = service.getAllCompteJson().execute().body();
+
+        assertEquals(1000, comptes.size());
+        assertEquals(length, ClientMetrics.counter("http.getAllCompteJson.response.bytes") - bytes);
+        assertEquals(length, ClientMetrics.counter("http.getAllCompteJson.response.wireBytes") - wireBytes);
+        assertEquals(otherRequests, ClientMetrics.counter("http.updateCompte.response.bytes"));
+    }
+
+    @Test
+    public void countsRequestBytesBeforeAndAfterCompression() throws Exception {
+        StringBuilder type = new StringBuilder();
+        for (int i = 0; i < 512; i++) {
+            type.append("COURANT ");
+        }
+        Compte compte = new Compte(2L, 20, type.toString(), "2025-11-09");
+        long length = new Gson().toJson(compte).getBytes(UTF_8).length;
+        long bytes = ClientMetrics.counter("http.updateCompte.request.bytes");
+        long wireBytes = ClientMetrics.counter("http.updateCompte.request.wireBytes");
+
+        assertTrue(service.updateCompte(2L, compte).execute().isSuccessful());
+
+        assertEquals(length, ClientMetrics.counter("http.updateCompte.request.bytes") - bytes);
+        long compressed = ClientMetrics.counter("http.updateCompte.request.wireBytes") - wireBytes;
+        assertTrue("wire bytes " + compressed, compressed > 0 && compressed < length / 4);
+    }
+
+    @Test
+    public void keepsTheOneShotFlagOfRequestBodies() throws Exception {
+        final AtomicBoolean oneShot = new AtomicBoolean(false);
+        OkHttpClient inspecting = client.newBuilder()
+                .addNetworkInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        oneShot.set(chain.request().body().isOneShot());
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .build();
+        RequestBody body = new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return MediaType.get("application/json");
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                sink.writeUtf8("{\"solde\":10.0}");
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return true;
+            }
+        };
+        long bytes = ClientMetrics.counter("http.other.request.bytes");
+
+        Response response = inspecting.newCall(new Request.Builder()
+                .url(server.baseUrl() + "api/comptes").post(body).build()).execute();
+        response.close();
+
+        assertTrue(oneShot.get());
+        assertEquals(14, ClientMetrics.counter("http.other.request.bytes") - bytes);
+    }
+}
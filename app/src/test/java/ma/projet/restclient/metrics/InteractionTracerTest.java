@@ -0,0 +1,150 @@
+package ma.projet.restclient.metrics;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of InteractionTracer: current spans per thread, phases recorded from
+ * other threads, and the exported Trace Event document. The tracer is
+ * global, so each test looks only at the events named after it.
+ */
+public class InteractionTracerTest {
+    private static final long MILLI = 1000000L;
+
+    @Test
+    public void scopesNestAndStayOnTheirThread() throws Exception {
+        InteractionTracer.Span outer = InteractionTracer.begin("test.nesting.outer");
+        InteractionTracer.Span inner = InteractionTracer.begin("test.nesting.inner");
+        final AtomicReference<InteractionTracer.Span> elsewhere = new AtomicReference<>();
+
+        try (InteractionTracer.Scope outerScope = outer.makeCurrent()) {
+            try (InteractionTracer.Scope innerScope = inner.makeCurrent()) {
+                assertSame(inner, InteractionTracer.current());
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        elsewhere.set(InteractionTracer.current());
+                    }
+                });
+                thread.start();
+                thread.join();
+            }
+            assertSame(outer, InteractionTracer.current());
+        }
+
+        assertNull(InteractionTracer.current());
+        assertNull(elsewhere.get());
+    }
+
+    @Test
+    public void phasesRecordedOnOtherThreadsJoinTheSpan() throws Exception {
+        final InteractionTracer.Span span = InteractionTracer.begin("test.phases");
+        final long start = System.nanoTime();
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                span.phase("test.phases.network", start, start + 3 * MILLI);
+                span.phase("test.phases.decode", start + 3 * MILLI, start + 5 * MILLI);
+            }
+        });
+        worker.start();
+        worker.join();
+        span.end();
+        span.phase("test.phases.late", start, start + MILLI);
+        span.end();
+
+        List<JsonObject> events = eventsNamed("test.phases");
+        assertEquals(3, events.size());
+        JsonObject interaction = events.get(0);
+        assertEquals("interaction", interaction.get("cat").getAsString());
+        for (JsonObject phase : events.subList(1, 3)) {
+            assertEquals("phase", phase.get("cat").getAsString());
+            assertEquals(interaction.get("tid").getAsLong(), phase.get("tid").getAsLong());
+        }
+        assertEquals("test.phases.network", events.get(1).get("name").getAsString());
+        assertEquals(3000, events.get(1).get("dur").getAsLong());
+        assertEquals(2000, events.get(2).get("dur").getAsLong());
+        assertEquals(events.get(1).get("ts").getAsLong() + 3000, events.get(2).get("ts").getAsLong());
+    }
+
+    @Test
+    public void exportsCompleteEventsAndSlowFrames() {
+        long frames = ClientMetrics.counter("frames.total");
+        long slow = ClientMetrics.counter("frames.slow");
+        long frozen = ClientMetrics.counter("frames.frozen");
+        long start = System.nanoTime();
+        InteractionTracer.recordFrame(start, 8 * MILLI);
+        InteractionTracer.recordFrame(start + 10 * MILLI, 40 * MILLI);
+        InteractionTracer.recordFrame(start + 60 * MILLI, 900 * MILLI);
+        InteractionTracer.Span span = InteractionTracer.begin("test.export");
+        span.end();
+
+        JsonObject trace = new JsonParser().parse(InteractionTracer.exportTraceEvents()).getAsJsonObject();
+
+        assertEquals("ms", trace.get("displayTimeUnit").getAsString());
+        for (JsonElement element : trace.getAsJsonArray("traceEvents")) {
+            JsonObject event = element.getAsJsonObject();
+            assertEquals("X", event.get("ph").getAsString());
+            assertEquals(1, event.get("pid").getAsInt());
+            assertTrue(event.has("name") && event.has("cat") && event.has("tid"));
+            assertTrue(event.get("dur").getAsLong() >= 0);
+        }
+        assertEquals(1, eventsNamed("test.export").size());
+        List<JsonObject> frameEvents = new ArrayList<>();
+        for (JsonObject event : eventsOf(trace)) {
+            if ("frame".equals(event.get("cat").getAsString())) {
+                frameEvents.add(event);
+            }
+        }
+        // The 8 ms frame is not slow, the last two are
+        assertTrue(frameEvents.size() >= 2);
+        JsonObject slowFrame = frameEvents.get(frameEvents.size() - 2);
+        JsonObject frozenFrame = frameEvents.get(frameEvents.size() - 1);
+        assertEquals("slow frame", slowFrame.get("name").getAsString());
+        assertEquals(40000, slowFrame.get("dur").getAsLong());
+        assertEquals("frozen frame", frozenFrame.get("name").getAsString());
+        assertEquals(900000, frozenFrame.get("dur").getAsLong());
+        assertEquals(slowFrame.get("ts").getAsLong() + 50000, frozenFrame.get("ts").getAsLong());
+        assertEquals(0, frozenFrame.get("tid").getAsLong());
+        assertEquals(3, ClientMetrics.counter("frames.total") - frames);
+        assertEquals(2, ClientMetrics.counter("frames.slow") - slow);
+        assertEquals(1, ClientMetrics.counter("frames.frozen") - frozen);
+    }
+
+    /**
+     * Returns the exported events whose name starts with a prefix, oldest
+     * first.
+     */
+    private static List<JsonObject> eventsNamed(String prefix) {
+        JsonObject trace = new JsonParser().parse(InteractionTracer.exportTraceEvents()).getAsJsonObject();
+        List<JsonObject> named = new ArrayList<>();
+        for (JsonObject event : eventsOf(trace)) {
+            if (event.get("name").getAsString().startsWith(prefix)) {
+                named.add(event);
+            }
+        }
+        return named;
+    }
+
+    private static List<JsonObject> eventsOf(JsonObject trace) {
+        JsonArray array = trace.getAsJsonArray("traceEvents");
+        List<JsonObject> events = new ArrayList<>();
+        for (JsonElement element : array) {
+            events.add(element.getAsJsonObject());
+        }
+        return events;
+    }
+}
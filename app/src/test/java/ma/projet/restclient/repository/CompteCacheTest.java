@@ -0,0 +1,189 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.entities.Compte;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Tests of CompteCache with a loader completed by hand: time-to-live,
+ * negative entries, single-flight loading and invalidation racing a load.
+ */
+public class CompteCacheTest {
+    private final ManualLoader loader = new ManualLoader();
+
+    @Test
+    public void servesAFreshEntryAndReloadsOnceExpired() throws Exception {
+        CompteCache cache = new CompteCache(10, 100, 100);
+        Outcomes first = get(cache, 1L);
+        loader.succeed(0, compte(1, 10));
+
+        Outcomes second = get(cache, 1L);
+        assertEquals(1, loader.calls.size());
+        assertEquals(10, second.compte(0).getSolde(), 0);
+        assertEquals(10, first.compte(0).getSolde(), 0);
+
+        Thread.sleep(150);
+        get(cache, 1L);
+        assertEquals(2, loader.calls.size());
+    }
+
+    @Test
+    public void cachesANotFoundForTheNegativeLifetime() throws Exception {
+        CompteCache cache = new CompteCache(10, 60000, 100);
+        get(cache, 1L);
+        loader.notFound(0);
+
+        Outcomes cached = get(cache, 1L);
+        assertEquals(1, loader.calls.size());
+        assertEquals(404, cached.responses.get(0).code());
+
+        Thread.sleep(150);
+        get(cache, 1L);
+        assertEquals(2, loader.calls.size());
+    }
+
+    @Test
+    public void concurrentLookupsShareOneLoad() {
+        CompteCache cache = new CompteCache(10, 60000, 1000);
+        Outcomes first = get(cache, 1L);
+        Outcomes second = get(cache, 1L);
+        cache.prefetch(Arrays.asList(1L), loader);
+        assertEquals(1, loader.calls.size());
+
+        loader.succeed(0, compte(1, 10));
+
+        assertEquals(10, first.compte(0).getSolde(), 0);
+        assertEquals(10, second.compte(0).getSolde(), 0);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void callersReceiveCopies() {
+        CompteCache cache = new CompteCache(10, 60000, 1000);
+        get(cache, 1L);
+        loader.succeed(0, compte(1, 10));
+
+        Compte edited = get(cache, 1L).compte(0);
+        edited.setSolde(99);
+
+        Compte again = get(cache, 1L).compte(0);
+        assertNotSame(edited, again);
+        assertEquals(10, again.getSolde(), 0);
+    }
+
+    @Test
+    public void aLoadInvalidatedInFlightIsDeliveredButNotCached() {
+        CompteCache cache = new CompteCache(10, 60000, 1000);
+        Outcomes before = get(cache, 1L);
+        cache.invalidate(1L);
+
+        // A lookup after the invalidation must not join the stale load
+        Outcomes after = get(cache, 1L);
+        assertEquals(2, loader.calls.size());
+
+        loader.succeed(0, compte(1, 10));
+        assertEquals(10, before.compte(0).getSolde(), 0);
+        assertEquals(0, after.responses.size());
+        assertEquals(0, cache.size());
+
+        loader.succeed(1, compte(1, 20));
+        assertEquals(20, after.compte(0).getSolde(), 0);
+        assertEquals(20, get(cache, 1L).compte(0).getSolde(), 0);
+        assertEquals(2, loader.calls.size());
+    }
+
+    @Test
+    public void aLoadInFlightDuringClearIsNotCached() {
+        CompteCache cache = new CompteCache(10, 60000, 1000);
+        cache.prefetch(Arrays.asList(1L, 2L), loader);
+        cache.clear();
+
+        loader.succeed(0, compte(1, 10));
+        loader.notFound(1);
+
+        assertEquals(0, cache.size());
+        get(cache, 1L);
+        assertEquals(3, loader.calls.size());
+    }
+
+    @Test
+    public void aFailedLoadIsNotCached() {
+        CompteCache cache = new CompteCache(10, 60000, 1000);
+        Outcomes outcomes = get(cache, 1L);
+        loader.calls.get(0).onFailure(null, new IOException("offline"));
+
+        assertEquals(1, outcomes.failures.size());
+        assertEquals(0, cache.size());
+        get(cache, 1L);
+        assertEquals(2, loader.calls.size());
+    }
+
+    private Outcomes get(CompteCache cache, Long id) {
+        Outcomes outcomes = new Outcomes();
+        cache.get(id, RequestPriority.VISIBLE, loader, outcomes);
+        return outcomes;
+    }
+
+    private static Compte compte(long id, double solde) {
+        return new Compte(id, solde, "COURANT", "2025-11-09");
+    }
+
+    /**
+     * Loader recording each call, completed by the test.
+     */
+    private static final class ManualLoader implements CompteCache.Loader {
+        private final List<Callback<Compte>> calls = new ArrayList<>();
+
+        @Override
+        public void load(Long id, RequestPriority priority, Callback<Compte> callback) {
+            calls.add(callback);
+        }
+
+        void succeed(int call, Compte compte) {
+            calls.get(call).onResponse(null, Response.success(compte));
+        }
+
+        void notFound(int call) {
+            calls.get(call).onResponse(null, Response.<Compte>error(404, ResponseBody.create(null, "")));
+        }
+    }
+
+    /**
+     * Callback recording what it received.
+     */
+    private static final class Outcomes implements Callback<Compte> {
+        private final List<Response<Compte>> responses = new ArrayList<>();
+        private final List<Throwable> failures = new ArrayList<>();
+
+        @Override
+        public void onResponse(Call<Compte> call, Response<Compte> response) {
+            responses.add(response);
+        }
+
+        @Override
+        public void onFailure(Call<Compte> call, Throwable t) {
+            failures.add(t);
+        }
+
+        Compte compte(int index) {
+            Compte compte = responses.get(index).body();
+            assertNotNull(compte);
+            return compte;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.LocalCompteServer;
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.entities.Compte;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Retrofit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of CompteChangeStream against the in-process LocalCompteServer.
+ */
+public class CompteChangeStreamTest {
+    private LocalCompteServer server;
+    private CompteChangeStream stream;
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Boolean> connections = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCompteServer();
+        CompteService service = new Retrofit.Builder()
+                .baseUrl(server.baseUrl())
+                .build()
+                .create(CompteService.class);
+        stream = new CompteChangeStream(service, new CompteChangeStream.Listener() {
+            @Override
+            public void onConnected(boolean resumed) {
+                connections.add(resumed);
+            }
+
+            @Override
+            public void onUpsert(Compte compte) {
+                received.add("upsert:" + compte.getId());
+            }
+
+            @Override
+            public void onDelete(Long id) {
+                received.add("delete:" + id);
+            }
+
+            @Override
+            public void onResyncRequired() {
+                received.add("resync");
+            }
+        });
+        stream.setReconnectDelay(20, 100);
+    }
+
+    @After
+    public void tearDown() {
+        stream.stop();
+        server.close();
+    }
+
+    @Test
+    public void appliesPushedChangesIncrementally() throws Exception {
+        stream.start();
+        assertTrue(server.awaitSubscribers(1, 5000));
+
+        server.publishUpsert(new Compte(1L, 100.0, "COURANT", "2025-11-09"));
+        server.publishDelete(1L);
+
+        assertEquals("upsert:1", received.poll(5, TimeUnit.SECONDS));
+        assertEquals("delete:1", received.poll(5, TimeUnit.SECONDS));
+        // The cursor advances once the listener has returned
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!"2".equals(stream.getLastEventId()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("2", stream.getLastEventId());
+    }
+
+    @Test
+    public void keepsCursorAcrossStopAndStart() throws Exception {
+        stream.start();
+        assertEquals(Boolean.FALSE, connections.poll(5, TimeUnit.SECONDS));
+        server.publishUpsert(new Compte(1L, 100.0, "COURANT", "2025-11-09"));
+        assertEquals("upsert:1", received.poll(5, TimeUnit.SECONDS));
+
+        stream.stop();
+        server.publishUpsert(new Compte(2L, 250.0, "EPARGNE", "2025-11-09"));
+        stream.start();
+
+        assertEquals(Boolean.TRUE, connections.poll(5, TimeUnit.SECONDS));
+        assertEquals("upsert:2", received.poll(5, TimeUnit.SECONDS));
+        assertNull("events must be delivered exactly once", received.poll(200, TimeUnit.MILLISECONDS));
+        assertNull("a single thread reads the stream", connections.poll(200, TimeUnit.MILLISECONDS));
+        List<String> cursors = server.getConnectionCursors();
+        assertEquals("1", cursors.get(cursors.size() - 1));
+    }
+
+    @Test
+    public void resumesFromCursorAfterReconnect() throws Exception {
+        stream.start();
+        assertTrue(server.awaitSubscribers(1, 5000));
+        server.publishUpsert(new Compte(1L, 100.0, "COURANT", "2025-11-09"));
+        assertEquals("upsert:1", received.poll(5, TimeUnit.SECONDS));
+
+        server.dropConnections();
+        server.publishUpsert(new Compte(2L, 250.0, "EPARGNE", "2025-11-09"));
+
+        assertEquals("upsert:2", received.poll(5, TimeUnit.SECONDS));
+        assertNull("events must be delivered exactly once", received.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void reconnectsWithoutCursorWhenItExpired() throws Exception {
+        stream.start();
+        assertEquals(Boolean.FALSE, connections.poll(5, TimeUnit.SECONDS));
+        server.publishUpsert(new Compte(1L, 100.0, "COURANT", "2025-11-09"));
+        assertEquals("upsert:1", received.poll(5, TimeUnit.SECONDS));
+
+        server.expireCursors();
+        server.dropConnections();
+
+        // Reported once, as a connection that did not resume
+        assertEquals(Boolean.FALSE, connections.poll(5, TimeUnit.SECONDS));
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+        assertNull(server.getConnectionCursors().get(server.getConnectionCursors().size() - 1));
+    }
+
+    @Test
+    public void skipsEventsWithoutPayload() throws Exception {
+        stream.start();
+        assertTrue(server.awaitSubscribers(1, 5000));
+
+        server.publishFrame("event: upsert\ndata:\n\n");
+        server.publishFrame("event: delete\ndata: null\n\n");
+        server.publishFrame("event: upsert\ndata: [1, 2]\n\n");
+        server.publishFrame("event: delete\ndata: {\"solde\": 5}\n\n");
+        server.publishUpsert(new Compte(1L, 100.0, "COURANT", "2025-11-09"));
+
+        assertEquals("upsert:1", received.poll(5, TimeUnit.SECONDS));
+        assertTrue(stream.isConnected());
+    }
+
+    @Test
+    public void ignoresNonPositiveRetryHints() throws Exception {
+        stream.start();
+        assertTrue(server.awaitSubscribers(1, 5000));
+        assertEquals(Boolean.FALSE, connections.poll(5, TimeUnit.SECONDS));
+
+        server.publishFrame("retry: -5\n\n");
+        server.publishFrame("retry: 0\n\n");
+        server.publishUpsert(new Compte(1L, 100.0, "COURANT", "2025-11-09"));
+        assertEquals("upsert:1", received.poll(5, TimeUnit.SECONDS));
+        server.dropConnections();
+
+        // Reconnects after the configured delay, the stream thread still alive
+        assertEquals(Boolean.TRUE, connections.poll(5, TimeUnit.SECONDS));
+    }
+}
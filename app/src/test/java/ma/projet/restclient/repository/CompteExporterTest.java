@@ -0,0 +1,199 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.LocalCompteServer;
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.RequestScheduler;
+import ma.projet.restclient.entities.Compte;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of CompteExporter against the in-process LocalCompteServer: CSV
+ * round trip through CompteImporter's parser, memory use independent of the
+ * number of accounts, and cleanup after a failure.
+ */
+public class CompteExporterTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Heap growth allowed during an export, far below the size of the list */
+    private static final long MAX_HEAP_GROWTH_BYTES = 16L * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalCompteServer server;
+    private RequestScheduler scheduler;
+    private CompteExporter exporter;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCompteServer();
+        CompteService service = new Retrofit.Builder()
+                .baseUrl(server.baseUrl())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+        scheduler = new RequestScheduler();
+        exporter = new CompteExporter(service, scheduler);
+        file = new File(folder.getRoot(), "comptes.csv");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void exportsCsvReadableByTheImporterInConstantMemory() throws Exception {
+        final int count = 300000;
+        server.setAccountCount(count);
+        final Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        final long baseline = runtime.totalMemory() - runtime.freeMemory();
+        final long[] peak = new long[1];
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onProgress(long rows, double rowsPerSecond) {
+                System.gc();
+                peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory() - baseline);
+            }
+        };
+
+        exporter.export(file, CompteExporter.Format.CSV, listener);
+
+        assertEquals(Long.valueOf(count), listener.outcomes.poll(1, TimeUnit.MINUTES));
+        assertTrue("heap grew by " + peak[0], peak[0] < MAX_HEAP_GROWTH_BYTES);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            assertEquals("id,solde,type,dateCreation", reader.readLine());
+            String line;
+            long id = 0;
+            while ((line = reader.readLine()) != null) {
+                id++;
+                Compte compte = CompteImporter.parseCsvRow(line);
+                assertNotNull(line, compte);
+                assertEquals(id * 10.0, compte.getSolde(), 0);
+                assertEquals(id % 2 == 0 ? "COURANT" : "EPARGNE", compte.getType());
+                assertEquals("2025-11-09", compte.getDateCreation());
+            }
+            assertEquals(count, id);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void releasesTheSchedulerSlotDuringTheDownload() throws Exception {
+        server.setAccountCount(50000);
+        PausingListener listener = new PausingListener();
+
+        exporter.export(file, CompteExporter.Format.JSON, listener);
+
+        assertNotNull(listener.firstProgress.poll(1, TimeUnit.MINUTES));
+        assertEquals(0, scheduler.runningCallsCount());
+        listener.resume.add(Boolean.TRUE);
+        assertEquals(Long.valueOf(50000), listener.outcomes.poll(1, TimeUnit.MINUTES));
+    }
+
+    @Test
+    public void removesTheTemporaryFileOnFailure() throws Exception {
+        server.setAccountCount(20000);
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onProgress(long rows, double rowsPerSecond) {
+                throw new IllegalStateException("cancelled");
+            }
+        };
+
+        exporter.export(file, CompteExporter.Format.CSV, listener);
+
+        Object outcome = listener.outcomes.poll(1, TimeUnit.MINUTES);
+        assertTrue(String.valueOf(outcome), outcome instanceof IllegalStateException);
+        assertFalse(file.exists());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void quotesFieldsThatNeedIt() throws Exception {
+        Compte compte = new Compte(7L, 12.5, "COURANT, \"pro\"", "2025-11-09\nmatin");
+        StringWriter out = new StringWriter();
+
+        CompteExporter.writeCsvRow(out, compte);
+
+        String line = out.toString();
+        assertEquals("7,12.5,\"COURANT, \"\"pro\"\"\",\"2025-11-09\nmatin\"\n", line);
+        Compte parsed = CompteImporter.parseCsvRow(line.substring(0, line.length() - 1));
+        assertEquals(12.5, parsed.getSolde(), 0);
+        assertEquals(compte.getType(), parsed.getType());
+        assertEquals(compte.getDateCreation(), parsed.getDateCreation());
+        assertNull(CompteImporter.parseCsvRow("1,\"COURANT,2025-11-09"));
+        assertNull(CompteImporter.parseCsvRow("1,\"COURANT\"x,2025-11-09"));
+    }
+
+    /**
+     * Listener queuing the row count on completion, or the failure.
+     */
+    private static class RecordingListener implements TransferListener {
+        final BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onProgress(long rows, double rowsPerSecond) {
+        }
+
+        @Override
+        public void onComplete(long rows, long failedRows, double rowsPerSecond) {
+            outcomes.add(rows);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            outcomes.add(t);
+        }
+    }
+
+    /**
+     * Listener pausing the export at its first progress report.
+     */
+    private static final class PausingListener extends RecordingListener {
+        final BlockingQueue<Long> firstProgress = new LinkedBlockingQueue<>();
+        final BlockingQueue<Boolean> resume = new LinkedBlockingQueue<>();
+        private boolean paused = false;
+
+        @Override
+        public void onProgress(long rows, double rowsPerSecond) {
+            if (!paused) {
+                paused = true;
+                firstProgress.add(rows);
+                try {
+                    resume.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.LocalCompteServer;
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.RequestScheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests of CompteImporter's CSV reader against the in-process
+ * LocalCompteServer: quoted fields spanning lines, and recovery from a stray
+ * quote.
+ */
+public class CompteImporterTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalCompteServer server;
+    private CompteImporter importer;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCompteServer();
+        CompteService service = new Retrofit.Builder()
+                .baseUrl(server.baseUrl())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+        importer = new CompteImporter(service, new RequestScheduler(), 8);
+        file = new File(folder.getRoot(), "comptes.csv");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void readsAQuotedFieldSpanningLines() throws Exception {
+        write("id,solde,type,dateCreation\n"
+                + "1,10.0,\"COURANT\n\"\"pro\"\"\",2025-11-09\n"
+                + "2,20.0,EPARGNE,2025-11-09\n");
+
+        assertEquals("2 imported, 0 failed", runImport());
+        assertEquals(2, server.getMutations().size());
+    }
+
+    @Test
+    public void rejectsAStrayQuoteAndKeepsTheFollowingRows() throws Exception {
+        int valid = 5000;
+        StringBuilder csv = new StringBuilder("solde,type,dateCreation\n");
+        csv.append("10.0,\"COURANT,2025-11-09\n");
+        for (int i = 1; i <= valid; i++) {
+            csv.append(i).append(".0,EPARGNE,2025-11-09\n");
+        }
+        write(csv.toString());
+
+        assertEquals(valid + " imported, 1 failed", runImport());
+        assertEquals(valid, server.getMutations().size());
+    }
+
+    @Test
+    public void rejectsAStrayQuoteOnTheLastLines() throws Exception {
+        write("10.0,COURANT,2025-11-09\n"
+                + "20.0,\"EPARGNE,2025-11-09\n"
+                + "30.0,COURANT,2025-11-09\n");
+
+        assertEquals("2 imported, 1 failed", runImport());
+    }
+
+    @Test
+    public void boundsARecordWithoutNewlinesInQuotes() throws Exception {
+        StringBuilder csv = new StringBuilder("10.0,\"");
+        while (csv.length() <= CompteImporter.MAX_RECORD_CHARS) {
+            csv.append("0123456789abcdef");
+        }
+        csv.append("\n\",2025-11-09\n20.0,COURANT,2025-11-09\n");
+        write(csv.toString());
+
+        // The oversized record is cut at its first line, the closing one is invalid
+        assertEquals("1 imported, 2 failed", runImport());
+    }
+
+    private void write(String content) throws Exception {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Imports the file.
+     *
+     * @return "n imported, m failed", or the failure
+     */
+    private Object runImport() throws InterruptedException {
+        final BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+        importer.start(file, new TransferListener() {
+            @Override
+            public void onProgress(long rows, double rowsPerSecond) {
+            }
+
+            @Override
+            public void onComplete(long rows, long failedRows, double rowsPerSecond) {
+                outcomes.add(rows + " imported, " + failedRows + " failed");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                outcomes.add(t);
+            }
+        });
+        Object outcome = outcomes.poll(1, TimeUnit.MINUTES);
+        assertNotNull("import timed out", outcome);
+        return outcome;
+    }
+}
@@ -0,0 +1,236 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.LocalCompteServer;
+import ma.projet.restclient.api.CompteQuery;
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.config.RequestScheduler;
+import ma.projet.restclient.entities.Compte;
+import ma.projet.restclient.metrics.ClientMetrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of CompteRepository against the in-process LocalCompteServer. The
+ * query of searchComptes is pushed down to the server, re-applied when the
+ * server ignores it, and evaluated on the device when the server rejects it.
+ * Mutations are journaled in the outbox only when they cannot have reached
+ * the server, and queue behind an undelivered mutation of the same account.
+ */
+public class CompteRepositoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Even ids from 20 to 40, i.e. balances 200 to 400, by descending balance */
+    private static final List<Long> EXPECTED = Arrays.asList(40L, 38L, 36L, 34L, 32L, 30L, 28L, 26L, 24L, 22L, 20L);
+
+    private LocalCompteServer server;
+    private CompteRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCompteServer();
+        server.setAccountCount(100);
+        CompteService service = new Retrofit.Builder()
+                .baseUrl(server.baseUrl())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+        repository = new CompteRepository("JSON", service, new RequestScheduler());
+    }
+
+    @After
+    public void tearDown() {
+        MutationOutbox.setInstance(null);
+        server.close();
+    }
+
+    @Test
+    public void pushesTheQueryDownToTheServer() throws Exception {
+        long fallbacks = ClientMetrics.counter("query.fallbacks");
+        long ignored = ClientMetrics.counter("query.pushdown.ignored");
+
+        assertEquals(EXPECTED, ids(search()));
+
+        assertEquals(1, server.getListQueries().size());
+        String sent = server.getListQueries().get(0);
+        assertTrue(sent, sent.contains("type=COURANT") && sent.contains("soldeMin=200.0")
+                && sent.contains("soldeMax=400.0") && sent.contains("sort=solde,desc"));
+        assertEquals(fallbacks, ClientMetrics.counter("query.fallbacks"));
+        assertEquals(ignored, ClientMetrics.counter("query.pushdown.ignored"));
+    }
+
+    @Test
+    public void appliesTheQueryWhenTheServerIgnoresIt() throws Exception {
+        server.setFiltersIgnored(true);
+        long ignored = ClientMetrics.counter("query.pushdown.ignored");
+
+        assertEquals(EXPECTED, ids(search()));
+
+        assertEquals(1, server.getListQueries().size());
+        assertEquals(ignored + 1, ClientMetrics.counter("query.pushdown.ignored"));
+    }
+
+    @Test
+    public void fallsBackToTheFullListWhenTheServerRejectsTheQuery() throws Exception {
+        for (int status : new int[] { 400, 404, 405, 501 }) {
+            server.setFilterFailure(status);
+            long fallbacks = ClientMetrics.counter("query.fallbacks");
+            int requests = server.getListQueries().size();
+
+            assertEquals("HTTP " + status, EXPECTED, ids(search()));
+
+            List<String> queries = server.getListQueries();
+            assertEquals(requests + 2, queries.size());
+            assertEquals("", queries.get(requests + 1));
+            assertEquals(fallbacks + 1, ClientMetrics.counter("query.fallbacks"));
+        }
+    }
+
+    @Test
+    public void forwardsOtherErrorsWithoutFallback() throws Exception {
+        server.setFilterFailure(503);
+
+        BlockingQueue<Object> outcomes = searchOutcomes();
+
+        Object outcome = outcomes.poll(10, TimeUnit.SECONDS);
+        assertEquals(503, ((Response<?>) outcome).code());
+        assertEquals(1, server.getListQueries().size());
+    }
+
+    @Test
+    public void anUpdateQueuesBehindTheOneStillInTheOutbox() throws Exception {
+        MutationOutbox outbox = new MutationOutbox(folder.newFile("outbox.journal"));
+        MutationOutbox.setInstance(outbox);
+        // Journaled while offline, not delivered yet
+        outbox.record(PendingMutation.Operation.UPDATE, 7L, new Compte(7L, 100, "COURANT", "2025-11-09"));
+
+        final BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+        repository.updateCompte(7L, new Compte(7L, 200, "COURANT", "2025-11-09"), outcomeOf(outcomes));
+
+        assertTrue(outcomes.poll(10, TimeUnit.SECONDS) instanceof OfflineQueuedException);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (outbox.depth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, outbox.depth());
+        assertEquals(Arrays.asList("PUT 7"), server.getMutations());
+        assertEquals(200, server.getStored(7).getSolde(), 0);
+    }
+
+    @Test
+    public void journalsACreationOnlyWhenTheServerIsUnreachable() throws Exception {
+        MutationOutbox outbox = new MutationOutbox(folder.newFile("outbox.journal"));
+        MutationOutbox.setInstance(outbox);
+        // Accepts connections (backlog) but never answers
+        ServerSocket silent = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        // Refuses connections
+        ServerSocket closed = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        int closedPort = closed.getLocalPort();
+        closed.close();
+        try {
+            BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+            repositoryAt(silent.getLocalPort()).addCompte(new Compte(null, 100, "COURANT", "2025-11-09"),
+                    outcomeOf(outcomes));
+            Object timedOut = outcomes.poll(10, TimeUnit.SECONDS);
+            assertTrue(String.valueOf(timedOut), timedOut instanceof SocketTimeoutException);
+            assertEquals(0, outbox.depth());
+
+            repositoryAt(closedPort).addCompte(new Compte(null, 100, "COURANT", "2025-11-09"),
+                    outcomeOf(outcomes));
+            Object refused = outcomes.poll(10, TimeUnit.SECONDS);
+            assertTrue(String.valueOf(refused), refused instanceof OfflineQueuedException);
+            assertEquals(1, outbox.depth());
+        } finally {
+            silent.close();
+        }
+    }
+
+    private static CompteRepository repositoryAt(int port) {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .readTimeout(200, TimeUnit.MILLISECONDS)
+                .build();
+        CompteService service = new Retrofit.Builder()
+                .baseUrl("http://127.0.0.1:" + port + "/")
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+        return new CompteRepository("JSON", service, new RequestScheduler());
+    }
+
+    private static <T> Callback<T> outcomeOf(final BlockingQueue<Object> outcomes) {
+        return new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                outcomes.add(response);
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                outcomes.add(t);
+            }
+        };
+    }
+
+    private List<Compte> search() throws InterruptedException {
+        Object outcome = searchOutcomes().poll(10, TimeUnit.SECONDS);
+        assertNotNull(outcome);
+        if (!(outcome instanceof List)) {
+            throw new AssertionError("search failed: " + outcome);
+        }
+        @SuppressWarnings("unchecked")
+        List<Compte> comptes = (List<Compte>) outcome;
+        return comptes;
+    }
+
+    private BlockingQueue<Object> searchOutcomes() {
+        final BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+        CompteQuery query = new CompteQuery().type("COURANT").solde(200.0, 400.0).sortBy("solde", true);
+        repository.searchComptes(query, RequestPriority.VISIBLE, new Callback<List<Compte>>() {
+            @Override
+            public void onResponse(Call<List<Compte>> call, Response<List<Compte>> response) {
+                outcomes.add(response.isSuccessful() ? response.body() : response);
+            }
+
+            @Override
+            public void onFailure(Call<List<Compte>> call, Throwable t) {
+                outcomes.add(t);
+            }
+        });
+        return outcomes;
+    }
+
+    private static List<Long> ids(List<Compte> comptes) {
+        List<Long> ids = new ArrayList<>();
+        for (Compte compte : comptes) {
+            ids.add(compte.getId());
+        }
+        return ids;
+    }
+}
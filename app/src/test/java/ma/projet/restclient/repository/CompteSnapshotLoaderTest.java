@@ -0,0 +1,137 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.LocalCompteServer;
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.FormatNegotiator;
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.config.RequestScheduler;
+import ma.projet.restclient.entities.Compte;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of CompteSnapshotLoader against the in-process LocalCompteServer:
+ * the list is streamed into the snapshot file, which is only replaced by a
+ * complete list, and each load is reported to the format negotiator.
+ */
+public class CompteSnapshotLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalCompteServer server;
+    private FormatNegotiator negotiator;
+    private CompteSnapshotLoader loader;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCompteServer();
+        CompteService service = new Retrofit.Builder()
+                .baseUrl(server.baseUrl())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+        negotiator = new FormatNegotiator();
+        negotiator.setReevaluation(1000, Long.MAX_VALUE);
+        loader = new CompteSnapshotLoader(service, new RequestScheduler(), negotiator);
+        file = new File(folder.getRoot(), "comptes.snapshot");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void streamsTheListIntoTheSnapshotFile() throws Exception {
+        CompteSnapshot.write(file, Arrays.asList(new Compte(1L, 5, "COURANT", "2025-11-09")));
+        server.setAccountCount(20000);
+
+        Object outcome = load();
+
+        CompteSnapshot snapshot = (CompteSnapshot) outcome;
+        assertEquals(20000, snapshot.size());
+        for (int index : new int[] { 0, 1, 9999, 19999 }) {
+            Compte compte = snapshot.get(index);
+            long id = index + 1;
+            assertEquals(Long.valueOf(id), compte.getId());
+            assertEquals(id * 10.0, compte.getSolde(), 0);
+            assertEquals(id % 2 == 0 ? "COURANT" : "EPARGNE", compte.getType());
+        }
+        assertEquals(20000, CompteSnapshot.open(file).size());
+    }
+
+    @Test
+    public void keepsThePreviousSnapshotOnHttpError() throws Exception {
+        CompteSnapshot.write(file, Arrays.asList(new Compte(1L, 5, "COURANT", "2025-11-09")));
+        server.setListFailure(503);
+
+        Object outcome = load();
+
+        assertEquals(503, ((Response<?>) outcome).code());
+        assertEquals(1, CompteSnapshot.open(file).size());
+        assertFalse(new File(folder.getRoot(), "comptes.snapshot.tmp").exists());
+    }
+
+    @Test
+    public void autoConvergesOnTheCheaperFormatWithStreamedLoads() throws Exception {
+        server.setAccountCount(5000);
+        assertEquals("JSON", negotiator.choose());
+
+        // Streamed loads are the only JSON list reads, they must be measured
+        assertEquals(5000, ((CompteSnapshot) load()).size());
+        assertEquals("XML", negotiator.choose());
+        assertTrue(negotiator.getLastReason(), negotiator.getLastReason().startsWith("unmeasured"));
+
+        // An XML list costing far more than any local streamed load
+        negotiator.record("XML", 5000, 1000000, 5000000000L, 5000000000L);
+        assertEquals("JSON", negotiator.choose());
+        assertTrue(negotiator.getLastReason(), negotiator.getLastReason().startsWith("cheaper"));
+        load();
+        assertEquals("JSON", negotiator.choose());
+    }
+
+    /**
+     * Runs one load into the file.
+     *
+     * @return The snapshot, the error response or the failure
+     */
+    private Object load() throws InterruptedException {
+        final BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+        loader.load(file, RequestPriority.VISIBLE, new Callback<CompteSnapshot>() {
+            @Override
+            public void onResponse(Call<CompteSnapshot> call, Response<CompteSnapshot> response) {
+                outcomes.add(response.isSuccessful() ? response.body() : response);
+            }
+
+            @Override
+            public void onFailure(Call<CompteSnapshot> call, Throwable t) {
+                outcomes.add(t);
+            }
+        });
+        Object outcome = outcomes.poll(10, TimeUnit.SECONDS);
+        assertNotNull(outcome);
+        return outcome;
+    }
+}
@@ -0,0 +1,70 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.entities.Compte;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of CompteSnapshot: write then open round trips.
+ */
+public class CompteSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsEveryField() throws Exception {
+        File file = folder.newFile("comptes.snapshot");
+        CompteSnapshot.write(file, Arrays.asList(
+                new Compte(1L, 100.5, "COURANT", "2025-11-09"),
+                new Compte(null, -3.0, null, null)));
+
+        CompteSnapshot snapshot = CompteSnapshot.open(file);
+        assertEquals(2, snapshot.size());
+        Compte first = snapshot.get(0);
+        assertEquals(Long.valueOf(1), first.getId());
+        assertEquals(100.5, first.getSolde(), 0);
+        assertEquals("COURANT", first.getType());
+        assertEquals("2025-11-09", first.getDateCreation());
+        Compte second = snapshot.get(1);
+        assertNull(second.getId());
+        assertEquals(-3.0, second.getSolde(), 0);
+        assertNull(second.getType());
+        assertNull(second.getDateCreation());
+    }
+
+    @Test
+    public void truncatesLongTextOnACharacterBoundary() throws Exception {
+        File file = folder.newFile("comptes.snapshot");
+        CompteSnapshot.write(file, Arrays.asList(
+                // 16 ASCII bytes fit, the 17th is cut
+                new Compte(1L, 0, "ABCDEFGHIJKLMNOPQ", "2025-11-09"),
+                // 2 + 5 * 3 bytes: the last euro sign would straddle the limit
+                new Compte(2L, 0, "ab€€€€€", "ééééééééé"),
+                // 4-byte characters: four fit exactly
+                new Compte(3L, 0, "😀😀😀😀😀", "x")));
+
+        CompteSnapshot snapshot = CompteSnapshot.open(file);
+        assertEquals("ABCDEFGHIJKLMNOP", snapshot.get(0).getType());
+        assertEquals("ab€€€€", snapshot.get(1).getType());
+        assertEquals("éééééééé", snapshot.get(1).getDateCreation());
+        assertEquals("😀😀😀😀", snapshot.get(2).getType());
+        assertEquals("x", snapshot.get(2).getDateCreation());
+    }
+
+    @Test
+    public void rejectsMissingOrForeignFiles() throws Exception {
+        assertNull(CompteSnapshot.open(new File(folder.getRoot(), "missing")));
+        File foreign = folder.newFile("foreign");
+        Files.write(foreign.toPath(), new byte[64]);
+        assertNull(CompteSnapshot.open(foreign));
+    }
+}
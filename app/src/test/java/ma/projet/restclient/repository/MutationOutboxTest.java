@@ -0,0 +1,276 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.LocalCompteServer;
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.RequestScheduler;
+import ma.projet.restclient.entities.Compte;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of MutationOutbox: coalescing, journal replay and compaction, and
+ * delivery against the in-process LocalCompteServer.
+ */
+public class MutationOutboxTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File journal;
+    private LocalCompteServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        journal = new File(folder.getRoot(), "outbox.journal");
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void createUpdateDeleteCoalescesToNothing() throws Exception {
+        MutationOutbox outbox = new MutationOutbox(journal);
+        PendingMutation created = outbox.record(PendingMutation.Operation.CREATE, null, compte(null, 100));
+        outbox.record(PendingMutation.Operation.UPDATE, created.getId(), compte(created.getId(), 150));
+        assertEquals(1, outbox.depth());
+        assertEquals(PendingMutation.Operation.CREATE, outbox.pendingMutations().get(0).getOperation());
+        assertEquals(150, outbox.pendingMutations().get(0).getCompte().getSolde(), 0);
+
+        outbox.record(PendingMutation.Operation.DELETE, created.getId(), null);
+        assertEquals(0, outbox.depth());
+        assertEquals(0, new MutationOutbox(journal).depth());
+    }
+
+    @Test
+    public void updatesOfOneAccountKeepTheLast() throws Exception {
+        MutationOutbox outbox = new MutationOutbox(journal);
+        outbox.record(PendingMutation.Operation.UPDATE, 7L, compte(7L, 10));
+        outbox.record(PendingMutation.Operation.UPDATE, 8L, compte(8L, 20));
+        outbox.record(PendingMutation.Operation.UPDATE, 7L, compte(7L, 30));
+
+        List<PendingMutation> replayed = new MutationOutbox(journal).pendingMutations();
+        assertEquals(2, replayed.size());
+        assertEquals(Long.valueOf(8), replayed.get(0).getId());
+        assertEquals(Long.valueOf(7), replayed.get(1).getId());
+        assertEquals(30, replayed.get(1).getCompte().getSolde(), 0);
+    }
+
+    @Test
+    public void replaysCompleteRecordsOfATruncatedJournal() throws Exception {
+        MutationOutbox outbox = new MutationOutbox(journal);
+        outbox.record(PendingMutation.Operation.UPDATE, 1L, compte(1L, 10));
+        outbox.record(PendingMutation.Operation.UPDATE, 2L, compte(2L, 20));
+        // Crash in the middle of the second record
+        RandomAccessFile file = new RandomAccessFile(journal, "rw");
+        try {
+            file.setLength(file.length() - 10);
+        } finally {
+            file.close();
+        }
+
+        MutationOutbox recovered = new MutationOutbox(journal);
+        assertEquals(1, recovered.depth());
+        assertEquals(Long.valueOf(1), recovered.pendingMutations().get(0).getId());
+
+        // A record appended after recovery does not extend the torn one
+        recovered.record(PendingMutation.Operation.UPDATE, 3L, compte(3L, 30));
+        List<PendingMutation> replayed = new MutationOutbox(journal).pendingMutations();
+        assertEquals(2, replayed.size());
+        assertEquals(Long.valueOf(3), replayed.get(1).getId());
+    }
+
+    @Test
+    public void compactionKeepsOnlyLiveRecords() throws Exception {
+        MutationOutbox outbox = new MutationOutbox(journal);
+        for (int i = 0; i < 10; i++) {
+            outbox.record(PendingMutation.Operation.UPDATE, 1L, compte(1L, i));
+        }
+        outbox.record(PendingMutation.Operation.DELETE, 2L, null);
+        List<PendingMutation> before = outbox.pendingMutations();
+
+        outbox.compact();
+
+        List<String> lines = Files.readAllLines(journal.toPath(), UTF_8);
+        assertEquals(2, lines.size());
+        for (String line : lines) {
+            assertTrue(line, line.startsWith("M\t"));
+        }
+        List<PendingMutation> replayed = new MutationOutbox(journal).pendingMutations();
+        assertEquals(before.toString(), replayed.toString());
+    }
+
+    @Test
+    public void deliversOfflineCreationOnceWithItsLatestBody() throws Exception {
+        server = new LocalCompteServer();
+        CompteService service = new Retrofit.Builder()
+                .baseUrl(server.baseUrl())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+        MutationOutbox outbox = new MutationOutbox(journal);
+        final Long[] delivered = new Long[2];
+        final CountDownLatch latch = new CountDownLatch(1);
+        outbox.addListener(new MutationOutbox.Listener() {
+            @Override
+            public void onDelivered(PendingMutation mutation, Long serverId, Compte result) {
+                delivered[0] = mutation.getId();
+                delivered[1] = serverId;
+                latch.countDown();
+            }
+
+            @Override
+            public void onDropped(PendingMutation mutation) {
+            }
+        });
+        PendingMutation created = outbox.record(PendingMutation.Operation.CREATE, null, compte(null, 100));
+        outbox.record(PendingMutation.Operation.UPDATE, created.getId(), compte(created.getId(), 150));
+        assertTrue(created.getId() < 0);
+
+        outbox.flush(service, new RequestScheduler());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(created.getId(), delivered[0]);
+        assertEquals(Long.valueOf(1000), delivered[1]);
+        assertEquals(Arrays.asList("POST"), server.getMutations());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (outbox.depth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, new MutationOutbox(journal).depth());
+    }
+
+    @Test
+    public void reportsServerIdOfReplayedMutations() throws Exception {
+        server = new LocalCompteServer();
+        CompteService service = new Retrofit.Builder()
+                .baseUrl(server.baseUrl())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+        MutationOutbox outbox = new MutationOutbox(journal);
+        final BlockingQueue<Long> serverIds = new LinkedBlockingQueue<>();
+        outbox.addListener(new MutationOutbox.Listener() {
+            @Override
+            public void onDelivered(PendingMutation mutation, Long serverId, Compte result) {
+                serverIds.add(serverId);
+            }
+
+            @Override
+            public void onDropped(PendingMutation mutation) {
+            }
+        });
+        PendingMutation created = outbox.record(PendingMutation.Operation.CREATE, null, compte(null, 100));
+        outbox.flush(service, new RequestScheduler());
+        assertEquals(Long.valueOf(1000), serverIds.poll(5, TimeUnit.SECONDS));
+
+        // Recorded against the provisional id shown until now
+        outbox.record(PendingMutation.Operation.UPDATE, created.getId(), compte(created.getId(), 150));
+        outbox.record(PendingMutation.Operation.DELETE, 42L, null);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (outbox.depth() > 0 && System.currentTimeMillis() < deadline) {
+            outbox.flush(service, new RequestScheduler());
+            Thread.sleep(10);
+        }
+
+        Set<Long> replayed = new HashSet<>();
+        replayed.add(serverIds.poll(5, TimeUnit.SECONDS));
+        replayed.add(serverIds.poll(5, TimeUnit.SECONDS));
+        assertEquals(new HashSet<>(Arrays.asList(1000L, 42L)), replayed);
+        assertTrue(server.getMutations().containsAll(Arrays.asList("PUT 1000", "DELETE 42")));
+    }
+
+    @Test
+    public void dropsARejectedCreationWithTheMutationsWaitingForIt() throws Exception {
+        server = new LocalCompteServer();
+        server.setMutationFailure(400);
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public okhttp3.Response intercept(Chain chain) throws IOException {
+                        sending.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .build();
+        CompteService service = new Retrofit.Builder()
+                .baseUrl(server.baseUrl())
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+        MutationOutbox outbox = new MutationOutbox(journal);
+        final BlockingQueue<PendingMutation> dropped = new LinkedBlockingQueue<>();
+        outbox.addListener(new MutationOutbox.Listener() {
+            @Override
+            public void onDelivered(PendingMutation mutation, Long serverId, Compte result) {
+                throw new AssertionError("delivered " + mutation.getOperation());
+            }
+
+            @Override
+            public void onDropped(PendingMutation mutation) {
+                dropped.add(mutation);
+            }
+        });
+        PendingMutation created = outbox.record(PendingMutation.Operation.CREATE, null, compte(null, 100));
+        outbox.flush(service, new RequestScheduler());
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        // Not folded into the creation being sent, waits for its server id
+        outbox.record(PendingMutation.Operation.UPDATE, created.getId(), compte(created.getId(), 150));
+        assertEquals(2, outbox.depth());
+        release.countDown();
+
+        PendingMutation reported = dropped.poll(5, TimeUnit.SECONDS);
+        assertEquals(created.getSequence(), reported.getSequence());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (outbox.depth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, outbox.depth());
+        assertEquals(0, new MutationOutbox(journal).depth());
+        assertEquals(Arrays.asList("POST"), server.getMutations());
+        assertTrue(dropped.isEmpty());
+    }
+
+    private static Compte compte(Long id, double solde) {
+        return new Compte(id, solde, "COURANT", "2025-11-09");
+    }
+}
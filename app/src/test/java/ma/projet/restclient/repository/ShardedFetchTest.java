@@ -0,0 +1,183 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.LocalCompteServer;
+import ma.projet.restclient.api.CompteService;
+import ma.projet.restclient.config.RequestPriority;
+import ma.projet.restclient.config.RequestScheduler;
+import ma.projet.restclient.entities.Compte;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of ShardedFetch against the in-process LocalCompteServer.
+ *
+ * <p>
+ * The wall-clock comparison with the single-request path throttles each
+ * response, as on a mobile link where one connection does not fill the
+ * bandwidth; over an unthrottled loopback there is no transfer time for
+ * the pages to overlap.
+ * </p>
+ */
+public class ShardedFetchTest {
+    private static final int SHARDS = 4;
+
+    /** Smallest accepted speedup of the sharded fetch over a throttled link */
+    private static final double MIN_SPEEDUP = 1.5;
+
+    /** Throughput of each throttled response */
+    private static final long BYTES_PER_SECOND = 1000000;
+
+    private LocalCompteServer server;
+    private CompteService service;
+    private RequestScheduler scheduler;
+    private volatile String emptyPage = null;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalCompteServer();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public okhttp3.Response intercept(Chain chain) throws IOException {
+                        String query = chain.request().url().query();
+                        if (emptyPage != null && query != null && query.startsWith(emptyPage)) {
+                            return new okhttp3.Response.Builder()
+                                    .request(chain.request())
+                                    .protocol(Protocol.HTTP_1_1)
+                                    .code(204)
+                                    .message("No Content")
+                                    .body(ResponseBody.create(null, ""))
+                                    .build();
+                        }
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .build();
+        service = new Retrofit.Builder()
+                .baseUrl(server.baseUrl())
+                .client(client)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(CompteService.class);
+        scheduler = new RequestScheduler();
+        scheduler.setMaxRequestsPerHost(SHARDS + 1);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void mergesPagesInOrder() throws Exception {
+        server.setAccountCount(10001);
+
+        List<Compte> comptes = fetch(SHARDS);
+
+        assertEquals(10001, comptes.size());
+        for (int i = 0; i < comptes.size(); i++) {
+            assertEquals(Long.valueOf(i + 1), comptes.get(i).getId());
+        }
+    }
+
+    @Test
+    public void handlesEmptyList() throws Exception {
+        server.setAccountCount(0);
+
+        assertEquals(0, fetch(SHARDS).size());
+    }
+
+    @Test
+    public void failsOnAPageWithoutBody() throws Exception {
+        server.setAccountCount(100);
+        emptyPage = "page=1&";
+
+        Object outcome = outcomeOf(SHARDS);
+
+        assertTrue(String.valueOf(outcome), outcome instanceof IOException);
+    }
+
+    @Test
+    public void fasterThanASingleRequestOverAThrottledLink() throws Exception {
+        int count = 10000;
+        server.setAccountCount(count);
+        // Warm up connections, JIT and Gson adapters
+        fetch(1);
+        fetch(SHARDS);
+        server.setBytesPerSecond(BYTES_PER_SECOND);
+        long single = bestOf(2, 1, count);
+        long sharded = bestOf(2, SHARDS, count);
+        double speedup = (double) single / sharded;
+        assertTrue(String.format("%,d accounts: single %d ms, %d shards %d ms (x%.2f)",
+                count, single, SHARDS, sharded, speedup), speedup >= MIN_SPEEDUP);
+    }
+
+    /**
+     * Returns the shortest wall-clock time of several fetches, in ms.
+     */
+    private long bestOf(int runs, int shards, int expected) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            List<Compte> comptes = fetch(shards);
+            best = Math.min(best, (System.nanoTime() - start) / 1000000L);
+            assertEquals(expected, comptes.size());
+        }
+        return best;
+    }
+
+    private List<Compte> fetch(int shards) throws Exception {
+        Object value = outcomeOf(shards);
+        if (!(value instanceof List)) {
+            throw new AssertionError("fetch failed: " + value);
+        }
+        @SuppressWarnings("unchecked")
+        List<Compte> comptes = (List<Compte>) value;
+        return comptes;
+    }
+
+    /**
+     * Runs one fetch.
+     *
+     * @return The list, "HTTP " and the status of an error, or the failure
+     */
+    private Object outcomeOf(int shards) throws Exception {
+        final BlockingQueue<Object> result = new LinkedBlockingQueue<>();
+        new ShardedFetch(service, scheduler).fetch(shards, RequestPriority.VISIBLE, new Callback<List<Compte>>() {
+            @Override
+            public void onResponse(Call<List<Compte>> call, Response<List<Compte>> response) {
+                result.add(response.isSuccessful() ? response.body() : "HTTP " + response.code());
+            }
+
+            @Override
+            public void onFailure(Call<List<Compte>> call, Throwable t) {
+                result.add(t);
+            }
+        });
+        Object value = result.poll(2, TimeUnit.MINUTES);
+        assertNotNull("fetch timed out", value);
+        return value;
+    }
+}
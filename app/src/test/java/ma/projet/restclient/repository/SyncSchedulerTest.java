@@ -0,0 +1,300 @@
+package ma.projet.restclient.repository;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of SyncScheduler driven by a fake clock: time only moves when the
+ * test advances it, and due tasks run on the test thread.
+ */
+public class SyncSchedulerTest {
+    private static final long INTERVAL = 60000;
+    private static final double JITTER = 0.2;
+    private static final long FRESHNESS = 30000;
+    private static final long START_SPREAD = 10000;
+
+    @Test
+    public void spreadsClientsStartedTogetherOverTheJitterWindow() {
+        final FakeClock clock = new FakeClock();
+        final List<Long> firstSyncs = new ArrayList<>();
+        for (int client = 0; client < 50; client++) {
+            final boolean[] synced = new boolean[1];
+            SyncScheduler scheduler = new SyncScheduler(INTERVAL, JITTER, FRESHNESS, clock, new Random(client),
+                    new FakeConstraints(), new SyncScheduler.SyncTask() {
+                        @Override
+                        public void sync(SyncScheduler.Completion done) {
+                            if (!synced[0]) {
+                                synced[0] = true;
+                                firstSyncs.add(clock.nowMillis());
+                            }
+                            done.finished(true);
+                        }
+                    });
+            scheduler.markFresh();
+            scheduler.start();
+        }
+        clock.advance(2 * INTERVAL);
+
+        assertEquals(50, firstSyncs.size());
+        Set<Long> distinct = new HashSet<>(firstSyncs);
+        assertTrue(distinct.size() > 40);
+        for (long at : firstSyncs) {
+            assertTrue(at >= INTERVAL * (1 - JITTER) && at <= INTERVAL * (1 + JITTER));
+        }
+    }
+
+    @Test
+    public void spreadsClientsStartedWithoutDataOverTheStartWindow() {
+        final FakeClock clock = new FakeClock();
+        final List<Long> firstSyncs = new ArrayList<>();
+        for (int client = 0; client < 50; client++) {
+            final boolean[] synced = new boolean[1];
+            SyncScheduler scheduler = new SyncScheduler(INTERVAL, JITTER, FRESHNESS, clock, new Random(client),
+                    new FakeConstraints(), new SyncScheduler.SyncTask() {
+                        @Override
+                        public void sync(SyncScheduler.Completion done) {
+                            if (!synced[0]) {
+                                synced[0] = true;
+                                firstSyncs.add(clock.nowMillis());
+                            }
+                            done.finished(true);
+                        }
+                    });
+            scheduler.start();
+        }
+        clock.advance(START_SPREAD);
+
+        assertEquals(50, firstSyncs.size());
+        assertTrue(new HashSet<>(firstSyncs).size() > 40);
+    }
+
+    @Test
+    public void plansTheFirstSyncOneIntervalAfterAnEarlierRefresh() {
+        FakeClock clock = new FakeClock();
+        CountingTask task = new CountingTask(true);
+        SyncScheduler scheduler = new SyncScheduler(INTERVAL, JITTER, FRESHNESS, clock, new Random(5),
+                new FakeConstraints(), task);
+        // Snapshot saved 20 s before the process started
+        scheduler.markFresh(20000);
+        scheduler.start();
+
+        clock.advance((long) (INTERVAL * (1 - JITTER)) - 20000 - 1);
+        assertEquals(0, task.runs);
+        clock.advance((long) (INTERVAL * 2 * JITTER) + 1);
+        assertEquals(1, task.runs);
+    }
+
+    @Test
+    public void syncsSoonAfterStartingWithStaleData() {
+        FakeClock clock = new FakeClock();
+        CountingTask task = new CountingTask(true);
+        SyncScheduler scheduler = new SyncScheduler(INTERVAL, JITTER, FRESHNESS, clock, new Random(6),
+                new FakeConstraints(), task);
+        scheduler.markFresh(2 * INTERVAL);
+        scheduler.start();
+
+        clock.advance(START_SPREAD);
+        assertEquals(1, task.runs);
+    }
+
+    @Test
+    public void remembersTheLastRefreshAcrossStopAndStart() {
+        FakeClock clock = new FakeClock();
+        CountingTask task = new CountingTask(true);
+        SyncScheduler scheduler = new SyncScheduler(INTERVAL, JITTER, FRESHNESS, clock, new Random(7),
+                new FakeConstraints(), task);
+        scheduler.start();
+        clock.advance(START_SPREAD);
+        assertEquals(1, task.runs);
+
+        scheduler.stop();
+        clock.advance(1000);
+        scheduler.start();
+        assertTrue(scheduler.isRunning());
+        clock.advance(START_SPREAD);
+        assertEquals(1, task.runs);
+
+        clock.advance((long) (INTERVAL * (1 + JITTER)));
+        assertEquals(2, task.runs);
+    }
+
+    @Test
+    public void skipsSyncWhileDataIsFresh() {
+        FakeClock clock = new FakeClock();
+        CountingTask task = new CountingTask(true);
+        SyncScheduler scheduler = new SyncScheduler(INTERVAL, JITTER, FRESHNESS, clock, new Random(1),
+                new FakeConstraints(), task);
+        scheduler.markFresh();
+        scheduler.start();
+
+        clock.advance((long) (INTERVAL * (1 - JITTER)) - 1000);
+        scheduler.markFresh();
+        clock.advance((long) (INTERVAL * 2 * JITTER) + 1000);
+        assertEquals(0, task.runs);
+
+        // Next sync is planned from the refresh
+        clock.advance(INTERVAL);
+        assertEquals(1, task.runs);
+    }
+
+    @Test
+    public void waitsForConstraintsAndRunsOnceTheyAreMet() {
+        FakeClock clock = new FakeClock();
+        CountingTask task = new CountingTask(true);
+        FakeConstraints constraints = new FakeConstraints();
+        constraints.network = false;
+        SyncScheduler scheduler = new SyncScheduler(INTERVAL, JITTER, FRESHNESS, clock, new Random(2),
+                constraints, task);
+        scheduler.start();
+
+        clock.advance((long) (INTERVAL * (1 + JITTER)));
+        assertEquals(0, task.runs);
+
+        constraints.network = true;
+        constraints.batteryLow = true;
+        scheduler.onConstraintsChanged();
+        clock.advance(30000);
+        assertEquals(0, task.runs);
+
+        constraints.batteryLow = false;
+        scheduler.onConstraintsChanged();
+        clock.advance(30000);
+        assertEquals(1, task.runs);
+    }
+
+    @Test
+    public void retriesFailuresWithBackoffBelowTheInterval() {
+        FakeClock clock = new FakeClock();
+        CountingTask task = new CountingTask(false);
+        SyncScheduler scheduler = new SyncScheduler(INTERVAL, JITTER, FRESHNESS, clock, new Random(3),
+                new FakeConstraints(), task);
+        scheduler.start();
+
+        while (task.runs == 0) {
+            clock.advance(1);
+        }
+        assertTrue(clock.nowMillis() <= START_SPREAD);
+        // Backoff windows of 5 s, 10 s, 20 s and 40 s all fit in 75 s
+        clock.advance(75000);
+        assertTrue(task.runs >= 5);
+
+        task.succeed = true;
+        int failedRuns = task.runs;
+        while (task.runs == failedRuns) {
+            clock.advance(1);
+        }
+        // Back to the normal cadence after a success
+        clock.advance((long) (INTERVAL * (1 - JITTER)) - 1);
+        assertEquals(failedRuns + 1, task.runs);
+    }
+
+    @Test
+    public void stopCancelsPlannedSync() {
+        FakeClock clock = new FakeClock();
+        CountingTask task = new CountingTask(true);
+        SyncScheduler scheduler = new SyncScheduler(INTERVAL, JITTER, FRESHNESS, clock, new Random(4),
+                new FakeConstraints(), task);
+        scheduler.start();
+        scheduler.stop();
+
+        assertEquals(0, clock.pending());
+        clock.advance(10 * INTERVAL);
+        assertEquals(0, task.runs);
+    }
+
+    /**
+     * Clock whose time only moves in {@link #advance}.
+     */
+    private static final class FakeClock implements SyncScheduler.Clock {
+        private final PriorityQueue<Timed> queue = new PriorityQueue<>();
+        private long now = 0;
+        private long sequence = 0;
+
+        @Override
+        public long nowMillis() {
+            return now;
+        }
+
+        @Override
+        public Runnable schedule(Runnable task, long delayMillis) {
+            final Timed timed = new Timed(now + delayMillis, sequence++, task);
+            queue.add(timed);
+            return new Runnable() {
+                @Override
+                public void run() {
+                    queue.remove(timed);
+                }
+            };
+        }
+
+        int pending() {
+            return queue.size();
+        }
+
+        void advance(long millis) {
+            long target = now + millis;
+            while (!queue.isEmpty() && queue.peek().at <= target) {
+                Timed next = queue.poll();
+                now = next.at;
+                next.task.run();
+            }
+            now = target;
+        }
+    }
+
+    private static final class Timed implements Comparable<Timed> {
+        final long at;
+        final long sequence;
+        final Runnable task;
+
+        Timed(long at, long sequence, Runnable task) {
+            this.at = at;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Timed other) {
+            return at != other.at ? Long.compare(at, other.at) : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final class FakeConstraints implements SyncScheduler.Constraints {
+        boolean network = true;
+        boolean batteryLow = false;
+
+        @Override
+        public boolean isNetworkAvailable() {
+            return network;
+        }
+
+        @Override
+        public boolean isBatteryLow() {
+            return batteryLow;
+        }
+    }
+
+    private static final class CountingTask implements SyncScheduler.SyncTask {
+        boolean succeed;
+        int runs = 0;
+
+        CountingTask(boolean succeed) {
+            this.succeed = succeed;
+        }
+
+        @Override
+        public void sync(SyncScheduler.Completion done) {
+            runs++;
+            done.finished(succeed);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package ma.projet.restclient.repository;
+
+import ma.projet.restclient.config.MemoryBudgetManager;
+import ma.projet.restclient.entities.Compte;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of WindowedCompteSource. Pages are loaded on the calling thread so
+ * the window is settled when setVisibleRange returns.
+ */
+public class WindowedCompteSourceTest {
+    private static final int VISIBLE_ROWS = 20;
+    private static final int MARGIN = 100;
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("comptes", ".snapshot");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void loadsVisibleRangeAndEvictsRowsLeavingIt() throws IOException {
+        final List<Integer> loaded = new ArrayList<>();
+        WindowedCompteSource source = open(1000, new WindowedCompteSource.Listener() {
+            @Override
+            public void onRowsLoaded(int from, int count) {
+                loaded.add(from);
+            }
+        });
+        assertNull(source.get(0));
+
+        source.setVisibleRange(0, VISIBLE_ROWS - 1);
+        assertEquals(Long.valueOf(0), source.get(0).getId());
+        assertEquals(Long.valueOf(VISIBLE_ROWS + MARGIN - 1), source.get(VISIBLE_ROWS + MARGIN - 1).getId());
+        assertTrue(loaded.contains(0));
+
+        source.setVisibleRange(900, 900 + VISIBLE_ROWS - 1);
+        assertNull("rows leaving the window are evicted", source.get(0));
+        assertEquals(Long.valueOf(910), source.get(910).getId());
+    }
+
+    @Test
+    public void heapStaysFlatFrom10kTo1MAccounts() throws IOException {
+        long smallHeap = scrollThrough(10000);
+        int smallResident = lastResident;
+        long largeHeap = scrollThrough(1000000);
+        int largeResident = lastResident;
+
+        int bound = ((VISIBLE_ROWS + 2 * MARGIN) / WindowedCompteSource.PAGE_SIZE + 2)
+                * WindowedCompteSource.PAGE_SIZE;
+        assertTrue("resident rows " + largeResident + " > " + bound, largeResident <= bound);
+        assertEquals(smallResident, largeResident);
+        // 1M materialized accounts would take well over 100 MB
+        assertTrue("heap grew by " + (largeHeap - smallHeap) + " bytes",
+                largeHeap - smallHeap < 8L * 1024 * 1024);
+    }
+
+    @Test
+    public void budgetNeverShedsVisiblePages() throws IOException {
+        MemoryBudgetManager budget = new MemoryBudgetManager(Long.MAX_VALUE);
+        WindowedCompteSource source = open(1000, null);
+        source.setMemoryBudget(budget);
+        source.setVisibleRange(500, 500 + VISIBLE_ROWS - 1);
+        int visiblePages = (500 + VISIBLE_ROWS - 1) / WindowedCompteSource.PAGE_SIZE
+                - 500 / WindowedCompteSource.PAGE_SIZE + 1;
+        assertTrue(source.residentRowCount() > visiblePages * WindowedCompteSource.PAGE_SIZE);
+
+        budget.trimToFraction(0);
+
+        assertEquals(visiblePages * WindowedCompteSource.PAGE_SIZE, source.residentRowCount());
+        for (int row = 500; row < 500 + VISIBLE_ROWS; row++) {
+            assertEquals(Long.valueOf(row), source.get(row).getId());
+        }
+        assertNull(source.get(500 - MARGIN));
+        assertNull(source.get(500 + VISIBLE_ROWS - 1 + MARGIN));
+
+        // Shed margin pages come back when the visible range moves
+        source.setVisibleRange(501, 501 + VISIBLE_ROWS - 1);
+        assertNotNull(source.get(500 - MARGIN + 1));
+    }
+
+    /** Largest resident row count seen by the last scrollThrough */
+    private int lastResident;
+
+    /**
+     * Writes a snapshot of the given size, scrolls from top to bottom and
+     * returns the heap in use with the source still reachable.
+     */
+    private long scrollThrough(int count) throws IOException {
+        WindowedCompteSource source = open(count, null);
+        lastResident = 0;
+        int step = Math.max(VISIBLE_ROWS, count / 2000);
+        for (int first = 0; first + VISIBLE_ROWS <= count; first += step) {
+            source.setVisibleRange(first, first + VISIBLE_ROWS - 1);
+            assertNotNull(source.get(first));
+            lastResident = Math.max(lastResident, source.residentRowCount());
+        }
+        long heap = usedHeap();
+        assertEquals(count, source.size());
+        return heap;
+    }
+
+    private WindowedCompteSource open(int count, WindowedCompteSource.Listener listener) throws IOException {
+        CompteSnapshot.write(file, generated(count));
+        return new WindowedCompteSource(CompteSnapshot.open(file), MARGIN, DIRECT, DIRECT, listener);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Accounts produced one at a time, so writing the file does not hold
+     * them all in the heap.
+     */
+    private static Iterable<Compte> generated(final int count) {
+        return new Iterable<Compte>() {
+            @Override
+            public Iterator<Compte> iterator() {
+                return new Iterator<Compte>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < count;
+                    }
+
+                    @Override
+                    public Compte next() {
+                        long id = next++;
+                        return new Compte(id, id * 10.0, id % 2 == 0 ? "COURANT" : "EPARGNE", "2025-11-09");
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+}